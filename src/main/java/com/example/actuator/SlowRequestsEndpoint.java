@@ -0,0 +1,41 @@
+package com.example.actuator;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.service.RequestTraceService;
+import com.example.service.RequestTraceService.SlowRequest;
+
+/**
+ * SlowRequestsEndpoint serves the slow requests sampled by the RequestTraceService at
+ * GET /actuator/slowrequests, each with its Server-Timing breakdown and its nested spans.
+ */
+@Component
+@Endpoint(id = "slowrequests")
+public class SlowRequestsEndpoint {
+    /**
+     * Holds the ring buffer of slow requests.
+     */
+    private RequestTraceService requestTraceService;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the trace service.
+     * @param requestTraceService
+     */
+    @Autowired
+    public SlowRequestsEndpoint(RequestTraceService requestTraceService) {
+        this.requestTraceService = requestTraceService;
+    }
+
+    /**
+     * @return Returns the recorded slow requests, most recent first.
+     */
+    @ReadOperation
+    public List<SlowRequest> slowRequests() {
+        return requestTraceService.getSlowRequests();
+    }
+}
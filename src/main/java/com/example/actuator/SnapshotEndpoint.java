@@ -0,0 +1,80 @@
+package com.example.actuator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.dto.SnapshotReport;
+import com.example.service.SnapshotService;
+
+/**
+ * SnapshotEndpoint lists the snapshots at GET /actuator/snapshots, writes one with
+ * POST /actuator/snapshots/{name} {"action":"backup"} and restores one with {"action":"restore"}.
+ *
+ * A restore replaces every account and message, so the endpoint is disabled unless
+ * management.endpoint.snapshots.enabled is true.
+ */
+@Component
+@Endpoint(id = "snapshots", enableByDefault = false)
+public class SnapshotEndpoint {
+    /**
+     * Writes and restores the snapshots.
+     */
+    private SnapshotService snapshotService;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the snapshot service.
+     * @param snapshotService
+     */
+    @Autowired
+    public SnapshotEndpoint(SnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * @return Returns the names of the snapshots.
+     */
+    @ReadOperation
+    public List<String> snapshots() {
+        try {
+            return snapshotService.listSnapshots();
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes or restores a snapshot.
+     * @param  name The name of the snapshot.
+     * @param  action "backup" or "restore".
+     * @return Returns the number of rows written or loaded and the size of the file.
+     */
+    @WriteOperation
+    public SnapshotReport snapshot(@Selector String name, String action) {
+        try {
+            if("backup".equals(action)) {
+                return snapshotService.backup(name);
+            }
+            if("restore".equals(action)) {
+                return snapshotService.restore(name);
+            }
+        }
+        catch(IllegalArgumentException e) {
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new InvalidEndpointRequestException("The action must be backup or restore.",
+                "The action must be backup or restore.");
+    }
+}
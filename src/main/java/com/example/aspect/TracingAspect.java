@@ -0,0 +1,106 @@
+package com.example.aspect;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.example.service.RequestTraceService;
+
+/**
+ * TracingAspect opens a RequestTraceService span around every call into SocialMediaController, the *Service
+ * classes and the *Repository interfaces. Outside of a traced request a call costs one ThreadLocal lookup.
+ *
+ * The services that do the tracing and SQL accounting themselves are excluded, since they run inside every
+ * traced call and would only add noise.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true", matchIfMissing = true)
+public class TracingAspect {
+    /**
+     * The name spans of a proxied bean are reported under: the application interface it implements, such as
+     * MessageRepository, or else its own class name without the proxy suffix. Computed once per proxy class.
+     */
+    private static final ClassValue<String> SPAN_TYPE_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            for(Class<?> candidate : ClassUtils.getAllInterfacesForClass(type)) {
+                if(candidate.getName().startsWith("com.example.")) {
+                    return candidate.getSimpleName();
+                }
+            }
+            return ClassUtils.getUserClass(type).getSimpleName();
+        }
+    };
+
+    /**
+     * Records the spans of the current request.
+     */
+    private RequestTraceService requestTraceService;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the trace service.
+     * @param requestTraceService
+     */
+    @Autowired
+    public TracingAspect(RequestTraceService requestTraceService) {
+        this.requestTraceService = requestTraceService;
+    }
+
+    /**
+     * Traces a controller method.
+     * @param  call The intercepted call.
+     * @return Returns the result of the call.
+     */
+    @Around("within(com.example.controller..*)")
+    public Object traceController(ProceedingJoinPoint call) throws Throwable {
+        return trace(RequestTraceService.CONTROLLER, call);
+    }
+
+    /**
+     * Traces a service method.
+     * @param  call The intercepted call.
+     * @return Returns the result of the call.
+     */
+    @Around("within(com.example.service..*) && !within(com.example.service.RequestTraceService)"
+            + " && !within(com.example.service.SqlStatisticsService)")
+    public Object traceService(ProceedingJoinPoint call) throws Throwable {
+        return trace(RequestTraceService.SERVICE, call);
+    }
+
+    /**
+     * Traces a repository method, including the methods Spring Data implements and the sharded MessageStore.
+     * @param  call The intercepted call.
+     * @return Returns the result of the call.
+     */
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))"
+            + " || execution(* com.example.repository.MessageStore+.*(..))")
+    public Object traceRepository(ProceedingJoinPoint call) throws Throwable {
+        return trace(RequestTraceService.REPOSITORY, call);
+    }
+
+    /**
+     * Runs a call inside a span named after the bean and the method. The name is only built while a request is
+     * traced.
+     * @param  layer The Server-Timing metric of the span.
+     * @param  call The intercepted call.
+     * @return Returns the result of the call.
+     */
+    private Object trace(String layer, ProceedingJoinPoint call) throws Throwable {
+        if(!requestTraceService.isTracing()) {
+            return call.proceed();
+        }
+        int span = requestTraceService.enter(layer, SPAN_TYPE_NAMES.get(call.getThis().getClass()) + "."
+                + call.getSignature().getName());
+        try {
+            return call.proceed();
+        }
+        finally {
+            requestTraceService.exit(span);
+        }
+    }
+}
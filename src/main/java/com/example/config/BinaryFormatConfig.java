@@ -0,0 +1,41 @@
+package com.example.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * BinaryFormatConfig registers the binary representations every route can negotiate besides JSON. A client that
+ * sends Accept: application/x-jackson-smile or Accept: application/cbor receives the same body in that format, and
+ * request bodies in either format are accepted when the Content-Type says so.
+ *
+ * Both converters are built from the Jackson2ObjectMapperBuilder Spring Boot configures for JSON, so the
+ * registered @JsonComponent deserializers and the spring.jackson.* settings apply to every format alike.
+ */
+@Configuration
+public class BinaryFormatConfig {
+    /**
+     * Registers the Smile converter, which Spring Boot adds to the converters of Spring MVC.
+     * @param  builder The object mapper builder configured by Spring Boot.
+     * @return Returns the converter for application/x-jackson-smile.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * Registers the CBOR converter, which Spring Boot adds to the converters of Spring MVC.
+     * @param  builder The object mapper builder configured by Spring Boot.
+     * @return Returns the converter for application/cbor.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.json.CachingMessageSerializer;
+import com.example.json.MessageJsonCache;
+import com.fasterxml.jackson.databind.Module;
+
+/**
+ * JsonCacheConfig registers the Jackson module that serializes messages from the MessageJsonCache. Spring Boot
+ * adds every Module bean to the ObjectMapper it configures, and with it to the JSON, Smile and CBOR converters.
+ */
+@Configuration
+public class JsonCacheConfig {
+    /**
+     * Registers the module wrapping the serializers of Message and MessageView.
+     * @param  cache The cache of encoded messages.
+     * @return Returns the module.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.json-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public Module messageJsonCacheModule(MessageJsonCache cache) {
+        return CachingMessageSerializer.module(cache);
+    }
+}
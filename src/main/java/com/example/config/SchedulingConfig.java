@@ -0,0 +1,12 @@
+package com.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * SchedulingConfig enables Spring's @Scheduled support for the background jobs of the application.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
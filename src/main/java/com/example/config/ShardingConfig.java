@@ -0,0 +1,44 @@
+package com.example.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.example.repository.ShardedMessageRepository;
+
+/**
+ * ShardingConfig replaces the JPA MessageRepository with a ShardedMessageRepository when
+ * app.sharding.enabled is true. The sharded repository is the primary MessageStore bean, so every service
+ * that injects MessageStore uses it without changes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+    /**
+     * Creates the sharded message repository from the app.sharding properties.
+     * @param  dataSource The primary DataSource, which still provides hibernate_sequence.
+     * @param  shardCount The number of shards.
+     * @param  urlTemplate The JDBC url of a shard, with "{shard}" in place of the shard number.
+     * @param  username The user name of every shard.
+     * @param  password The password of every shard.
+     * @param  virtualNodes The number of points every shard owns on the hash ring.
+     * @param  initSchema Whether to drop and recreate the message table of every shard at startup.
+     * @return Returns the repository that is injected wherever a MessageStore is needed.
+     */
+    @Bean
+    @Primary
+    public ShardedMessageRepository shardedMessageRepository(DataSource dataSource,
+            @Value("${app.sharding.shard-count:4}") int shardCount,
+            @Value("${app.sharding.url:jdbc:h2:mem:message_shard_{shard};DB_CLOSE_DELAY=-1}") String urlTemplate,
+            @Value("${app.sharding.username:sa}") String username,
+            @Value("${app.sharding.password:}") String password,
+            @Value("${app.sharding.virtual-nodes:64}") int virtualNodes,
+            @Value("${app.sharding.init-schema:true}") boolean initSchema) {
+        return new ShardedMessageRepository(dataSource, shardCount, urlTemplate, username, password, virtualNodes,
+                initSchema);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.example.filter.QueryCountFilter;
+import com.example.jdbc.StatementCountingDataSource;
+import com.example.service.RequestTraceService;
+import com.example.service.SqlStatisticsService;
+
+/**
+ * SqlStatisticsConfig wraps the primary DataSource so every statement is counted and timed by the
+ * SqlStatisticsService, and registers the QueryCountFilter that reports the statements of each request.
+ */
+@Configuration
+public class SqlStatisticsConfig {
+    /**
+     * Wraps every DataSource bean in a StatementCountingDataSource. The method is static so the post processor
+     * is created before the DataSource without initializing this configuration early.
+     * @param  statistics Receives the executed statements, looked up on first use.
+     * @param  tracing Receives the connection and statement times of the current request, looked up on first use.
+     * @return Returns the post processor.
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingDataSourcePostProcessor(
+            ObjectProvider<SqlStatisticsService> statistics, ObjectProvider<RequestTraceService> tracing) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof DataSource && !(bean instanceof StatementCountingDataSource)) {
+                    return new StatementCountingDataSource((DataSource) bean, statistics, tracing);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Registers the QueryCountFilter for every request ahead of the other filters, so statements executed by
+     * the other filters and the interceptors are counted as well. Meant for non-production environments.
+     * @param  sqlStatisticsService Counts the statements of the current thread.
+     * @return Returns the registration of the QueryCountFilter.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.sql-stats.response-headers", havingValue = "true")
+    public FilterRegistrationBean<QueryCountFilter> queryCountFilter(SqlStatisticsService sqlStatisticsService) {
+        FilterRegistrationBean<QueryCountFilter> registration =
+                new FilterRegistrationBean<>(new QueryCountFilter(sqlStatisticsService));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
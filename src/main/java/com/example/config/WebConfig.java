@@ -0,0 +1,119 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.controller.SocialMediaController;
+import com.example.exception.PayloadTooLargeException;
+import com.example.filter.ConcurrencyLimitFilter;
+import com.example.filter.RequestSizeLimitFilter;
+import com.example.filter.ServerTimingFilter;
+import com.example.interceptor.RateLimitInterceptor;
+import com.example.service.RequestTraceService;
+import com.example.util.GradientConcurrencyLimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * WebConfig registers the Spring MVC interceptors and the servlet filters of the application.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    /**
+     * Interceptor that rate limits the message write endpoints per client IP address.
+     */
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the interceptors.
+     * @param rateLimitInterceptor
+     */
+    @Autowired
+    public WebConfig(RateLimitInterceptor rateLimitInterceptor) {
+        this.rateLimitInterceptor = rateLimitInterceptor;
+    }
+
+    /**
+     * Registers the rate limit interceptor for POST /messages and PATCH /messages/{messageId}.
+     * @param registry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/messages", "/messages/*");
+    }
+
+    /**
+     * Registers the request size limit for the endpoints that bind a JSON body.
+     * @param  maxBodyBytes The largest accepted request body in bytes.
+     * @param  meterRegistry The registry of the app.errors counter the rejections are counted in.
+     * @return Returns the registration of the RequestSizeLimitFilter.
+     */
+    @Bean
+    public FilterRegistrationBean<RequestSizeLimitFilter> requestSizeLimitFilter(
+            @Value("${app.request.max-body-bytes:8192}") long maxBodyBytes, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RequestSizeLimitFilter> registration = new FilterRegistrationBean<>(
+                new RequestSizeLimitFilter(maxBodyBytes,
+                        SocialMediaController.errorCounter(meterRegistry, PayloadTooLargeException.class)));
+        registration.addUrlPatterns("/messages", "/messages/*", "/register", "/login");
+        return registration;
+    }
+
+    /**
+     * Registers the Server-Timing filter for every request, right after the QueryCountFilter so the trace covers
+     * the other filters and the interceptors.
+     * @param  requestTraceService Records the spans of each request.
+     * @param  detailed Whether the header reports every span instead of the time per layer.
+     * @return Returns the registration of the ServerTimingFilter.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter(RequestTraceService requestTraceService,
+            @Value("${app.tracing.server-timing-detail:false}") boolean detailed) {
+        FilterRegistrationBean<ServerTimingFilter> registration =
+                new FilterRegistrationBean<>(new ServerTimingFilter(requestTraceService, detailed));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    /**
+     * Registers the concurrency limits for the endpoints of the SocialMediaController, right after the tracing
+     * filters so shed requests are cheap but still traced.
+     * @param  initialLimit The limit of each class of requests before any latency was observed.
+     * @param  minLimit The smallest limit of each class of requests.
+     * @param  maxLimit The largest limit of each class of requests.
+     * @param  tolerance How much slower than usual requests may get before the limits shrink.
+     * @param  shortWindow The number of samples the short-term latency of each limit averages over.
+     * @param  longWindow The number of samples the long-term latency of each limit averages over.
+     * @param  normalShare The share of a limit requests of normal priority may use.
+     * @param  lowShare The share of a limit GET /messages may use.
+     * @param  meterRegistry The registry of the app.concurrency meters.
+     * @return Returns the registration of the ConcurrencyLimitFilter.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.concurrency.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${app.concurrency.initial-limit:50}") int initialLimit,
+            @Value("${app.concurrency.min-limit:20}") int minLimit,
+            @Value("${app.concurrency.max-limit:500}") int maxLimit,
+            @Value("${app.concurrency.tolerance:2.0}") double tolerance,
+            @Value("${app.concurrency.short-window:10}") int shortWindow,
+            @Value("${app.concurrency.long-window:500}") int longWindow,
+            @Value("${app.concurrency.normal-share:0.9}") double normalShare,
+            @Value("${app.concurrency.low-share:0.5}") double lowShare, MeterRegistry meterRegistry) {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+                new GradientConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, shortWindow, longWindow),
+                new GradientConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, shortWindow, longWindow),
+                normalShare, lowShare, meterRegistry);
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/messages", "/messages/*", "/register", "/login", "/accounts/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
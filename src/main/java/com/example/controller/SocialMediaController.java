@@ -3,21 +3,42 @@ package com.example.controller;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import com.example.dto.AccountStatsView;
+import com.example.dto.ChangeFeedView;
+import com.example.dto.MessageView;
+import com.example.dto.TrendingView;
 import com.example.entity.Account;
 import com.example.entity.Message;
 import com.example.service.AccountService;
+import com.example.service.AccountStatsService;
+import com.example.service.IdempotencyService;
 import com.example.service.MessageService;
+import com.example.service.MessageStreamService;
+import com.example.service.RateLimitService;
+import com.example.service.TrendingService;
+import com.example.exception.ChangeLogResetException;
 import com.example.exception.DataIntegrityViolationException;
+import com.example.exception.IdempotencyKeyReusedException;
 import com.example.exception.InvalidLoginException;
 import com.example.exception.InvalidModelFieldValuesException;
+import com.example.exception.PayloadTooLargeException;
+import com.example.exception.RateLimitExceededException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller using Spring. The endpoints you will need can be
@@ -42,30 +63,106 @@ public class SocialMediaController {
      * Service class for Messages. Holds business logic for interacting with Messages in the DAO layer.
      */
     MessageService messageService;
+    /**
+     * Service class for the incrementally maintained per-account posting statistics.
+     */
+    AccountStatsService accountStatsService;
+    /**
+     * Service class that holds the per-account token buckets for the message write endpoints.
+     */
+    RateLimitService rateLimitService;
+    /**
+     * Service class that pushes committed message changes to Server-Sent Events subscribers.
+     */
+    MessageStreamService messageStreamService;
+    /**
+     * Service class that replays the original response of requests retried with the same Idempotency-Key.
+     */
+    IdempotencyService idempotencyService;
+    /**
+     * Service class that answers the top posters and trending terms of the last hour from streaming sketches.
+     */
+    TrendingService trendingService;
+    /**
+     * Counts handled DataIntegrityViolationExceptions.
+     */
+    private final Counter conflictErrors;
+    /**
+     * Counts handled InvalidModelFieldValuesExceptions.
+     */
+    private final Counter invalidFieldErrors;
+    /**
+     * Counts handled InvalidLoginExceptions.
+     */
+    private final Counter invalidLoginErrors;
+    /**
+     * Counts handled RateLimitExceededExceptions.
+     */
+    private final Counter rateLimitErrors;
+    /**
+     * Counts handled PayloadTooLargeExceptions.
+     */
+    private final Counter payloadTooLargeErrors;
+    /**
+     * Counts handled IdempotencyKeyReusedExceptions.
+     */
+    private final Counter idempotencyKeyReusedErrors;
+    /**
+     * Counts handled ChangeLogResetExceptions.
+     */
+    private final Counter changeLogResetErrors;
 
     /**
-     * Parameterized constructor annotated with @Autowired so Spring inject the AccountService and MessageService
-     * dependencies.
+     * Parameterized constructor annotated with @Autowired so Spring inject the AccountService, MessageService,
+     * AccountStatsService, RateLimitService, MessageStreamService, IdempotencyService and TrendingService
+     * dependencies, and the MeterRegistry that holds the error counters.
      * @param accountService
      * @param messageService
+     * @param accountStatsService
+     * @param rateLimitService
+     * @param messageStreamService
+     * @param idempotencyService
+     * @param trendingService
+     * @param meterRegistry
      */
     @Autowired
-    public SocialMediaController(AccountService accountService, MessageService messageService) {
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+            AccountStatsService accountStatsService, RateLimitService rateLimitService,
+            MessageStreamService messageStreamService, IdempotencyService idempotencyService,
+            TrendingService trendingService, MeterRegistry meterRegistry) {
         this.accountService = accountService;
         this.messageService = messageService;
+        this.accountStatsService = accountStatsService;
+        this.rateLimitService = rateLimitService;
+        this.messageStreamService = messageStreamService;
+        this.idempotencyService = idempotencyService;
+        this.trendingService = trendingService;
+        this.conflictErrors = errorCounter(meterRegistry, DataIntegrityViolationException.class);
+        this.invalidFieldErrors = errorCounter(meterRegistry, InvalidModelFieldValuesException.class);
+        this.invalidLoginErrors = errorCounter(meterRegistry, InvalidLoginException.class);
+        this.rateLimitErrors = errorCounter(meterRegistry, RateLimitExceededException.class);
+        this.payloadTooLargeErrors = errorCounter(meterRegistry, PayloadTooLargeException.class);
+        this.idempotencyKeyReusedErrors = errorCounter(meterRegistry, IdempotencyKeyReusedException.class);
+        this.changeLogResetErrors = errorCounter(meterRegistry, ChangeLogResetException.class);
     }
 
     /**
      * Exposes the "/register" endpoint for POST requests. Registers a new account that is supplied in
      * the request body.
      * @param  account The account to be registered.
+     * @param  idempotencyKey Optional Idempotency-Key header. A retry with the same key and body returns the
+     *         original response without the password instead of registering the account again.
      * @return A ResponseEntity<Account> which represents the HTTP reponse. Includes a status code of
      *         200 (OK) and a response body that includes the newly registered account.
      */
     @PostMapping("/register")
-    public ResponseEntity<Account> registerAccount(@RequestBody Account account) {
-        Account registeredAccount = accountService.registerAccount(account);
-        return ResponseEntity.status(200).body(registeredAccount);
+    public ResponseEntity<Account> registerAccount(@RequestBody Account account,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return idempotencyService.execute("register", idempotencyKey, account, Account.class,
+                registered -> new Account(registered.getAccountId(), registered.getUsername(), null), () -> {
+            Account registeredAccount = accountService.registerAccount(account);
+            return ResponseEntity.status(200).body(registeredAccount);
+        });
     }
 
     /**
@@ -85,23 +182,79 @@ public class SocialMediaController {
      * Exposes the "/messages" endpoint for POST requests. Adds a new message that is specified in the
      * request body.
      * @param  message The message being posted to the social media app.
+     * @param  idempotencyKey Optional Idempotency-Key header, scoped to the postedBy account. A retry with the
+     *         same key and body returns the original response instead of posting the message again.
      * @return A ResponseEntity<Message> which represents the HTTP reponse. Includes a status code of
      *         200 (OK) and a response body that includes the newly added message.
      */
     @PostMapping("/messages")
-    public ResponseEntity<Message> createMessage(@RequestBody Message message) {
-        Message postedMessage = messageService.createMessage(message);
-        return ResponseEntity.status(200).body(postedMessage);
+    public ResponseEntity<Message> createMessage(@RequestBody Message message,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return idempotencyService.execute("messages:" + message.getPostedBy(), idempotencyKey, message,
+                Message.class, () -> {
+            rateLimitService.checkAccount(message.getPostedBy());
+            Message postedMessage = messageService.createMessage(message);
+            return ResponseEntity.status(200).body(postedMessage);
+        });
     }
 
     /**
-     * Exposes the "/messages" endpoint for GET requests. Returns all messages stored in the database.
-     * @return A ResponseEntity<List<Message>> which represents the HTTP reponse. Includes a status code of
-     *         200 (OK) and a response body that includes all messages in the database.
+     * Exposes the "/messages" endpoint for GET requests. Returns all messages stored in the database, one page
+     * of the messages posted within a time range when from or to is given, or the newest messages from memory
+     * when latest is given.
+     * @param  fields Optional sparse fieldset, e.g. "?fields=messageId,messageText". Only the listed fields are
+     *         selected and serialized.
+     * @param  from Optional earliest timePostedEpoch, inclusive.
+     * @param  to Optional latest timePostedEpoch, inclusive.
+     * @param  page The zero-based page of a time-range query.
+     * @param  size Optional page size of a time-range query.
+     * @param  latest Optional number of newest messages to return, newest first, served without a query.
+     * @return A ResponseEntity<List<MessageView>> which represents the HTTP reponse. Includes a status code of
+     *         200 (OK) and a response body that includes all messages in the database, the requested page of
+     *         the time range with a Link header to the next page when there is one, or the newest messages.
      */
     @GetMapping("/messages")
-    public ResponseEntity<List<Message>> getAllMessages() {
-        return ResponseEntity.status(200).body(messageService.getAllMessages());
+    public ResponseEntity<List<MessageView>> getAllMessages(@RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) Long from, @RequestParam(required = false) Long to,
+            @RequestParam(defaultValue = "0") int page, @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) Integer latest) {
+        if(latest != null) {
+            return ResponseEntity.status(200).body(messageService.getLatestMessages(latest, fields));
+        }
+        if(from == null && to == null) {
+            return ResponseEntity.status(200).body(messageService.getAllMessages(fields));
+        }
+        return pageResponse(messageService.getMessagesPostedBetween(null, from, to, fields, page, size));
+    }
+
+    /**
+     * Exposes the "/messages/stream" endpoint for GET requests. Opens a Server-Sent Events stream of "created",
+     * "updated" and "deleted" events, each carrying the message as JSON, so clients do not have to poll
+     * "/messages" for new posts.
+     * @param  postedBy Optional account id. Only changes to messages posted by this account are streamed.
+     * @param  lastEventId The Last-Event-ID header sent by a reconnecting client. Changes after this id are
+     *         replayed, or a "reset" event is sent if they are no longer retained.
+     * @return An SseEmitter which represents the open event stream.
+     */
+    @GetMapping(path = "/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(@RequestParam(required = false) Integer postedBy,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return messageStreamService.subscribe(postedBy, lastEventId);
+    }
+
+    /**
+     * Exposes the "/messages/changes" endpoint for GET requests. Returns the upserts and delete tombstones logged
+     * after the given sequence number, so an offline client can resynchronise without downloading every message.
+     * @param  since The nextSince value of the client's previous response, or 0 for the whole log.
+     * @param  limit Optional maximum number of changes to return.
+     * @return A ResponseEntity<ChangeFeedView> which represents the HTTP reponse. Includes a status code of 200 (OK)
+     *         and a response body with the changes, the sequence number to resume from and whether more changes
+     *         are available, or a status code of 410 (Gone) when the log was reset after since.
+     */
+    @GetMapping("/messages/changes")
+    public ResponseEntity<ChangeFeedView> getMessageChanges(@RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.status(200).body(messageService.getChangesSince(since, limit));
     }
 
     /**
@@ -145,12 +298,80 @@ public class SocialMediaController {
      * Exposes the "/accounts/{accountId}/messages" endpoint for GET requests. Returns all Messages that were posted by
      * the given accountId.
      * @param  accountId The id of a given account.
-     * @return A ResponseEntity<List<Message>> which represents the HTTP reponse. Includes a status code of 200 (OK)
-     *         and a response body that includes all the messages with a postedBy value that matches the given accountId.
+     * @param  fields Optional sparse fieldset, e.g. "?fields=messageId,messageText".
+     * @param  from Optional earliest timePostedEpoch, inclusive.
+     * @param  to Optional latest timePostedEpoch, inclusive.
+     * @param  page The zero-based page of a time-range query.
+     * @param  size Optional page size of a time-range query.
+     * @return A ResponseEntity<List<MessageView>> which represents the HTTP reponse. Includes a status code of 200 (OK)
+     *         and a response body that includes all the messages with a postedBy value that matches the given accountId,
+     *         or the requested page of them within the time range when from or to is given.
      */
     @GetMapping("/accounts/{accountId}/messages")
-    public ResponseEntity<List<Message>> getAllMessagesByPostedBy(@PathVariable int accountId) {
-        return ResponseEntity.status(200).body(messageService.getAllMessagesByPostedBy(accountId));
+    public ResponseEntity<List<MessageView>> getAllMessagesByPostedBy(@PathVariable int accountId,
+            @RequestParam(required = false) List<String> fields, @RequestParam(required = false) Long from,
+            @RequestParam(required = false) Long to, @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        if(from == null && to == null) {
+            return ResponseEntity.status(200).body(messageService.getAllMessagesByPostedBy(accountId, fields));
+        }
+        return pageResponse(messageService.getMessagesPostedBetween(accountId, from, to, fields, page, size));
+    }
+
+    /**
+     * Builds the response for one page of messages, linking to the next page when there is one.
+     * @param  slice The page of messages.
+     * @return A ResponseEntity<List<MessageView>> with a status code of 200 (OK), the messages of the page, and a
+     *         Link header with rel="next" when more messages follow.
+     */
+    private ResponseEntity<List<MessageView>> pageResponse(Slice<MessageView> slice) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(200);
+        if(slice.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", slice.getNumber() + 1)
+                    .replaceQueryParam("size", slice.getSize())
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(slice.getContent());
+    }
+
+    /**
+     * Exposes the "/accounts/{accountId}/stats" endpoint for GET requests. Returns the posting statistics of the
+     * given accountId from the in-memory aggregates.
+     * @param  accountId The id of a given account.
+     * @return A ResponseEntity<AccountStatsView> which represents the HTTP reponse. Includes a status code of 200 (OK)
+     *         and a response body with the message count, first and last post time, and posts in the last 24 hours.
+     */
+    @GetMapping("/accounts/{accountId}/stats")
+    public ResponseEntity<AccountStatsView> getAccountStats(@PathVariable int accountId) {
+        return ResponseEntity.status(200).body(accountStatsService.getStats(accountId));
+    }
+
+    /**
+     * Exposes the "/trending/accounts" endpoint for GET requests. Returns the accounts that posted the most messages
+     * in the trending window from the in-memory sketches.
+     * @param  limit The largest number of accounts to return.
+     * @return A ResponseEntity<TrendingView<Integer>> which represents the HTTP reponse. Includes a status code of
+     *         200 (OK) and a response body with the top accountIds, their estimated message counts and the estimated
+     *         number of distinct posters in the window.
+     */
+    @GetMapping("/trending/accounts")
+    public ResponseEntity<TrendingView<Integer>> getTopPosters(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.status(200).body(trendingService.getTopPosters(limit));
+    }
+
+    /**
+     * Exposes the "/trending/terms" endpoint for GET requests. Returns the terms used in the most messages in the
+     * trending window from the in-memory sketches.
+     * @param  limit The largest number of terms to return.
+     * @return A ResponseEntity<TrendingView<String>> which represents the HTTP reponse. Includes a status code of
+     *         200 (OK) and a response body with the top terms, the estimated number of messages using them and the
+     *         estimated number of distinct posters in the window.
+     */
+    @GetMapping("/trending/terms")
+    public ResponseEntity<TrendingView<String>> getTrendingTerms(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.status(200).body(trendingService.getTrendingTerms(limit));
     }
 
     /**
@@ -162,6 +383,7 @@ public class SocialMediaController {
     @ExceptionHandler(DataIntegrityViolationException.class)
     @ResponseStatus(HttpStatus.CONFLICT)
     public String handleDataIntegrityViolationException(DataIntegrityViolationException ex) {
+        conflictErrors.increment();
         return ex.getMessage();
     }
 
@@ -174,6 +396,7 @@ public class SocialMediaController {
     @ExceptionHandler(InvalidModelFieldValuesException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleInvalidModelFieldValuesException(InvalidModelFieldValuesException ex) {
+        invalidFieldErrors.increment();
         return ex.getMessage();
     }
 
@@ -186,7 +409,75 @@ public class SocialMediaController {
     @ExceptionHandler(InvalidLoginException.class)
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
     public String handleInvalidLoginException(InvalidLoginException ex) {
+        invalidLoginErrors.increment();
+        return ex.getMessage();
+    }
+
+    /**
+     * Exception handler for a RateLimitExceededException. Returns a 429 (Too Many Requests) status code, a
+     * Retry-After header and an exception message.
+     * @param  ex The RateLimitExceededException that was thrown.
+     * @return A ResponseEntity<String> with the exception message.
+     */
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> handleRateLimitExceededException(RateLimitExceededException ex) {
+        rateLimitErrors.increment();
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    /**
+     * Exception handler for a PayloadTooLargeException, which is thrown while reading a request body without a
+     * Content-Length that is larger than the limit. Returns a 413 (Payload Too Large) status code and an
+     * exception message.
+     * @param  ex The PayloadTooLargeException that was thrown.
+     * @return A String of the exception message.
+     */
+    @ExceptionHandler(PayloadTooLargeException.class)
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public String handlePayloadTooLargeException(PayloadTooLargeException ex) {
+        payloadTooLargeErrors.increment();
+        return ex.getMessage();
+    }
+
+    /**
+     * Exception handler for an IdempotencyKeyReusedException. Returns a 422 (Unprocessable Entity) status code and
+     * an exception message.
+     * @param  ex The IdempotencyKeyReusedException that was thrown.
+     * @return A String of the exception message.
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public String handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        idempotencyKeyReusedErrors.increment();
         return ex.getMessage();
     }
 
+    /**
+     * Exception handler for a ChangeLogResetException. Returns a 410 (Gone) status code and an exception message
+     * that names the sequence number to read the changes from after reloading the messages.
+     * @param  ex The ChangeLogResetException that was thrown.
+     * @return A String of the exception message.
+     */
+    @ExceptionHandler(ChangeLogResetException.class)
+    @ResponseStatus(HttpStatus.GONE)
+    public String handleChangeLogResetException(ChangeLogResetException ex) {
+        changeLogResetErrors.increment();
+        return ex.getMessage();
+    }
+
+    /**
+     * Registers the app.errors counter of one exception type, or returns it when it is registered already. The
+     * filters that reject requests before the controller count into the same counters through this method.
+     * @param  meterRegistry The registry to register the counter in.
+     * @param  type The exception type the counter counts.
+     * @return Returns the counter, tagged with the simple name of the exception type.
+     */
+    public static Counter errorCounter(MeterRegistry meterRegistry, Class<? extends Exception> type) {
+        return Counter.builder("app.errors")
+                .description("Requests rejected with an error response, by exception type")
+                .tag("exception", type.getSimpleName())
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,114 @@
+package com.example.dto;
+
+/**
+ * AccountStats holds the posting aggregates of one account as the message store computes them, which
+ * AccountStatsService loads its in-memory counters from.
+ */
+public class AccountStats {
+    /**
+     * The id of the account these aggregates belong to.
+     */
+    private Integer accountId;
+    /**
+     * The number of messages posted by the account.
+     */
+    private Long messageCount;
+    /**
+     * The smallest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    private Long firstPostEpoch;
+    /**
+     * The largest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    private Long lastPostEpoch;
+
+    /**
+     * A default, no-args constructor.
+     */
+    public AccountStats() {
+    }
+
+    /**
+     * Constructor with all fields. Also used by JPQL constructor expressions that aggregate the message table.
+     * @param accountId
+     * @param messageCount
+     * @param firstPostEpoch
+     * @param lastPostEpoch
+     */
+    public AccountStats(Integer accountId, Long messageCount, Long firstPostEpoch, Long lastPostEpoch) {
+        this.accountId = accountId;
+        this.messageCount = messageCount;
+        this.firstPostEpoch = firstPostEpoch;
+        this.lastPostEpoch = lastPostEpoch;
+    }
+
+    /**
+     * @return accountId
+     */
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @param accountId
+     */
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    /**
+     * @return messageCount
+     */
+    public Long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @param messageCount
+     */
+    public void setMessageCount(Long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    /**
+     * @return firstPostEpoch
+     */
+    public Long getFirstPostEpoch() {
+        return firstPostEpoch;
+    }
+
+    /**
+     * @param firstPostEpoch
+     */
+    public void setFirstPostEpoch(Long firstPostEpoch) {
+        this.firstPostEpoch = firstPostEpoch;
+    }
+
+    /**
+     * @return lastPostEpoch
+     */
+    public Long getLastPostEpoch() {
+        return lastPostEpoch;
+    }
+
+    /**
+     * @param lastPostEpoch
+     */
+    public void setLastPostEpoch(Long lastPostEpoch) {
+        this.lastPostEpoch = lastPostEpoch;
+    }
+
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+                "accountId=" + accountId +
+                ", messageCount=" + messageCount +
+                ", firstPostEpoch=" + firstPostEpoch +
+                ", lastPostEpoch=" + lastPostEpoch +
+                '}';
+    }
+}
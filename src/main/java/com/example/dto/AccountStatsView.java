@@ -0,0 +1,79 @@
+package com.example.dto;
+
+/**
+ * AccountStatsView is the response body of the account statistics endpoint.
+ */
+public final class AccountStatsView {
+    /**
+     * The id of the account.
+     */
+    private final Integer accountId;
+    /**
+     * The number of messages posted by the account.
+     */
+    private final long messageCount;
+    /**
+     * The earliest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    private final Long firstPostEpoch;
+    /**
+     * The latest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    private final Long lastPostEpoch;
+    /**
+     * The number of messages with a timePostedEpoch within the last 24 hours, at hour granularity.
+     */
+    private final long postsLast24h;
+
+    /**
+     * Constructor with all fields.
+     * @param accountId
+     * @param messageCount
+     * @param firstPostEpoch
+     * @param lastPostEpoch
+     * @param postsLast24h
+     */
+    public AccountStatsView(Integer accountId, long messageCount, Long firstPostEpoch, Long lastPostEpoch,
+            long postsLast24h) {
+        this.accountId = accountId;
+        this.messageCount = messageCount;
+        this.firstPostEpoch = firstPostEpoch;
+        this.lastPostEpoch = lastPostEpoch;
+        this.postsLast24h = postsLast24h;
+    }
+
+    /**
+     * @return accountId
+     */
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return messageCount
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * @return firstPostEpoch
+     */
+    public Long getFirstPostEpoch() {
+        return firstPostEpoch;
+    }
+
+    /**
+     * @return lastPostEpoch
+     */
+    public Long getLastPostEpoch() {
+        return lastPostEpoch;
+    }
+
+    /**
+     * @return postsLast24h
+     */
+    public long getPostsLast24h() {
+        return postsLast24h;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dto;
+
+import java.util.List;
+
+import com.example.entity.MessageChange;
+
+/**
+ * ChangeFeedView is the response body of the message change feed. A client applies the changes in order and
+ * passes nextSince as the since parameter of its next request.
+ */
+public final class ChangeFeedView {
+    /**
+     * The changes after the requested sequence number, in order.
+     */
+    private final List<MessageChange> changes;
+    /**
+     * The sequence number to resume from.
+     */
+    private final long nextSince;
+    /**
+     * True if more changes are available right away.
+     */
+    private final boolean hasMore;
+
+    /**
+     * Constructor with all fields.
+     * @param changes
+     * @param nextSince
+     * @param hasMore
+     */
+    public ChangeFeedView(List<MessageChange> changes, long nextSince, boolean hasMore) {
+        this.changes = changes;
+        this.nextSince = nextSince;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return changes
+     */
+    public List<MessageChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return nextSince
+     */
+    public long getNextSince() {
+        return nextSince;
+    }
+
+    /**
+     * @return hasMore
+     */
+    public boolean isHasMore() {
+        return hasMore;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.dto;
+
+/**
+ * ImportReport summarizes a bulk import of messages from a file.
+ */
+public final class ImportReport {
+    /**
+     * The byte offset the import started from, greater than 0 when it resumed from a checkpoint.
+     */
+    private final long resumedFromOffset;
+    /**
+     * The byte offset the import reached.
+     */
+    private final long byteOffset;
+    /**
+     * The number of lines read so far, over every run of the import.
+     */
+    private final long lineNumber;
+    /**
+     * The number of messages inserted so far, over every run of the import.
+     */
+    private final long importedRows;
+    /**
+     * The number of rows rejected so far, over every run of the import.
+     */
+    private final long rejectedRows;
+
+    /**
+     * Constructor with all fields.
+     * @param resumedFromOffset
+     * @param byteOffset
+     * @param lineNumber
+     * @param importedRows
+     * @param rejectedRows
+     */
+    public ImportReport(long resumedFromOffset, long byteOffset, long lineNumber, long importedRows,
+            long rejectedRows) {
+        this.resumedFromOffset = resumedFromOffset;
+        this.byteOffset = byteOffset;
+        this.lineNumber = lineNumber;
+        this.importedRows = importedRows;
+        this.rejectedRows = rejectedRows;
+    }
+
+    /**
+     * @return resumedFromOffset
+     */
+    public long getResumedFromOffset() {
+        return resumedFromOffset;
+    }
+
+    /**
+     * @return byteOffset
+     */
+    public long getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * @return lineNumber
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return importedRows
+     */
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    /**
+     * @return rejectedRows
+     */
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+                "resumedFromOffset=" + resumedFromOffset +
+                ", byteOffset=" + byteOffset +
+                ", lineNumber=" + lineNumber +
+                ", importedRows=" + importedRows +
+                ", rejectedRows=" + rejectedRows +
+                '}';
+    }
+}
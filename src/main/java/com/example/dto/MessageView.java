@@ -0,0 +1,129 @@
+package com.example.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * MessageView is an immutable, read-only projection of a row in the message table. List endpoints load
+ * MessageViews through constructor expressions instead of managed Message entities, so no entity is put
+ * into the persistence context or dirty checked just to be serialized. Fields that were not selected by a
+ * sparse fieldset are left null and omitted from the JSON output.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class MessageView {
+    /**
+     * The names of the fields that can be requested through a sparse fieldset, in their JSON order.
+     */
+    public static final List<String> FIELDS = List.of("messageId", "postedBy", "messageText", "timePostedEpoch");
+
+    /**
+     * The id of the message.
+     */
+    private final Integer messageId;
+    /**
+     * The id of the account that posted the message.
+     */
+    private final Integer postedBy;
+    /**
+     * The text of the message.
+     */
+    private final String messageText;
+    /**
+     * The epoch time in seconds when the message was posted.
+     */
+    private final Long timePostedEpoch;
+
+    /**
+     * Parameterized constructor used by JPQL constructor expressions and sparse fieldset queries.
+     * @param messageId
+     * @param postedBy
+     * @param messageText
+     * @param timePostedEpoch
+     */
+    public MessageView(Integer messageId, Integer postedBy, String messageText, Long timePostedEpoch) {
+        this.messageId = messageId;
+        this.postedBy = postedBy;
+        this.messageText = messageText;
+        this.timePostedEpoch = timePostedEpoch;
+    }
+
+    /**
+     * Creates a MessageView with every field of a Message entity.
+     * @param  message The message to copy.
+     * @return Returns a new MessageView holding the current values of message.
+     */
+    public static MessageView of(Message message) {
+        return new MessageView(message.getMessageId(), message.getPostedBy(), message.getMessageText(),
+                message.getTimePostedEpoch());
+    }
+
+    /**
+     * @return messageId
+     */
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return postedBy
+     */
+    public Integer getPostedBy() {
+        return postedBy;
+    }
+
+    /**
+     * @return messageText
+     */
+    public String getMessageText() {
+        return messageText;
+    }
+
+    /**
+     * @return timePostedEpoch
+     */
+    public Long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    /**
+     * Two MessageViews are equal when all of their fields are equal.
+     * @param obj the other object.
+     * @return true if obj is equal to this object.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        MessageView other = (MessageView) obj;
+        return Objects.equals(messageId, other.messageId)
+                && Objects.equals(postedBy, other.postedBy)
+                && Objects.equals(messageText, other.messageText)
+                && Objects.equals(timePostedEpoch, other.timePostedEpoch);
+    }
+
+    /**
+     * @return a hash code consistent with equals().
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(messageId, postedBy, messageText, timePostedEpoch);
+    }
+
+    /**
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageView{" +
+                "messageId=" + messageId +
+                ", postedBy=" + postedBy +
+                ", messageText='" + messageText + '\'' +
+                ", timePostedEpoch=" + timePostedEpoch +
+                '}';
+    }
+}
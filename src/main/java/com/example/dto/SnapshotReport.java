@@ -0,0 +1,89 @@
+package com.example.dto;
+
+/**
+ * SnapshotReport summarizes the backup or restore of a snapshot of the account and message tables.
+ */
+public final class SnapshotReport {
+    /**
+     * The name of the snapshot file.
+     */
+    private final String name;
+    /**
+     * The number of accounts written or loaded.
+     */
+    private final long accounts;
+    /**
+     * The number of messages written or loaded.
+     */
+    private final long messages;
+    /**
+     * The size of the compressed snapshot file.
+     */
+    private final long bytes;
+    /**
+     * How long the backup or restore took.
+     */
+    private final long elapsedMs;
+
+    /**
+     * Constructor with all fields.
+     * @param name
+     * @param accounts
+     * @param messages
+     * @param bytes
+     * @param elapsedMs
+     */
+    public SnapshotReport(String name, long accounts, long messages, long bytes, long elapsedMs) {
+        this.name = name;
+        this.accounts = accounts;
+        this.messages = messages;
+        this.bytes = bytes;
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return accounts
+     */
+    public long getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return messages
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return elapsedMs
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotReport{" +
+                "name='" + name + '\'' +
+                ", accounts=" + accounts +
+                ", messages=" + messages +
+                ", bytes=" + bytes +
+                ", elapsedMs=" + elapsedMs +
+                '}';
+    }
+}
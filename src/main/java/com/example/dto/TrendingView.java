@@ -0,0 +1,108 @@
+package com.example.dto;
+
+import java.util.List;
+
+/**
+ * TrendingView is the response body of the trending endpoints: the top keys of a time window with their
+ * estimated counts, and the estimated number of distinct accounts that posted within the window.
+ * @param <K> The type of the keys, accountIds or terms.
+ */
+public final class TrendingView<K> {
+    /**
+     * The start of the window, an epoch second at a bucket boundary.
+     */
+    private final long from;
+    /**
+     * The end of the window, an epoch second.
+     */
+    private final long to;
+    /**
+     * The estimated number of distinct accounts that posted within the window.
+     */
+    private final long distinctPosters;
+    /**
+     * The top keys, the one with the highest count first.
+     */
+    private final List<Item<K>> items;
+
+    /**
+     * Constructor with all fields.
+     * @param from
+     * @param to
+     * @param distinctPosters
+     * @param items
+     */
+    public TrendingView(long from, long to, long distinctPosters, List<Item<K>> items) {
+        this.from = from;
+        this.to = to;
+        this.distinctPosters = distinctPosters;
+        this.items = items;
+    }
+
+    /**
+     * @return from
+     */
+    public long getFrom() {
+        return from;
+    }
+
+    /**
+     * @return to
+     */
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * @return distinctPosters
+     */
+    public long getDistinctPosters() {
+        return distinctPosters;
+    }
+
+    /**
+     * @return items
+     */
+    public List<Item<K>> getItems() {
+        return items;
+    }
+
+    /**
+     * Item is one top key and its estimated count, which is never below its true count.
+     * @param <K> The type of the key.
+     */
+    public static final class Item<K> {
+        /**
+         * The accountId or term.
+         */
+        private final K key;
+        /**
+         * The estimated number of messages within the window.
+         */
+        private final long count;
+
+        /**
+         * Constructor with all fields.
+         * @param key
+         * @param count
+         */
+        public Item(K key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        /**
+         * @return key
+         */
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * @return count
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+}
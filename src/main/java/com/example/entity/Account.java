@@ -2,6 +2,9 @@ package com.example.entity;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * This is a class that models an Account.
  *
@@ -9,6 +12,8 @@ import javax.persistence.*;
  */
 @Entity
 @Table(name="account")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Account {
     /**
      * An id for this Account. You should use this as the Entity's ID.
@@ -0,0 +1,158 @@
+package com.example.entity;
+
+import javax.persistence.*;
+
+import org.springframework.data.domain.Persistable;
+
+/**
+ * This is a class that models a row of the message_archive table, which holds the messages the retention job
+ * moved out of the message table. Rows are only ever inserted, so the class reports itself as new and save()
+ * inserts without first selecting the id.
+ */
+@Entity
+@Table(name="message_archive")
+public class ArchivedMessage implements Persistable<Integer> {
+    /**
+     * The messageId the message had in the message table.
+     */
+    @Column(name="messageId")
+    @Id
+    private Integer messageId;
+    /**
+     * The id of the account that posted the message.
+     */
+    @Column(name="postedBy")
+    private Integer postedBy;
+    /**
+     * The text of the message.
+     */
+    @Column(name="messageText")
+    private String messageText;
+    /**
+     * The epoch time in seconds when the message was posted.
+     */
+    @Column(name="timePostedEpoch")
+    private Long timePostedEpoch;
+    /**
+     * The epoch time in seconds when the message was archived.
+     */
+    @Column(name="archivedAt")
+    private Long archivedAt;
+
+    /**
+     * A default, no-args constructor is needed by JPA.
+     */
+    public ArchivedMessage() {
+    }
+
+    /**
+     * Constructor that archives a message.
+     * @param messageId
+     * @param postedBy
+     * @param messageText
+     * @param timePostedEpoch
+     * @param archivedAt
+     */
+    public ArchivedMessage(Integer messageId, Integer postedBy, String messageText, Long timePostedEpoch,
+            Long archivedAt) {
+        this.messageId = messageId;
+        this.postedBy = postedBy;
+        this.messageText = messageText;
+        this.timePostedEpoch = timePostedEpoch;
+        this.archivedAt = archivedAt;
+    }
+
+    /**
+     * Converts the archived row back into the Message it was archived from.
+     * @return Returns a detached Message with the archived values.
+     */
+    public Message toMessage() {
+        return new Message(messageId, postedBy, messageText, timePostedEpoch);
+    }
+
+    /**
+     * @return messageId
+     */
+    @Override
+    public Integer getId() {
+        return messageId;
+    }
+
+    /**
+     * @return Returns true, as archived rows are never updated.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    /**
+     * @return messageId
+     */
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @param messageId
+     */
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+
+    /**
+     * @return postedBy
+     */
+    public Integer getPostedBy() {
+        return postedBy;
+    }
+
+    /**
+     * @param postedBy
+     */
+    public void setPostedBy(Integer postedBy) {
+        this.postedBy = postedBy;
+    }
+
+    /**
+     * @return messageText
+     */
+    public String getMessageText() {
+        return messageText;
+    }
+
+    /**
+     * @param messageText
+     */
+    public void setMessageText(String messageText) {
+        this.messageText = messageText;
+    }
+
+    /**
+     * @return timePostedEpoch
+     */
+    public Long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    /**
+     * @param timePostedEpoch
+     */
+    public void setTimePostedEpoch(Long timePostedEpoch) {
+        this.timePostedEpoch = timePostedEpoch;
+    }
+
+    /**
+     * @return archivedAt
+     */
+    public Long getArchivedAt() {
+        return archivedAt;
+    }
+
+    /**
+     * @param archivedAt
+     */
+    public void setArchivedAt(Long archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.entity;
+
+import javax.persistence.*;
+
+/**
+ * This is a class that models a row of the idempotency_key table, which optionally persists the responses of
+ * requests sent with an Idempotency-Key header so retries are recognised across restarts.
+ */
+@Entity
+@Table(name="idempotency_key")
+public class IdempotencyRecord {
+    /**
+     * The route scope and the client supplied key, separated by a colon.
+     */
+    @Column(name="idempotencyKey")
+    @Id
+    private String idempotencyKey;
+    /**
+     * The fingerprint of the request the key was first used with.
+     */
+    @Column(name="requestHash")
+    private String requestHash;
+    /**
+     * The HTTP status code of the original response.
+     */
+    @Column(name="status")
+    private Integer status;
+    /**
+     * The JSON body of the original response.
+     */
+    @Column(name="body")
+    @Lob
+    private String body;
+    /**
+     * The epoch time in milliseconds when the original response was recorded.
+     */
+    @Column(name="createdAt")
+    private Long createdAt;
+
+    /**
+     * A default, no-args constructor is needed by JPA.
+     */
+    public IdempotencyRecord() {
+    }
+
+    /**
+     * Constructor with all fields.
+     * @param idempotencyKey
+     * @param requestHash
+     * @param status
+     * @param body
+     * @param createdAt
+     */
+    public IdempotencyRecord(String idempotencyKey, String requestHash, Integer status, String body,
+            Long createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.status = status;
+        this.body = body;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * @return idempotencyKey
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * @param idempotencyKey
+     */
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * @return requestHash
+     */
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    /**
+     * @param requestHash
+     */
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    /**
+     * @return status
+     */
+    public Integer getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status
+     */
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    /**
+     * @return body
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @param body
+     */
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    /**
+     * @return createdAt
+     */
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * @param createdAt
+     */
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
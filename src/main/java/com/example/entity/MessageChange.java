@@ -0,0 +1,167 @@
+package com.example.entity;
+
+import javax.persistence.*;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * This is a class that models a row of the message_change log. Every create and update of a message is logged
+ * as an UPSERT carrying the new state of the message, and every delete as a DELETE tombstone carrying only the
+ * messageId. A snapshot restore is logged as a RESET, which replaces the rows before it. Rows are ordered by a
+ * monotonically increasing changeSeq.
+ */
+@Entity
+@Table(name="message_change")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MessageChange {
+    /**
+     * Change type of a created or updated message.
+     */
+    public static final String UPSERT = "UPSERT";
+    /**
+     * Change type of a deleted message.
+     */
+    public static final String DELETE = "DELETE";
+    /**
+     * Change type of a restore that replaced every message. It has messageId 0 and is never returned by the feed.
+     */
+    public static final String RESET = "RESET";
+
+    /**
+     * The position of this change in the log.
+     */
+    @Column(name="changeSeq")
+    @Id
+    private Long changeSeq;
+    /**
+     * UPSERT or DELETE.
+     */
+    @Column(name="changeType")
+    private String changeType;
+    /**
+     * The id of the changed message.
+     */
+    @Column(name="messageId")
+    private Integer messageId;
+    /**
+     * The postedBy value of an upserted message, null for tombstones.
+     */
+    @Column(name="postedBy")
+    private Integer postedBy;
+    /**
+     * The messageText of an upserted message, null for tombstones.
+     */
+    @Column(name="messageText")
+    private String messageText;
+    /**
+     * The timePostedEpoch of an upserted message, null for tombstones.
+     */
+    @Column(name="timePostedEpoch")
+    private Long timePostedEpoch;
+
+    /**
+     * A default, no-args constructor is needed by JPA and Jackson.
+     */
+    public MessageChange() {
+    }
+
+    /**
+     * @return changeSeq
+     */
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    /**
+     * @param changeSeq
+     */
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
+    /**
+     * @return changeType
+     */
+    public String getChangeType() {
+        return changeType;
+    }
+
+    /**
+     * @param changeType
+     */
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    /**
+     * @return messageId
+     */
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @param messageId
+     */
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+
+    /**
+     * @return postedBy
+     */
+    public Integer getPostedBy() {
+        return postedBy;
+    }
+
+    /**
+     * @param postedBy
+     */
+    public void setPostedBy(Integer postedBy) {
+        this.postedBy = postedBy;
+    }
+
+    /**
+     * @return messageText
+     */
+    public String getMessageText() {
+        return messageText;
+    }
+
+    /**
+     * @param messageText
+     */
+    public void setMessageText(String messageText) {
+        this.messageText = messageText;
+    }
+
+    /**
+     * @return timePostedEpoch
+     */
+    public Long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    /**
+     * @param timePostedEpoch
+     */
+    public void setTimePostedEpoch(Long timePostedEpoch) {
+        this.timePostedEpoch = timePostedEpoch;
+    }
+
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageChange{" +
+                "changeSeq=" + changeSeq +
+                ", changeType='" + changeType + '\'' +
+                ", messageId=" + messageId +
+                ", postedBy=" + postedBy +
+                ", messageText='" + messageText + '\'' +
+                ", timePostedEpoch=" + timePostedEpoch +
+                '}';
+    }
+}
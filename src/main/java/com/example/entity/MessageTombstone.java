@@ -0,0 +1,43 @@
+package com.example.entity;
+
+import javax.persistence.*;
+
+/**
+ * This is a class that models a row of the message_tombstone table. In soft-delete mode a deleted message keeps its
+ * row in the message table until the compactor purges it, and its tombstone hides it from every read meanwhile.
+ */
+@Entity
+@Table(name="message_tombstone")
+public class MessageTombstone {
+    /**
+     * The messageId of the deleted message.
+     */
+    @Column(name="messageId")
+    @Id
+    private Integer messageId;
+    /**
+     * The epoch time in seconds when the message was deleted.
+     */
+    @Column(name="deletedAt")
+    private Long deletedAt;
+
+    /**
+     * A default, no-args constructor is needed by JPA.
+     */
+    public MessageTombstone() {
+    }
+
+    /**
+     * @return messageId
+     */
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * @return deletedAt
+     */
+    public Long getDeletedAt() {
+        return deletedAt;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.event;
+
+import com.example.dto.MessageView;
+
+/**
+ * MessageChangedEvent is published by MessageService whenever a message is created, updated or deleted.
+ * Listeners that maintain derived state should use @TransactionalEventListener so they only observe
+ * changes that have been committed.
+ */
+public class MessageChangedEvent {
+    /**
+     * The kind of change that was made to a message.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    /**
+     * The kind of change.
+     */
+    private final Type type;
+    /**
+     * The message after it was created or updated, or the message as it was before it was deleted.
+     */
+    private final MessageView message;
+
+    /**
+     * Parameterized constructor that sets the type of change and the affected message.
+     * @param type
+     * @param message
+     */
+    public MessageChangedEvent(Type type, MessageView message) {
+        this.type = type;
+        this.message = message;
+    }
+
+    /**
+     * @return type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return message
+     */
+    public MessageView getMessage() {
+        return message;
+    }
+
+    /**
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageChangedEvent{" +
+                "type=" + type +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.exception;
+
+/**
+ * ChangeLogResetException is a class that represents a runtime exception for when a client asks for the changes
+ * since a sequence number from before the last reset of the change log, so it has to reload every message.
+ */
+public class ChangeLogResetException extends RuntimeException {
+    /**
+     * The sequence number of the reset, from which the client can read the changes after reloading.
+     */
+    private final long resetSequence;
+
+    /**
+     * Parameterized constructor that takes in and sets an exception message and the sequence number of the reset.
+     * No stack trace is captured, as the exception is only used to produce an error response.
+     * @param message An exception message.
+     * @param resetSequence The sequence number of the reset.
+     */
+    public ChangeLogResetException(String message, long resetSequence) {
+        super(message, null, false, false);
+        this.resetSequence = resetSequence;
+    }
+
+    /**
+     * @return resetSequence
+     */
+    public long getResetSequence() {
+        return resetSequence;
+    }
+}
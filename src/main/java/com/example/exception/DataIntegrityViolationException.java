@@ -7,10 +7,10 @@ package com.example.exception;
  */
 public class DataIntegrityViolationException extends RuntimeException {
     /**
-     * Parameterized constructor that takes in and sets an exception message.
+     * Parameterized constructor that takes in and sets an exception message, without a stack trace.
      * @param message An exception message.
      */
     public DataIntegrityViolationException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
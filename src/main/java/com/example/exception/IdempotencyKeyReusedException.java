@@ -0,0 +1,16 @@
+package com.example.exception;
+
+/**
+ * IdempotencyKeyReusedException is a class that represents a runtime exception for when a request reuses an
+ * Idempotency-Key that was first sent with a different request.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+    /**
+     * Parameterized constructor that takes in and sets an exception message. No stack trace is captured, as the
+     * exception is only used to produce an error response.
+     * @param message An exception message.
+     */
+    public IdempotencyKeyReusedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -8,11 +8,11 @@ package com.example.exception;
 public class InvalidLoginException extends RuntimeException {
 
     /**
-     * Parameterized constructor that takes in and sets an exception message.
+     * Parameterized constructor that takes in and sets an exception message, without a stack trace.
      * @param message An exception message.
      */
     public InvalidLoginException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.example.exception;
+
+import java.io.IOException;
+
+/**
+ * PayloadTooLargeException is a class that represents the exception thrown while reading a request body that
+ * is larger than the configured limit. It is an IOException because it is raised from the request's input
+ * stream, in the middle of JSON parsing.
+ */
+public class PayloadTooLargeException extends IOException {
+    /**
+     * Parameterized constructor that takes in and sets an exception message.
+     * @param message An exception message.
+     */
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+
+    /**
+     * Skips capturing the stack trace, as the exception is only used to produce an error response.
+     * @return Returns this exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.exception;
+
+/**
+ * RateLimitExceededException is a class that represents a runtime exception for when a client sent more write
+ * requests than its rate limit allows.
+ */
+public class RateLimitExceededException extends RuntimeException {
+    /**
+     * The number of seconds the client should wait before retrying.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Parameterized constructor that takes in and sets an exception message and the retry delay. No stack trace
+     * is captured, as the exception is thrown on every rejected request of a flooding client.
+     * @param message An exception message.
+     * @param retryAfterSeconds The number of seconds the client should wait before retrying.
+     */
+    public RateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return retryAfterSeconds
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.util.GradientConcurrencyLimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ConcurrencyLimitFilter sheds requests with 503 (Service Unavailable) once more requests are in flight than the
+ * server can handle at its normal latency, instead of letting them queue in Tomcat until they time out.
+ *
+ * GET requests and the other methods are limited separately, each by a GradientConcurrencyLimit that follows the
+ * latency of the requests it admitted. Within a limit, POST /login and POST /register may use the whole limit,
+ * GET /messages, which reads every message, only low-share of it, and every other request normal-share of it, so
+ * the expensive listing is shed first and logging in last. GET /messages?latest=N is served from memory and has
+ * normal priority. The Server-Sent Events stream is not limited, as its
+ * requests stay open for as long as the client listens.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    /**
+     * The response body of a shed request.
+     */
+    private static final String OVERLOADED_MESSAGE = "The server is overloaded, retry later.";
+
+    /**
+     * The limit of GET requests.
+     */
+    private final GradientConcurrencyLimit readLimit;
+    /**
+     * The limit of the other requests.
+     */
+    private final GradientConcurrencyLimit writeLimit;
+    /**
+     * The share of a limit requests of normal priority may use.
+     */
+    private final double normalShare;
+    /**
+     * The share of a limit GET /messages may use.
+     */
+    private final double lowShare;
+    /**
+     * Counts the shed requests, by limit and priority.
+     */
+    private final Counter[][] shed = new Counter[2][Priority.values().length];
+
+    /**
+     * Parameterized constructor that sets the limits and the priority shares, and registers the meters.
+     * @param readLimit The limit of GET requests.
+     * @param writeLimit The limit of the other requests.
+     * @param normalShare The share of a limit requests of normal priority may use.
+     * @param lowShare The share of a limit GET /messages may use.
+     * @param meterRegistry The registry of the app.concurrency meters.
+     */
+    public ConcurrencyLimitFilter(GradientConcurrencyLimit readLimit, GradientConcurrencyLimit writeLimit,
+            double normalShare, double lowShare, MeterRegistry meterRegistry) {
+        this.readLimit = readLimit;
+        this.writeLimit = writeLimit;
+        this.normalShare = normalShare;
+        this.lowShare = lowShare;
+        String[] names = { "read", "write" };
+        GradientConcurrencyLimit[] limits = { readLimit, writeLimit };
+        for(int i = 0; i < limits.length; i++) {
+            Gauge.builder("app.concurrency.limit", limits[i], GradientConcurrencyLimit::getLimit)
+                    .tag("limit", names[i]).register(meterRegistry);
+            Gauge.builder("app.concurrency.in_flight", limits[i], GradientConcurrencyLimit::getInFlight)
+                    .tag("limit", names[i]).register(meterRegistry);
+            for(Priority priority : Priority.values()) {
+                shed[i][priority.ordinal()] = Counter.builder("app.concurrency.shed")
+                        .tag("limit", names[i]).tag("priority", priority.name().toLowerCase())
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Admits the request within its limit and share, or answers it with 503.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        GradientConcurrencyLimit limit = read ? readLimit : writeLimit;
+        Priority priority = priorityOf(request, read);
+        double share = priority == Priority.HIGH ? 1.0 : priority == Priority.NORMAL ? normalShare : lowShare;
+        if(!limit.tryAcquire(share)) {
+            shed[read ? 0 : 1][priority.ordinal()].increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(OVERLOADED_MESSAGE);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Leaves the Server-Sent Events stream unlimited.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().endsWith("/stream");
+    }
+
+    /**
+     * @return Returns the priority of a request.
+     */
+    private static Priority priorityOf(HttpServletRequest request, boolean read) {
+        String path = request.getRequestURI();
+        if(!read && ("/login".equals(path) || "/register".equals(path))) {
+            return Priority.HIGH;
+        }
+        if(read && "/messages".equals(path) && request.getParameter("latest") == null) {
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+
+    /**
+     * The order in which requests are shed, LOW first.
+     */
+    private enum Priority {
+        LOW, NORMAL, HIGH
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.filter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.example.service.SqlStatisticsService;
+import com.example.service.SqlStatisticsService.RequestStatistics;
+
+/**
+ * QueryCountFilter reports the SQL statements a request executed in the X-Query-Count and X-Query-Time-Ms
+ * response headers, so hidden extra queries show up in every response during development and in tests.
+ *
+ * The response body is buffered until the request completes, because the headers can only be written before the
+ * body. The filter is meant for non-production environments and is only registered when
+ * app.sql-stats.response-headers is true. Streaming responses are not filtered.
+ */
+public class QueryCountFilter extends OncePerRequestFilter {
+    /**
+     * The header holding the number of executed statements.
+     */
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    /**
+     * The header holding the total execution time of the statements in milliseconds.
+     */
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+
+    /**
+     * Counts the statements of the current thread.
+     */
+    private final SqlStatisticsService sqlStatisticsService;
+
+    /**
+     * Parameterized constructor that sets the service the statements are counted by.
+     * @param sqlStatisticsService Counts the statements of the current thread.
+     */
+    public QueryCountFilter(SqlStatisticsService sqlStatisticsService) {
+        this.sqlStatisticsService = sqlStatisticsService;
+    }
+
+    /**
+     * Counts the statements executed while the rest of the chain handles the request and adds them as headers.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper bufferedResponse = new ContentCachingResponseWrapper(response);
+        RequestStatistics statistics = sqlStatisticsService.beginRequest();
+        try {
+            chain.doFilter(request, bufferedResponse);
+        }
+        finally {
+            sqlStatisticsService.endRequest();
+            if(!response.isCommitted()) {
+                response.setHeader(QUERY_COUNT_HEADER, Integer.toString(statistics.getCount()));
+                response.setHeader(QUERY_TIME_HEADER,
+                        String.format(Locale.ROOT, "%.3f", statistics.getElapsedNanos() / 1_000_000.0));
+            }
+            bufferedResponse.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Leaves the Server-Sent Events stream unbuffered.
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().endsWith("/stream");
+    }
+}
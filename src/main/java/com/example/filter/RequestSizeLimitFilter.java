@@ -0,0 +1,148 @@
+package com.example.filter;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.exception.PayloadTooLargeException;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * RequestSizeLimitFilter rejects request bodies larger than a fixed number of bytes before they are parsed.
+ *
+ * A request that declares a larger Content-Length is answered with 413 (Payload Too Large) without reading the
+ * body, and the connection is closed so the server does not drain it either. A body sent without a
+ * Content-Length is counted while it is read, and reading fails with a PayloadTooLargeException as soon as it
+ * passes the limit.
+ */
+public class RequestSizeLimitFilter extends OncePerRequestFilter {
+    /**
+     * The largest accepted request body in bytes.
+     */
+    private final long maxBodyBytes;
+    /**
+     * The response body of a rejected request, built once.
+     */
+    private final String tooLargeMessage;
+    /**
+     * Counts the requests rejected by their Content-Length.
+     */
+    private final Counter rejected;
+
+    /**
+     * Parameterized constructor that sets the body limit and the counter of rejected requests.
+     * @param maxBodyBytes The largest accepted request body in bytes.
+     * @param rejected Counts the requests rejected by their Content-Length.
+     */
+    public RequestSizeLimitFilter(long maxBodyBytes, Counter rejected) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.tooLargeMessage = "The request body must not be larger than " + maxBodyBytes + " bytes.";
+        this.rejected = rejected;
+    }
+
+    /**
+     * Rejects a request whose declared length is over the limit, and limits the body of a request without one.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        if(length > maxBodyBytes) {
+            rejected.increment();
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            response.setHeader(HttpHeaders.CONNECTION, "close");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(tooLargeMessage);
+            return;
+        }
+        if(length < 0 && !"GET".equals(request.getMethod())) {
+            chain.doFilter(new LimitedRequest(request), response);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * A request whose input stream fails once more than maxBodyBytes have been read.
+     */
+    private class LimitedRequest extends HttpServletRequestWrapper {
+        private ServletInputStream limited;
+
+        LimitedRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if(limited == null) {
+                limited = new LimitedInputStream(super.getInputStream());
+            }
+            return limited;
+        }
+    }
+
+    /**
+     * An input stream that counts the bytes read from the request.
+     */
+    private class LimitedInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+        private long count;
+
+        LimitedInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = delegate.read();
+            if(value >= 0) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = delegate.read(buffer, offset, length);
+            if(read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        private void count(int read) throws PayloadTooLargeException {
+            count += read;
+            if(count > maxBodyBytes) {
+                throw new PayloadTooLargeException(tooLargeMessage);
+            }
+        }
+    }
+}
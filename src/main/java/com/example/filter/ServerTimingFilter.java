@@ -0,0 +1,146 @@
+package com.example.filter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.service.RequestTraceService;
+import com.example.service.RequestTraceService.RequestTrace;
+
+/**
+ * ServerTimingFilter traces every request with the RequestTraceService and reports the time per layer in a
+ * Server-Timing response header. Only with detailed does the header list every span by its class and method, which
+ * is meant for local profiling, since it shows clients how the application is built.
+ *
+ * The header is added at the last moment it can be: when the response body is first accessed, or when the chain
+ * returns for a response without a body. Nothing is buffered, so the header covers everything up to the start of
+ * the response body, and the time spent writing the body is only part of the slow request records.
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+    /**
+     * The name of the response header.
+     */
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    /**
+     * Records the spans of the request.
+     */
+    private final RequestTraceService requestTraceService;
+    /**
+     * Whether the header reports every span instead of the time per layer.
+     */
+    private final boolean detailed;
+
+    /**
+     * Parameterized constructor that sets the service the requests are traced by.
+     * @param requestTraceService Records the spans of the request.
+     * @param detailed Whether the header reports every span instead of the time per layer.
+     */
+    public ServerTimingFilter(RequestTraceService requestTraceService, boolean detailed) {
+        this.requestTraceService = requestTraceService;
+        this.detailed = detailed;
+    }
+
+    /**
+     * Traces the rest of the chain and makes sure the Server-Timing header is written.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTrace trace = requestTraceService.beginRequest(request.getMethod(), request.getRequestURI());
+        ServerTimingResponse tracedResponse = new ServerTimingResponse(response, trace, detailed);
+        try {
+            chain.doFilter(request, tracedResponse);
+        }
+        finally {
+            tracedResponse.addServerTiming();
+            requestTraceService.endRequest(trace, response.getStatus());
+        }
+    }
+
+    /**
+     * A response that adds the Server-Timing header before its body is written or it is committed.
+     */
+    private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+        /**
+         * The trace the header is built from.
+         */
+        private final RequestTrace trace;
+        /**
+         * Whether the header reports every span.
+         */
+        private final boolean detailed;
+        /**
+         * Whether the header was added already.
+         */
+        private boolean added;
+
+        /**
+         * Parameterized constructor that wraps a response.
+         * @param response The response of the container.
+         * @param trace The trace the header is built from.
+         * @param detailed Whether the header reports every span.
+         */
+        ServerTimingResponse(HttpServletResponse response, RequestTrace trace, boolean detailed) {
+            super(response);
+            this.trace = trace;
+            this.detailed = detailed;
+        }
+
+        /**
+         * Adds the Server-Timing header once, unless the response is already committed.
+         */
+        void addServerTiming() {
+            if(!added) {
+                added = true;
+                if(!isCommitted()) {
+                    setHeader(SERVER_TIMING_HEADER, trace.toServerTiming(detailed));
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addServerTiming();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.interceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.example.service.RateLimitService;
+
+/**
+ * RateLimitInterceptor applies the per-IP token bucket to the message write endpoints before the request body
+ * is read. The per-account limit is applied by the controller once the postedBy value has been bound.
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    /**
+     * Service class that holds the token buckets.
+     */
+    private RateLimitService rateLimitService;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the RateLimitService dependency.
+     * @param rateLimitService
+     */
+    @Autowired
+    public RateLimitInterceptor(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
+    }
+
+    /**
+     * Takes a token from the bucket of the client IP address for POST and PATCH requests.
+     * @throws com.example.exception.RateLimitExceededException when the client has no tokens left.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String method = request.getMethod();
+        if("POST".equals(method) || "PATCH".equals(method)) {
+            rateLimitService.checkIp(request.getRemoteAddr());
+        }
+        return true;
+    }
+}
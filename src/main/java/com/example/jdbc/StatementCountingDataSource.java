@@ -0,0 +1,184 @@
+package com.example.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import com.example.service.RequestTraceService;
+import com.example.service.SqlStatisticsService;
+
+/**
+ * StatementCountingDataSource wraps a DataSource so every statement executed on its connections is reported to
+ * the SqlStatisticsService with its SQL and execution time. The time spent acquiring connections and executing
+ * statements is also added to the trace of the current request.
+ *
+ * Connections and statements are wrapped in JDK proxies that only intercept the methods that prepare or execute
+ * SQL, so Hibernate, Spring Data and JdbcTemplate are all counted and see the driver's own behaviour otherwise.
+ * A batch counts as one statement.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+    /**
+     * Receives the executed statements. It is looked up on first use so wrapping the DataSource does not create
+     * the statistics service and its dependencies ahead of the other beans.
+     */
+    private final ObjectProvider<SqlStatisticsService> statistics;
+    /**
+     * Receives the connection and statement times of the current request, looked up on first use as well.
+     */
+    private final ObjectProvider<RequestTraceService> tracing;
+
+    /**
+     * Parameterized constructor that sets the wrapped DataSource and the receivers of the statements.
+     * @param targetDataSource The DataSource whose connections are counted.
+     * @param statistics Receives the executed statements.
+     * @param tracing Receives the connection and statement times of the current request.
+     */
+    public StatementCountingDataSource(DataSource targetDataSource, ObjectProvider<SqlStatisticsService> statistics,
+            ObjectProvider<RequestTraceService> tracing) {
+        super(targetDataSource);
+        this.statistics = statistics;
+        this.tracing = tracing;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        tracing.getObject().recordConnectionAcquisition(System.nanoTime() - start);
+        return wrap(Connection.class, connection, new ConnectionHandler(connection));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        tracing.getObject().recordConnectionAcquisition(System.nanoTime() - start);
+        return wrap(Connection.class, connection, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Creates a proxy that implements one JDBC interface.
+     * @param  type The interface of the proxy.
+     * @param  target The object the proxy delegates to, which decides the class loader.
+     * @param  handler The handler of the proxy.
+     * @return Returns the proxy.
+     */
+    private static <T> T wrap(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(target.getClass().getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Calls a method on the proxied JDBC object, rethrowing the exception the method threw.
+     * @param  target The proxied object.
+     * @param  method The method to call.
+     * @param  args The arguments of the call.
+     * @return Returns the result of the call.
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch(InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Wraps the statements a connection creates.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        /**
+         * The connection of the driver or pool.
+         */
+        private final Connection target;
+
+        /**
+         * Parameterized constructor that sets the wrapped connection.
+         * @param target The connection of the driver or pool.
+         */
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        /**
+         * Wraps statements returned by createStatement, prepareStatement and prepareCall, and delegates everything
+         * else.
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementCountingDataSource.invoke(target, method, args);
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            if(result instanceof CallableStatement) {
+                return wrap(CallableStatement.class, (CallableStatement) result, new StatementHandler(result, sql));
+            }
+            if(result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, (PreparedStatement) result, new StatementHandler(result, sql));
+            }
+            if(result instanceof Statement) {
+                return wrap(Statement.class, (Statement) result, new StatementHandler(result, null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Times the execute methods of a statement.
+     */
+    private final class StatementHandler implements InvocationHandler {
+        /**
+         * The statement of the driver or pool.
+         */
+        private final Object target;
+        /**
+         * The SQL the statement was prepared with, or null for a plain Statement.
+         */
+        private final String preparedSql;
+
+        /**
+         * Parameterized constructor that sets the wrapped statement and its SQL.
+         * @param target The statement of the driver or pool.
+         * @param preparedSql The SQL the statement was prepared with, or null for a plain Statement.
+         */
+        StatementHandler(Object target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        /**
+         * Reports every execute call with its SQL and time, and delegates everything else.
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if(!method.getName().startsWith("execute")) {
+                return StatementCountingDataSource.invoke(target, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            long start = System.nanoTime();
+            try {
+                return StatementCountingDataSource.invoke(target, method, args);
+            }
+            finally {
+                long elapsedNanos = System.nanoTime() - start;
+                statistics.getObject().recordStatement(sql, elapsedNanos);
+                tracing.getObject().recordStatement(elapsedNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.json;
+
+import java.io.IOException;
+
+import org.springframework.boot.jackson.JsonComponent;
+
+import com.example.entity.Account;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * AccountDeserializer binds request bodies to Account field by field from the token stream, so a body is
+ * rejected at the first unknown field or at a username or password over 255 characters, the size of their
+ * columns, without binding the rest.
+ */
+@JsonComponent
+public class AccountDeserializer extends JsonDeserializer<Account> {
+    private static final int MAX_FIELD_LENGTH = 255;
+    private static final InvalidModelFieldValuesException FIELD_TOO_LONG =
+            new InvalidModelFieldValuesException("The account username and password must not be longer than 255 characters.");
+
+    /**
+     * Reads an Account from a JSON object.
+     * @throws InvalidModelFieldValuesException when the object has an unknown field or a username or password
+     *         over 255 characters.
+     */
+    @Override
+    public Account deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if(!parser.isExpectedStartObjectToken()) {
+            return (Account) context.handleUnexpectedToken(Account.class, parser);
+        }
+        Account account = new Account();
+        for(String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            JsonToken value = parser.nextToken();
+            switch(field) {
+                case "accountId":
+                    account.setAccountId(JsonFields.readValue(parser, context, Integer.class));
+                    break;
+                case "username":
+                case "password":
+                    if(value == JsonToken.VALUE_STRING && parser.getTextLength() > MAX_FIELD_LENGTH) {
+                        throw FIELD_TOO_LONG;
+                    }
+                    String text = JsonFields.readValue(parser, context, String.class);
+                    if("username".equals(field)) {
+                        account.setUsername(text);
+                    }
+                    else {
+                        account.setPassword(text);
+                    }
+                    break;
+                default:
+                    throw new InvalidModelFieldValuesException("Unknown account field: " + field);
+            }
+        }
+        return account;
+    }
+}
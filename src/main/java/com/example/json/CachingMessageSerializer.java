@@ -0,0 +1,177 @@
+package com.example.json;
+
+import java.io.IOException;
+
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+
+/**
+ * CachingMessageSerializer wraps the bean serializer Jackson builds for Message or MessageView. Writing JSON, it
+ * copies the message's encoding from the MessageJsonCache into the output, and encodes and caches the message
+ * with the wrapped serializer on a miss, so a list response is assembled from cached fragments.
+ *
+ * Only messages with every field set are cached, which leaves out sparse fieldsets. Smile, CBOR, pretty printed
+ * output and polymorphic typing are written by the wrapped serializer as before.
+ */
+public class CachingMessageSerializer extends JsonSerializer<Object>
+        implements ContextualSerializer, ResolvableSerializer {
+    /**
+     * The bean serializer of the message type.
+     */
+    private final JsonSerializer<Object> delegate;
+    /**
+     * Message or MessageView.
+     */
+    private final Class<?> type;
+    /**
+     * The cache of encoded messages.
+     */
+    private final MessageJsonCache cache;
+    /**
+     * Creates the generators that encode cache misses, when the output generator has no codec to take one from.
+     */
+    private final JsonFactory fallbackFactory = new JsonFactory();
+
+    /**
+     * Parameterized constructor that wraps a bean serializer.
+     * @param delegate The bean serializer of the message type.
+     * @param type Message or MessageView.
+     * @param cache The cache of encoded messages.
+     */
+    public CachingMessageSerializer(JsonSerializer<Object> delegate, Class<?> type, MessageJsonCache cache) {
+        this.delegate = delegate;
+        this.type = type;
+        this.cache = cache;
+    }
+
+    /**
+     * Creates a module that wraps the serializers of Message and MessageView.
+     * @param  cache The cache of encoded messages.
+     * @return Returns the module to register with the ObjectMapper.
+     */
+    @SuppressWarnings("unchecked")
+    public static SimpleModule module(MessageJsonCache cache) {
+        SimpleModule module = new SimpleModule("MessageJsonCache");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription description,
+                    JsonSerializer<?> serializer) {
+                Class<?> beanClass = description.getBeanClass();
+                if(beanClass == Message.class || beanClass == MessageView.class) {
+                    return new CachingMessageSerializer((JsonSerializer<Object>) serializer, beanClass, cache);
+                }
+                return serializer;
+            }
+        });
+        return module;
+    }
+
+    /**
+     * Writes the cached encoding of a message, encoding and caching it first on a miss.
+     */
+    @Override
+    public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Integer messageId;
+        Integer postedBy;
+        String messageText;
+        Long timePostedEpoch;
+        if(value instanceof Message) {
+            Message message = (Message) value;
+            messageId = message.getMessageId();
+            postedBy = message.getPostedBy();
+            messageText = message.getMessageText();
+            timePostedEpoch = message.getTimePostedEpoch();
+        }
+        else {
+            MessageView message = (MessageView) value;
+            messageId = message.getMessageId();
+            postedBy = message.getPostedBy();
+            messageText = message.getMessageText();
+            timePostedEpoch = message.getTimePostedEpoch();
+        }
+        if(messageId == null || postedBy == null || messageText == null || timePostedEpoch == null
+                || !(gen instanceof JsonGeneratorImpl) || gen.getPrettyPrinter() != null) {
+            delegate.serialize(value, gen, provider);
+            return;
+        }
+        RawJson json = cache.get(type, messageId, postedBy, messageText, timePostedEpoch);
+        if(json == null) {
+            json = new RawJson(encode(value, gen, provider));
+            cache.put(type, messageId, postedBy, messageText, timePostedEpoch, json);
+        }
+        gen.writeRawValue(json);
+    }
+
+    /**
+     * Writes typed values without the cache, as the type information is not part of the cached encoding.
+     */
+    @Override
+    public void serializeWithType(Object value, JsonGenerator gen, SerializerProvider provider,
+            TypeSerializer typeSerializer) throws IOException {
+        delegate.serializeWithType(value, gen, provider, typeSerializer);
+    }
+
+    /**
+     * Wraps the contextual serializer of the wrapped serializer.
+     */
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+            throws JsonMappingException {
+        JsonSerializer<?> contextual = provider.handleSecondaryContextualization(delegate, property);
+        if(contextual == delegate) {
+            return this;
+        }
+        @SuppressWarnings("unchecked")
+        JsonSerializer<Object> wrapped = (JsonSerializer<Object>) contextual;
+        return new CachingMessageSerializer(wrapped, type, cache);
+    }
+
+    /**
+     * Resolves the wrapped serializer.
+     */
+    @Override
+    public void resolve(SerializerProvider provider) throws JsonMappingException {
+        if(delegate instanceof ResolvableSerializer) {
+            ((ResolvableSerializer) delegate).resolve(provider);
+        }
+    }
+
+    /**
+     * @return Returns the type of the wrapped serializer.
+     */
+    @Override
+    public Class<Object> handledType() {
+        return delegate.handledType();
+    }
+
+    /**
+     * Encodes a message with the wrapped serializer.
+     * @param  value The message.
+     * @param  gen The generator of the response, whose codec supplies the JsonFactory.
+     * @param  provider The provider of the response.
+     * @return Returns the UTF-8 encoded JSON object.
+     */
+    private byte[] encode(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        JsonFactory factory = gen.getCodec() != null ? gen.getCodec().getFactory() : fallbackFactory;
+        ByteArrayBuilder bytes = new ByteArrayBuilder(128);
+        try(JsonGenerator encoder = factory.createGenerator(bytes)) {
+            delegate.serialize(value, encoder, provider);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.json;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+/**
+ * JsonFields holds the value reading shared by the request body deserializers.
+ */
+final class JsonFields {
+    private JsonFields() {
+    }
+
+    /**
+     * Reads the current value with Jackson's standard deserializer for its type, so coercions such as a number
+     * sent as a string behave as they do for bean binding.
+     * @param  parser The parser, positioned on the value.
+     * @param  context The deserialization context.
+     * @param  type The type of the value.
+     * @return Returns the value, or null for a JSON null.
+     */
+    static <T> T readValue(JsonParser parser, DeserializationContext context, Class<T> type) throws IOException {
+        if(parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return context.readValue(parser, type);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.json;
+
+import java.io.IOException;
+
+import org.springframework.boot.jackson.JsonComponent;
+
+import com.example.entity.Message;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.example.service.MessageService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * MessageDeserializer binds request bodies to Message field by field from the token stream, so a body is
+ * rejected at the first unknown field or at a messageText over 255 characters, without binding the rest.
+ */
+@JsonComponent
+public class MessageDeserializer extends JsonDeserializer<Message> {
+    /**
+     * Reads a Message from a JSON object.
+     * @throws InvalidModelFieldValuesException when the object has an unknown field or a messageText over
+     *         255 characters.
+     */
+    @Override
+    public Message deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if(!parser.isExpectedStartObjectToken()) {
+            return (Message) context.handleUnexpectedToken(Message.class, parser);
+        }
+        Message message = new Message();
+        for(String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            JsonToken value = parser.nextToken();
+            switch(field) {
+                case "messageId":
+                    message.setMessageId(JsonFields.readValue(parser, context, Integer.class));
+                    break;
+                case "postedBy":
+                    message.setPostedBy(JsonFields.readValue(parser, context, Integer.class));
+                    break;
+                case "messageText":
+                    if(value == JsonToken.VALUE_STRING && parser.getTextLength() > MessageService.MAX_MESSAGE_TEXT_LENGTH) {
+                        throw MessageService.INVALID_MESSAGE_TEXT;
+                    }
+                    message.setMessageText(JsonFields.readValue(parser, context, String.class));
+                    break;
+                case "timePostedEpoch":
+                    message.setTimePostedEpoch(JsonFields.readValue(parser, context, Long.class));
+                    break;
+                default:
+                    throw new InvalidModelFieldValuesException("Unknown message field: " + field);
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.json;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.event.MessageChangedEvent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * MessageJsonCache keeps the JSON encoding of messages, so a message that is read again is written by copying its
+ * bytes instead of serializing it field by field. Message entities and MessageViews are cached separately, as
+ * their serializers are configured independently.
+ *
+ * An entry is keyed by messageId and holds the field values it was encoded from, which serve as its version: a
+ * lookup only hits when the message still has those values, so an entry can never serve an outdated encoding,
+ * whether the message changed through the service, the import or a snapshot restore. Updates and deletes also
+ * remove the entry right away so it does not keep memory.
+ *
+ * Each type holds at most max-entries messages. Once it is full, a new message takes the place of one chosen by the
+ * CLOCK algorithm: a hand sweeps the cached messages in insertion order, sparing those read since it last passed
+ * them. New messages, which are read the most, thereby still get in after a full listing, and the entries of
+ * messages removed without an event, like archived or imported-over ones, are replaced once they go unread.
+ */
+@Component
+public class MessageJsonCache {
+    /**
+     * The cached encodings of Message entities, by messageId.
+     */
+    private final Region messages;
+    /**
+     * The cached encodings of MessageViews, by messageId.
+     */
+    private final Region views;
+    /**
+     * Counts the lookups that found a current encoding.
+     */
+    private final Counter hits;
+    /**
+     * Counts the lookups that had to serialize the message.
+     */
+    private final Counter misses;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the configured cache size and the
+     * MeterRegistry.
+     * @param maxEntries The largest number of messages cached per type.
+     * @param meterRegistry The registry of the app.json_cache meters.
+     */
+    @Autowired
+    public MessageJsonCache(@Value("${app.json-cache.max-entries:100000}") int maxEntries,
+            MeterRegistry meterRegistry) {
+        this.messages = new Region(maxEntries);
+        this.views = new Region(maxEntries);
+        this.hits = Counter.builder("app.json_cache.lookups").tag("outcome", "hit").register(meterRegistry);
+        this.misses = Counter.builder("app.json_cache.lookups").tag("outcome", "miss").register(meterRegistry);
+        Gauge.builder("app.json_cache.size", this, cache -> cache.messages.entries.size() + cache.views.entries.size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached encoding of a message.
+     * @param  type Message or MessageView.
+     * @param  messageId The id of the message.
+     * @param  postedBy The current postedBy of the message.
+     * @param  messageText The current messageText of the message.
+     * @param  timePostedEpoch The current timePostedEpoch of the message.
+     * @return Returns the encoded JSON object, or null when the message is not cached with these values.
+     */
+    RawJson get(Class<?> type, Integer messageId, Integer postedBy, String messageText, Long timePostedEpoch) {
+        Entry entry = region(type).entries.get(messageId);
+        if(entry == null || !entry.encodes(postedBy, messageText, timePostedEpoch)) {
+            misses.increment();
+            return null;
+        }
+        if(!entry.referenced) {
+            entry.referenced = true;
+        }
+        hits.increment();
+        return entry.json;
+    }
+
+    /**
+     * Caches the encoding of a message, replacing an outdated one, or the entry the clock hand picks when the type
+     * is full.
+     * @param type Message or MessageView.
+     * @param messageId The id of the message.
+     * @param postedBy The postedBy the message was encoded with.
+     * @param messageText The messageText the message was encoded with.
+     * @param timePostedEpoch The timePostedEpoch the message was encoded with.
+     * @param json The encoded JSON object.
+     */
+    void put(Class<?> type, Integer messageId, Integer postedBy, String messageText, Long timePostedEpoch,
+            RawJson json) {
+        region(type).put(messageId, new Entry(postedBy, messageText, timePostedEpoch, json));
+    }
+
+    /**
+     * Removes every cached encoding, e.g. after a snapshot restore replaced the messages.
+     */
+    public void clear() {
+        messages.clear();
+        views.clear();
+    }
+
+    /**
+     * Drops the cached encodings of a message once its update or delete has committed.
+     * @param event The change that was committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        if(event.getType() != MessageChangedEvent.Type.CREATED) {
+            messages.entries.remove(event.getMessage().getMessageId());
+            views.entries.remove(event.getMessage().getMessageId());
+        }
+    }
+
+    /**
+     * @return Returns the cache of a type.
+     */
+    private Region region(Class<?> type) {
+        if(type == Message.class) {
+            return messages;
+        }
+        if(type == MessageView.class) {
+            return views;
+        }
+        throw new IllegalArgumentException("Not a message type: " + type.getName());
+    }
+
+    /**
+     * The cached encodings of one type. Lookups only read the map; inserts take the lock of the region, which keeps
+     * the clock and the map in step.
+     */
+    private static final class Region {
+        /**
+         * The cached encodings by messageId.
+         */
+        final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+        /**
+         * The clock: the messageId cached in each slot, in the order the slots were filled. A slot whose messageId
+         * is no longer in entries is free.
+         */
+        private final Integer[] slots;
+        /**
+         * The number of slots filled since the last clear.
+         */
+        private int used;
+        /**
+         * The slot the clock hand checks next.
+         */
+        private int hand;
+
+        /**
+         * Parameterized constructor that sets the number of slots.
+         * @param maxEntries The largest number of messages cached.
+         */
+        Region(int maxEntries) {
+            this.slots = new Integer[Math.max(maxEntries, 0)];
+        }
+
+        /**
+         * Caches an entry, replacing the entry of the same message or evicting one when every slot is used.
+         * @param messageId The id of the message.
+         * @param entry The encoding of the message.
+         */
+        synchronized void put(Integer messageId, Entry entry) {
+            if(entries.replace(messageId, entry) != null || slots.length == 0) {
+                return;
+            }
+            int slot = used < slots.length ? used++ : evict();
+            slots[slot] = messageId;
+            entries.put(messageId, entry);
+        }
+
+        /**
+         * Advances the clock hand to the first slot that is free or holds an entry not read since the hand last
+         * passed it, clearing the read marks on the way, and evicts that entry.
+         * @return Returns the freed slot.
+         */
+        private int evict() {
+            while(true) {
+                int slot = hand;
+                hand = (hand + 1) % slots.length;
+                Entry entry = entries.get(slots[slot]);
+                if(entry != null && entry.referenced) {
+                    entry.referenced = false;
+                    continue;
+                }
+                if(entry != null) {
+                    entries.remove(slots[slot], entry);
+                }
+                return slot;
+            }
+        }
+
+        /**
+         * Removes every entry and resets the clock.
+         */
+        synchronized void clear() {
+            entries.clear();
+            Arrays.fill(slots, null);
+            used = 0;
+            hand = 0;
+        }
+    }
+
+    /**
+     * An encoding of a message and the values it was encoded from.
+     */
+    private static final class Entry {
+        private final Integer postedBy;
+        private final String messageText;
+        private final Long timePostedEpoch;
+        /**
+         * The encoded JSON object.
+         */
+        private final RawJson json;
+        /**
+         * Set by every hit, cleared by the clock hand passing the entry.
+         */
+        private volatile boolean referenced;
+
+        private Entry(Integer postedBy, String messageText, Long timePostedEpoch, RawJson json) {
+            this.postedBy = postedBy;
+            this.messageText = messageText;
+            this.timePostedEpoch = timePostedEpoch;
+            this.json = json;
+        }
+
+        /**
+         * @return Returns whether this entry was encoded from the given values.
+         */
+        private boolean encodes(Integer postedBy, String messageText, Long timePostedEpoch) {
+            return Objects.equals(this.timePostedEpoch, timePostedEpoch) && Objects.equals(this.postedBy, postedBy)
+                    && Objects.equals(this.messageText, messageText);
+        }
+    }
+}
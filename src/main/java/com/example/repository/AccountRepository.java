@@ -1,12 +1,18 @@
 package com.example.repository;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.example.entity.Account;
 
 /**
  * AccountRepository is a repository class that handles operations in the DAO layer for
  * the account table.
+ *
+ * Both lookups are cacheable: the query cache remembers the matching accountId and the Account itself comes from
+ * the second-level cache, so repeated lookups do not reach the database until the account table is written to.
  */
 public interface AccountRepository extends JpaRepository<Account, Long> {
     /**
@@ -14,6 +20,7 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      * @param  id The accountId value that is being searched for.
      * @return Returns the Account that has the given id.
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Account findByAccountId(int id);
 
     /**
@@ -21,5 +28,6 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      * @param  username The username string that is being searched for.
      * @return Returns the account with the given username.
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Account findByUsername(String username);
 }
@@ -0,0 +1,12 @@
+package com.example.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.example.entity.ArchivedMessage;
+
+/**
+ * ArchivedMessageRepository is a repository class that handles operations in the DAO layer for
+ * the message_archive table.
+ */
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Integer> {
+}
@@ -0,0 +1,24 @@
+package com.example.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.entity.IdempotencyRecord;
+
+/**
+ * IdempotencyRecordRepository is a repository class that handles operations in the DAO layer for
+ * the idempotency_key table.
+ */
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    /**
+     * Deletes every record that was created before a given time.
+     * @param  createdAt The epoch time in milliseconds before which records expire.
+     * @return Returns the number of deleted records.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdAt < ?1")
+    int deleteExpired(long createdAt);
+}
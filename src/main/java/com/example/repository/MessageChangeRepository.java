@@ -0,0 +1,80 @@
+package com.example.repository;
+
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import com.example.entity.MessageChange;
+
+/**
+ * MessageChangeRepository is a repository class that handles operations in the DAO layer for
+ * the message_change log.
+ */
+public interface MessageChangeRepository extends JpaRepository<MessageChange, Long> {
+    /**
+     * Inserts a change with a sequence number that was assigned by the application. A plain insert is used
+     * instead of save() so the assigned id does not trigger a select for an existing row. The insert only touches
+     * message_change, so it is declared as its only query space; otherwise Hibernate would assume a native
+     * statement may change any table and invalidate the whole second-level and query cache on every change.
+     * @param changeSeq
+     * @param changeType
+     * @param messageId
+     * @param postedBy
+     * @param messageText
+     * @param timePostedEpoch
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "message_change"))
+    @Query(value = "insert into message_change (changeSeq, changeType, messageId, postedBy, messageText, timePostedEpoch) "
+            + "values (?1, ?2, ?3, ?4, ?5, ?6)", nativeQuery = true)
+    void insert(long changeSeq, String changeType, Integer messageId, Integer postedBy, String messageText,
+            Long timePostedEpoch);
+
+    /**
+     * Range scan over the primary key of the log.
+     * @param  since Only changes after this sequence number are returned.
+     * @param  upTo Only changes up to and including this sequence number are returned.
+     * @param  pageable The maximum number of changes to return.
+     * @return Returns the changes in the range ordered by changeSeq.
+     */
+    List<MessageChange> findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeq(long since, long upTo,
+            Pageable pageable);
+
+    /**
+     * Reads the largest changeSeq of the log and of its last reset in one aggregate.
+     * @return Returns the sequence numbers, which are null if the log is empty or was never reset.
+     */
+    @Query("select max(c.changeSeq) as lastChangeSeq, max(case when c.changeType = '" + MessageChange.RESET
+            + "' then c.changeSeq end) as resetChangeSeq from MessageChange c")
+    SequenceBounds findSequenceBounds();
+
+    /**
+     * The result of findSequenceBounds.
+     */
+    interface SequenceBounds {
+        /**
+         * @return Returns the largest changeSeq, or null if the log is empty.
+         */
+        Long getLastChangeSeq();
+
+        /**
+         * @return Returns the changeSeq of the last RESET, or null if the log was never reset.
+         */
+        Long getResetChangeSeq();
+    }
+
+    /**
+     * Deletes the changes before a sequence number.
+     * @param  changeSeq The first sequence number that is kept.
+     * @return Returns the number of deleted changes.
+     */
+    @Modifying
+    @Query("delete from MessageChange c where c.changeSeq < ?1")
+    int deleteByChangeSeqLessThan(long changeSeq);
+}
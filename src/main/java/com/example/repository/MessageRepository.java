@@ -3,36 +3,43 @@ package com.example.repository;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.entity.Message;
 
 /**
  * MessageRepository is a repository class that handles operations in the DAO layer for
- * the message table.
+ * the message table. It is the MessageStore of the primary database, which the services use unless sharding is
+ * enabled. The reads are implemented in MessageRepositoryImpl, since they depend on whether soft delete is enabled.
  */
-public interface MessageRepository extends JpaRepository<Message, Long> {
+public interface MessageRepository extends JpaRepository<Message, Long>, MessageRepositoryCustom, MessageStore {
     /**
-     * Property expression for finding the message with a given accountId value.
-     * @param  messageId The messageId value that is being searched for.
-     * @return Returns the Message that has the given messageId.
+     * The condition MessageRepositoryImpl adds to every read in soft-delete mode, to leave out the deleted messages
+     * whose rows stay in the message table until the compactor purges them. The subquery does not depend on the
+     * row, so it is evaluated once per query.
      */
-    Message findByMessageId(int messageId);
-    
+    String NOT_DELETED = "m.messageId not in (select t.messageId from MessageTombstone t)";
+
     /**
-     * Property expression for finding all Messages with a given postedBy value.
-     * @param  postedBy The postedBy value that is being search for.
-     * @return Returns a list of all messages with the given postedBy value.
+     * Deletes the messages with the given messageIds in one statement, without loading them.
+     * @param  messageIds The messageIds of the messages to delete.
+     * @return Returns the number of deleted messages.
      */
-    List<Message> findAllByPostedBy(int postedBy);
-    
+    @Modifying
+    @Query("delete from Message m where m.messageId in ?1")
+    int deleteAllByMessageIdIn(List<Integer> messageIds);
+
     /**
-     * Property expression for deleting a message with a given messageId. Method must be
-     * annotated with @Transactional
+     * Deletes a message with a given messageId in one statement. A derived deleteBy method would select the
+     * message and remove it as an entity, costing an extra query. Method must be annotated with @Transactional
      * @param  messageId The messageId value that is being searched for.
      * @return Returns the number of deleted messages.
      */
     @Transactional
-    Long deleteByMessageId(int messageId);
+    @Modifying
+    @Query("delete from Message m where m.messageId = ?1")
+    int deleteByMessageId(int messageId);
 
 }
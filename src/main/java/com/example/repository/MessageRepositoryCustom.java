@@ -0,0 +1,127 @@
+package com.example.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.dto.AccountStats;
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+
+/**
+ * MessageRepositoryCustom declares the message queries that can not be expressed as property expressions or
+ * static JPQL, either because their columns are chosen per request or because they leave out soft-deleted messages
+ * only when soft delete is enabled. The implementation lives in MessageRepositoryImpl.
+ */
+public interface MessageRepositoryCustom {
+    /**
+     * Finds the message with a given messageId.
+     * @param  messageId The messageId value that is being searched for.
+     * @return Returns the Message that has the given messageId, or null.
+     */
+    Message findByMessageId(int messageId);
+
+    /**
+     * Finds all Messages with a given postedBy value.
+     * @param  postedBy The postedBy value that is being search for.
+     * @return Returns a list of all messages with the given postedBy value.
+     */
+    List<Message> findAllByPostedBy(int postedBy);
+
+    /**
+     * Read-only projection of every message. Rows are returned as immutable MessageViews and are never
+     * attached to the persistence context.
+     * @return Returns a list of all messages ordered by messageId.
+     */
+    List<MessageView> findAllViews();
+
+    /**
+     * Read-only projection of every message with a given postedBy value.
+     * @param  postedBy The postedBy value that is being searched for.
+     * @return Returns a list of all messages with the given postedBy value ordered by messageId.
+     */
+    List<MessageView> findAllViewsByPostedBy(int postedBy);
+
+    /**
+     * Read-only projection of the messages with the highest ids, used to fill the ring of latest messages.
+     * @param  pageable The number of messages.
+     * @return Returns the newest messages ordered by messageId, highest first.
+     */
+    List<MessageView> findLatestViews(Pageable pageable);
+
+    /**
+     * Read-only projection of one page of the messages posted within a time range. The range is served from the
+     * index on timePostedEpoch.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of messages ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findViewsPostedBetween(long from, long to, Pageable pageable);
+
+    /**
+     * Read-only projection of one page of the messages with a given postedBy value posted within a time range.
+     * The range is served from the index on (postedBy, timePostedEpoch).
+     * @param  postedBy The postedBy value that is being searched for.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of messages ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findViewsByPostedByPostedBetween(int postedBy, long from, long to, Pageable pageable);
+
+    /**
+     * Read-only projection of the oldest messages posted before a given time, used by the retention job to pick
+     * its next chunk from the index on timePostedEpoch.
+     * @param  before The timePostedEpoch before which messages are returned.
+     * @param  pageable The chunk size.
+     * @return Returns the oldest messages ordered by timePostedEpoch, then messageId.
+     */
+    List<MessageView> findViewsPostedBefore(long before, Pageable pageable);
+
+    /**
+     * Aggregates the message table for one account.
+     * @param  accountId The postedBy value to aggregate.
+     * @return Returns the count, first and last post time of the account's messages, or null if the account
+     *         has no messages.
+     */
+    AccountStats aggregateByPostedBy(Integer accountId);
+
+    /**
+     * Returns the post times of an account's messages that were posted at or after a given epoch second.
+     * @param  accountId The postedBy value to search for.
+     * @param  since The smallest timePostedEpoch to include.
+     * @return Returns a list of timePostedEpoch values.
+     */
+    List<Long> findPostTimesSince(Integer accountId, Long since);
+
+    /**
+     * Returns the time of the oldest message.
+     * @return Returns the smallest timePostedEpoch, or null when there are no messages.
+     */
+    Long findOldestTimePostedEpoch();
+
+    /**
+     * Selects only the requested columns of the message table and returns them as read-only MessageViews.
+     * Columns that were not requested are left null.
+     * @param  fields The names of the MessageView fields to select. Must be non-empty and only contain
+     *         names from MessageView.FIELDS.
+     * @param  postedBy The postedBy value to filter by, or null to select messages from every account.
+     * @return Returns a list of sparse MessageViews ordered by messageId.
+     */
+    List<MessageView> findSparseViews(List<String> fields, Integer postedBy);
+
+    /**
+     * Selects only the requested columns of one page of the messages posted within a time range.
+     * @param  fields The names of the MessageView fields to select. Must be non-empty and only contain
+     *         names from MessageView.FIELDS.
+     * @param  postedBy The postedBy value to filter by, or null to select messages from every account.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of sparse MessageViews ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findSparseViewsPostedBetween(List<String> fields, Integer postedBy, long from, long to,
+            Pageable pageable);
+}
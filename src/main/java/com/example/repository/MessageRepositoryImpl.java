@@ -0,0 +1,312 @@
+package com.example.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.criteria.Subquery;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import com.example.dto.AccountStats;
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.entity.MessageTombstone;
+
+/**
+ * MessageRepositoryImpl implements the custom queries of MessageRepositoryCustom. Spring Data picks this
+ * class up by its name and mixes it into the MessageRepository proxy.
+ *
+ * Only in soft-delete mode do the reads add MessageRepository.NOT_DELETED, so without soft delete they run the same
+ * SQL as plain queries of the message table. When soft delete is switched off while tombstones are left, those
+ * messages are visible again until the compactor purges them.
+ */
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+    /**
+     * The select clause of the queries that return MessageViews.
+     */
+    private static final String VIEWS = "select new com.example.dto.MessageView(m.messageId, m.postedBy, "
+            + "m.messageText, m.timePostedEpoch) from Message m";
+
+    /**
+     * Entity manager used to build the queries.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+    /**
+     * Whether deleted messages keep their rows until the compactor purges them, which every read then has to
+     * leave out. Without soft delete the reads skip the tombstone subquery.
+     */
+    private final boolean softDeleteEnabled;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects whether soft delete is enabled.
+     * @param softDeleteEnabled
+     */
+    @Autowired
+    public MessageRepositoryImpl(@Value("${app.soft-delete.enabled:false}") boolean softDeleteEnabled) {
+        this.softDeleteEnabled = softDeleteEnabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message findByMessageId(int messageId) {
+        List<Message> messages = query("select m from Message m", "m.messageId = ?1", "", Message.class, messageId)
+                .getResultList();
+        return messages.isEmpty() ? null : messages.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Message> findAllByPostedBy(int postedBy) {
+        return query("select m from Message m", "m.postedBy = ?1", "", Message.class, postedBy).getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findAllViews() {
+        return query(VIEWS, null, " order by m.messageId", MessageView.class).getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findAllViewsByPostedBy(int postedBy) {
+        return query(VIEWS, "m.postedBy = ?1", " order by m.messageId", MessageView.class, postedBy)
+                .getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findLatestViews(Pageable pageable) {
+        return page(query(VIEWS, null, " order by m.messageId desc", MessageView.class), pageable)
+                .getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findViewsPostedBetween(long from, long to, Pageable pageable) {
+        return slice(query(VIEWS, "m.timePostedEpoch between ?1 and ?2",
+                " order by m.timePostedEpoch, m.messageId", MessageView.class, from, to), pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findViewsByPostedByPostedBetween(int postedBy, long from, long to, Pageable pageable) {
+        return slice(query(VIEWS, "m.postedBy = ?1 and m.timePostedEpoch between ?2 and ?3",
+                " order by m.timePostedEpoch, m.messageId", MessageView.class, postedBy, from, to), pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findViewsPostedBefore(long before, Pageable pageable) {
+        return page(query(VIEWS, "m.timePostedEpoch < ?1", " order by m.timePostedEpoch, m.messageId",
+                MessageView.class, before), pageable).getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AccountStats aggregateByPostedBy(Integer accountId) {
+        List<AccountStats> stats = query("select new com.example.dto.AccountStats(m.postedBy, count(m), "
+                + "min(m.timePostedEpoch), max(m.timePostedEpoch)) from Message m", "m.postedBy = ?1",
+                " group by m.postedBy", AccountStats.class, accountId).getResultList();
+        return stats.isEmpty() ? null : stats.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> findPostTimesSince(Integer accountId, Long since) {
+        return query("select m.timePostedEpoch from Message m", "m.postedBy = ?1 and m.timePostedEpoch >= ?2", "",
+                Long.class, accountId, since).getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long findOldestTimePostedEpoch() {
+        return query("select min(m.timePostedEpoch) from Message m", null, "", Long.class).getSingleResult();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findSparseViews(List<String> fields, Integer postedBy) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Message> message = query.from(Message.class);
+        query.multiselect(selections(message, fields));
+        List<Predicate> conditions = new ArrayList<>();
+        if(postedBy != null) {
+            conditions.add(builder.equal(message.get("postedBy"), postedBy));
+        }
+        query.where(visible(builder, query, message, conditions));
+        query.orderBy(builder.asc(message.get("messageId")));
+
+        return toViews(entityManager.createQuery(query).getResultList(), fields);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findSparseViewsPostedBetween(List<String> fields, Integer postedBy, long from, long to,
+            Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Message> message = query.from(Message.class);
+        query.multiselect(selections(message, fields));
+        List<Predicate> conditions = new ArrayList<>();
+        if(postedBy != null) {
+            conditions.add(builder.equal(message.get("postedBy"), postedBy));
+        }
+        conditions.add(builder.between(message.get("timePostedEpoch"), from, to));
+        query.where(visible(builder, query, message, conditions));
+        query.orderBy(builder.asc(message.get("timePostedEpoch")), builder.asc(message.get("messageId")));
+
+        // One extra row tells whether another page follows without a count query.
+        List<MessageView> views = toViews(entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList(), fields);
+        return toSlice(views, pageable);
+    }
+
+    /**
+     * Creates a JPQL query of the message table that leaves out deleted messages in soft-delete mode.
+     * @param  select The select and from clauses, with Message aliased as m.
+     * @param  condition The where condition, or null to select every message.
+     * @param  rest The clauses after the where clause, like order by.
+     * @param  type The result type.
+     * @param  parameters The values of the positional parameters ?1, ?2, ...
+     * @return Returns the query with its parameters set.
+     */
+    private <T> TypedQuery<T> query(String select, String condition, String rest, Class<T> type,
+            Object... parameters) {
+        String where = condition;
+        if(softDeleteEnabled) {
+            where = where == null ? MessageRepository.NOT_DELETED
+                    : where + " and " + MessageRepository.NOT_DELETED;
+        }
+        TypedQuery<T> query = entityManager.createQuery(select + (where == null ? "" : " where " + where) + rest,
+                type);
+        for(int i = 0; i < parameters.length; i++) {
+            query.setParameter(i + 1, parameters[i]);
+        }
+        return query;
+    }
+
+    /**
+     * Limits a query to a page.
+     * @param  query The query.
+     * @param  pageable The page to return.
+     * @return Returns the query.
+     */
+    private <T> TypedQuery<T> page(TypedQuery<T> query, Pageable pageable) {
+        return query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+    }
+
+    /**
+     * Runs a query for a page and one extra row, which tells whether another page follows without a count query.
+     * @param  query The query.
+     * @param  pageable The page to return.
+     * @return Returns the slice.
+     */
+    private <T> Slice<T> slice(TypedQuery<T> query, Pageable pageable) {
+        return toSlice(query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize() + 1)
+                .getResultList(), pageable);
+    }
+
+    /**
+     * @param  rows The rows of a page, with one extra row if another page follows.
+     * @param  pageable The page.
+     * @return Returns the rows of the page as a slice.
+     */
+    private <T> Slice<T> toSlice(List<T> rows, Pageable pageable) {
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    /**
+     * Combines the conditions of a criteria query, adding the condition of MessageRepository.NOT_DELETED in
+     * soft-delete mode.
+     * @param  builder The criteria builder.
+     * @param  query The query.
+     * @param  message The query root.
+     * @param  conditions The conditions of the query.
+     * @return Returns a predicate that is true when all conditions are.
+     */
+    private Predicate visible(CriteriaBuilder builder, CriteriaQuery<?> query, Root<Message> message,
+            List<Predicate> conditions) {
+        if(softDeleteEnabled) {
+            Subquery<Integer> tombstones = query.subquery(Integer.class);
+            tombstones.select(tombstones.from(MessageTombstone.class).get("messageId"));
+            conditions.add(builder.not(message.get("messageId").in(tombstones)));
+        }
+        return builder.and(conditions.toArray(new Predicate[0]));
+    }
+
+    /**
+     * Builds the aliased selections of a sparse fieldset.
+     * @param  message The query root.
+     * @param  fields The names of the fields to select.
+     * @return Returns one selection per field, aliased by its name.
+     */
+    private List<Selection<?>> selections(Root<Message> message, List<String> fields) {
+        List<Selection<?>> selections = new ArrayList<>();
+        for(String field : fields) {
+            selections.add(message.get(field).alias(field));
+        }
+        return selections;
+    }
+
+    /**
+     * Converts tuples of a sparse fieldset into MessageViews, leaving the fields that were not selected null.
+     * @param  rows The query results.
+     * @param  fields The names of the selected fields.
+     * @return Returns one MessageView per row.
+     */
+    private List<MessageView> toViews(List<Tuple> rows, List<String> fields) {
+        List<MessageView> views = new ArrayList<>(rows.size());
+        for(Tuple row : rows) {
+            views.add(new MessageView(
+                    fields.contains("messageId") ? row.get("messageId", Integer.class) : null,
+                    fields.contains("postedBy") ? row.get("postedBy", Integer.class) : null,
+                    fields.contains("messageText") ? row.get("messageText", String.class) : null,
+                    fields.contains("timePostedEpoch") ? row.get("timePostedEpoch", Long.class) : null));
+        }
+        return views;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.dto.AccountStats;
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+
+/**
+ * MessageStore is the storage of the message table as the services use it. MessageRepository implements it with
+ * JPA on the primary database, and ShardedMessageRepository with JDBC across the shards when sharding is enabled,
+ * so the services inject a MessageStore and do not change with the storage.
+ *
+ * Only the operations the services call are part of the store, and every implementation supports all of them.
+ */
+public interface MessageStore {
+    /**
+     * Inserts a message, assigning its messageId when it has none, or updates it.
+     * @param  message The message to save.
+     * @return Returns the saved message.
+     */
+    <S extends Message> S save(S message);
+
+    /**
+     * Saves messages like save, as one batch.
+     * @param  messages The messages to save.
+     * @return Returns the saved messages.
+     */
+    <S extends Message> List<S> saveAll(Iterable<S> messages);
+
+    /**
+     * Finds the message with a given messageId.
+     * @param  messageId The messageId value that is being searched for.
+     * @return Returns the Message that has the given messageId, or null.
+     */
+    Message findByMessageId(int messageId);
+
+    /**
+     * Read-only projection of every message.
+     * @return Returns a list of all messages ordered by messageId.
+     */
+    List<MessageView> findAllViews();
+
+    /**
+     * Read-only projection of every message with a given postedBy value.
+     * @param  postedBy The postedBy value that is being searched for.
+     * @return Returns a list of all messages with the given postedBy value ordered by messageId.
+     */
+    List<MessageView> findAllViewsByPostedBy(int postedBy);
+
+    /**
+     * Read-only projection of the messages with the highest ids, used to fill the ring of latest messages.
+     * @param  pageable The number of messages.
+     * @return Returns the newest messages ordered by messageId, highest first.
+     */
+    List<MessageView> findLatestViews(Pageable pageable);
+
+    /**
+     * Read-only projection of one page of the messages posted within a time range.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of messages ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findViewsPostedBetween(long from, long to, Pageable pageable);
+
+    /**
+     * Read-only projection of one page of the messages with a given postedBy value posted within a time range.
+     * @param  postedBy The postedBy value that is being searched for.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of messages ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findViewsByPostedByPostedBetween(int postedBy, long from, long to, Pageable pageable);
+
+    /**
+     * Read-only projection of the oldest messages posted before a given time, used by the retention job.
+     * @param  before The timePostedEpoch before which messages are returned.
+     * @param  pageable The chunk size.
+     * @return Returns the oldest messages ordered by timePostedEpoch, then messageId.
+     */
+    List<MessageView> findViewsPostedBefore(long before, Pageable pageable);
+
+    /**
+     * Aggregates the messages of one account.
+     * @param  accountId The postedBy value to aggregate.
+     * @return Returns the count, first and last post time of the account's messages, or null if the account
+     *         has no messages.
+     */
+    AccountStats aggregateByPostedBy(Integer accountId);
+
+    /**
+     * Returns the post times of an account's messages that were posted at or after a given epoch second.
+     * @param  accountId The postedBy value to search for.
+     * @param  since The smallest timePostedEpoch to include.
+     * @return Returns a list of timePostedEpoch values.
+     */
+    List<Long> findPostTimesSince(Integer accountId, Long since);
+
+    /**
+     * Returns the time of the oldest message.
+     * @return Returns the smallest timePostedEpoch, or null when there are no messages.
+     */
+    Long findOldestTimePostedEpoch();
+
+    /**
+     * Deletes the messages with the given messageIds, without loading them.
+     * @param  messageIds The messageIds of the messages to delete.
+     * @return Returns the number of deleted messages.
+     */
+    int deleteAllByMessageIdIn(List<Integer> messageIds);
+
+    /**
+     * Deletes a message with a given messageId, without loading it.
+     * @param  messageId The messageId value that is being searched for.
+     * @return Returns the number of deleted messages.
+     */
+    int deleteByMessageId(int messageId);
+
+    /**
+     * Selects only the requested fields of the messages and returns them as read-only MessageViews. Fields that
+     * were not requested are left null.
+     * @param  fields The names of the MessageView fields to select. Must be non-empty and only contain
+     *         names from MessageView.FIELDS.
+     * @param  postedBy The postedBy value to filter by, or null to select messages from every account.
+     * @return Returns a list of sparse MessageViews ordered by messageId.
+     */
+    List<MessageView> findSparseViews(List<String> fields, Integer postedBy);
+
+    /**
+     * Selects only the requested fields of one page of the messages posted within a time range.
+     * @param  fields The names of the MessageView fields to select. Must be non-empty and only contain
+     *         names from MessageView.FIELDS.
+     * @param  postedBy The postedBy value to filter by, or null to select messages from every account.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of sparse MessageViews ordered by timePostedEpoch, then messageId.
+     */
+    Slice<MessageView> findSparseViewsPostedBetween(List<String> fields, Integer postedBy, long from, long to,
+            Pageable pageable);
+}
@@ -0,0 +1,61 @@
+package com.example.repository;
+
+import java.util.List;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import com.example.entity.Message;
+import com.example.entity.MessageTombstone;
+
+/**
+ * MessageTombstoneRepository is a repository class that handles operations in the DAO layer for
+ * the message_tombstone table.
+ */
+public interface MessageTombstoneRepository extends JpaRepository<MessageTombstone, Integer> {
+    /**
+     * Reads a message that is not deleted and locks its row, so concurrent deletes of the message take turns.
+     * @param  messageId The messageId of the message.
+     * @return Returns the message, or null when it does not exist or is deleted.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select m from Message m where m.messageId = ?1 and " + MessageRepository.NOT_DELETED)
+    Message lockMessage(int messageId);
+
+    /**
+     * Adds the tombstone of a message unless it already has one, in one statement. The query space keeps
+     * Hibernate from evicting every cache region, like the Account cache, on each soft delete.
+     * @param  messageId The messageId of the message.
+     * @param  deletedAt The epoch time in seconds of the delete.
+     * @return Returns 1 if the tombstone was added, 0 if the message was already deleted.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "message_tombstone"))
+    @Query(value = "insert into message_tombstone (messageId, deletedAt) select ?1, ?2 from dual "
+            + "where not exists (select 1 from message_tombstone where messageId = ?1)", nativeQuery = true)
+    int insertIfAbsent(int messageId, long deletedAt);
+
+    /**
+     * Returns the ids of the oldest deleted messages, the next chunk for the compactor.
+     * @param  pageable The chunk size.
+     * @return Returns messageIds in ascending order.
+     */
+    @Query("select t.messageId from MessageTombstone t order by t.messageId")
+    List<Integer> findMessageIds(Pageable pageable);
+
+    /**
+     * Deletes the tombstones of the given messages in one statement.
+     * @param  messageIds The messageIds of the purged messages.
+     * @return Returns the number of deleted tombstones.
+     */
+    @Modifying
+    @Query("delete from MessageTombstone t where t.messageId in ?1")
+    int deleteAllByMessageIdIn(List<Integer> messageIds);
+}
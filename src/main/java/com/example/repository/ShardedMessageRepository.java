@@ -0,0 +1,592 @@
+package com.example.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.AccountStats;
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.util.ConsistentHashRing;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * ShardedMessageRepository stores the message table across several databases, partitioned by postedBy on a
+ * consistent-hash ring. It implements MessageStore, so the services do not change when sharding is enabled.
+ *
+ * Queries for one account go to that account's shard. Queries across accounts and lookups by messageId are sent
+ * to every shard in parallel and the per-shard results, which are already sorted, are merged in order. New
+ * messages take their messageId from hibernate_sequence in the primary database, so ids stay unique across
+ * shards.
+ *
+ * Shard writes commit on their own and do not join the caller's transaction in the primary database. saveAll
+ * writes each shard in one local transaction and deletes what it wrote on the other shards when a shard fails.
+ * postedBy is the shard key and must not change after a message is saved.
+ *
+ * This is a hard limitation of the change feed while sharding is on: ChangeLogService records a change in the
+ * primary transaction, which commits independently of the shard write. When one of the two commits and the other
+ * fails, GET /messages/changes misses a change that is stored in a shard, or reports one that is not, so clients
+ * of the feed have to resynchronise with a full read now and then.
+ */
+@DependsOnDatabaseInitialization
+public class ShardedMessageRepository implements MessageStore {
+    private static final String COLUMNS = "messageId, postedBy, messageText, timePostedEpoch";
+    private static final String BY_ID = " order by messageId";
+    private static final String BY_TIME = " order by timePostedEpoch, messageId";
+    private static final Comparator<MessageView> VIEW_ID_ORDER = Comparator.comparing(MessageView::getMessageId);
+    private static final Comparator<MessageView> VIEW_TIME_ORDER = Comparator
+            .comparing(MessageView::getTimePostedEpoch).thenComparing(MessageView::getMessageId);
+    private static final RowMapper<Message> MESSAGE_MAPPER = (rs, row) -> new Message(
+            rs.getObject("messageId", Integer.class), rs.getObject("postedBy", Integer.class),
+            rs.getString("messageText"), rs.getObject("timePostedEpoch", Long.class));
+    private static final RowMapper<MessageView> VIEW_MAPPER = (rs, row) -> new MessageView(
+            rs.getObject("messageId", Integer.class), rs.getObject("postedBy", Integer.class),
+            rs.getString("messageText"), rs.getObject("timePostedEpoch", Long.class));
+
+    /**
+     * The primary database, which holds hibernate_sequence and any messages written before sharding was enabled.
+     */
+    private final JdbcTemplate primary;
+    /**
+     * One connection pool per shard, indexed by shard number.
+     */
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    /**
+     * One template per shard, indexed by shard number.
+     */
+    private final List<NamedParameterJdbcTemplate> shards = new ArrayList<>();
+    /**
+     * One local transaction template per shard, indexed by shard number.
+     */
+    private final List<TransactionTemplate> shardTransactions = new ArrayList<>();
+    /**
+     * Maps postedBy values to shard numbers.
+     */
+    private final ConsistentHashRing ring;
+    /**
+     * Whether shard-schema.sql is run on every shard at startup.
+     */
+    private final boolean initSchema;
+    /**
+     * Runs the per-shard queries of a scatter-gather in parallel.
+     */
+    private final ExecutorService scatterPool;
+
+    /**
+     * Parameterized constructor that opens a connection pool for every shard.
+     * @param primaryDataSource The primary database.
+     * @param shardCount The number of shards.
+     * @param urlTemplate The JDBC url of a shard, with "{shard}" in place of the shard number.
+     * @param username The user name of every shard.
+     * @param password The password of every shard.
+     * @param virtualNodes The number of points every shard owns on the hash ring.
+     * @param initSchema Whether to drop and recreate the message table of every shard at startup.
+     */
+    public ShardedMessageRepository(DataSource primaryDataSource, int shardCount, String urlTemplate, String username,
+            String password, int virtualNodes, boolean initSchema) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.ring = new ConsistentHashRing(shardCount, virtualNodes);
+        this.initSchema = initSchema;
+        for(int shard = 0; shard < shardCount; shard++) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urlTemplate.replace("{shard}", String.valueOf(shard)))
+                    .username(username)
+                    .password(password)
+                    .build();
+            dataSource.setPoolName("message-shard-" + shard);
+            dataSources.add(dataSource);
+            shards.add(new NamedParameterJdbcTemplate(dataSource));
+            shardTransactions.add(new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scatterPool = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "message-shard-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates the shard schema if configured, then moves any messages left in the primary message table, such
+     * as the seed data, into their shards.
+     */
+    @PostConstruct
+    public void initialize() {
+        if(initSchema) {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("shard-schema.sql"));
+            for(DataSource dataSource : dataSources) {
+                populator.execute(dataSource);
+            }
+        }
+        List<Message> unsharded = primary.query("select " + COLUMNS + " from message" + BY_ID, MESSAGE_MAPPER);
+        for(Message message : unsharded) {
+            save(message);
+        }
+        if(!unsharded.isEmpty()) {
+            primary.update("delete from message");
+        }
+    }
+
+    /**
+     * Stops the query threads and closes the shard connection pools.
+     */
+    @PreDestroy
+    public void close() {
+        scatterPool.shutdownNow();
+        for(HikariDataSource dataSource : dataSources) {
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Returns the shard that stores an account's messages.
+     * @param  postedBy The accountId.
+     * @return Returns the shard number.
+     */
+    public int shardFor(int postedBy) {
+        return ring.shardFor(postedBy);
+    }
+
+    /**
+     * Returns the number of messages stored in one shard.
+     * @param  shard The shard number.
+     * @return Returns the row count of the shard's message table.
+     */
+    public long countInShard(int shard) {
+        return shards.get(shard).getJdbcTemplate().queryForObject("select count(*) from message", Long.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Message findByMessageId(int messageId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("messageId", messageId);
+        for(List<Message> found : scatter(shard -> shard.query(
+                "select " + COLUMNS + " from message where messageId = :messageId", params, MESSAGE_MAPPER))) {
+            if(!found.isEmpty()) {
+                return found.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findAllViews() {
+        return merge(scatter(shard -> shard.query("select " + COLUMNS + " from message" + BY_ID, VIEW_MAPPER)),
+                VIEW_ID_ORDER, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findLatestViews(Pageable pageable) {
+        int window = (int) pageable.getOffset() + pageable.getPageSize();
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", window);
+        List<MessageView> merged = merge(scatter(shard -> shard.query("select " + COLUMNS
+                + " from message order by messageId desc limit :limit", params, VIEW_MAPPER)),
+                VIEW_ID_ORDER.reversed(), window);
+        return merged.subList(Math.min((int) pageable.getOffset(), merged.size()), merged.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findAllViewsByPostedBy(int postedBy) {
+        return shardOf(postedBy).query("select " + COLUMNS + " from message where postedBy = :postedBy" + BY_ID,
+                new MapSqlParameterSource("postedBy", postedBy), VIEW_MAPPER);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findViewsPostedBetween(long from, long to, Pageable pageable) {
+        return findRange(COLUMNS, null, from, to, pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findViewsByPostedByPostedBetween(int postedBy, long from, long to, Pageable pageable) {
+        return findRange(COLUMNS, postedBy, from, to, pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findViewsPostedBefore(long before, Pageable pageable) {
+        int window = (int) pageable.getOffset() + pageable.getPageSize();
+        MapSqlParameterSource params = new MapSqlParameterSource("before", before).addValue("limit", window);
+        List<MessageView> merged = merge(scatter(shard -> shard.query("select " + COLUMNS
+                + " from message where timePostedEpoch < :before" + BY_TIME + " limit :limit", params, VIEW_MAPPER)),
+                VIEW_TIME_ORDER, window);
+        return merged.subList(Math.min((int) pageable.getOffset(), merged.size()), merged.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AccountStats aggregateByPostedBy(Integer accountId) {
+        List<AccountStats> aggregate = shardOf(accountId).query("select count(*) messageCount, "
+                + "min(timePostedEpoch) firstPostEpoch, max(timePostedEpoch) lastPostEpoch from message "
+                + "where postedBy = :postedBy group by postedBy", new MapSqlParameterSource("postedBy", accountId),
+                (rs, row) -> new AccountStats(accountId, rs.getLong("messageCount"),
+                        rs.getObject("firstPostEpoch", Long.class), rs.getObject("lastPostEpoch", Long.class)));
+        return aggregate.isEmpty() ? null : aggregate.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Long> findPostTimesSince(Integer accountId, Long since) {
+        return shardOf(accountId).queryForList("select timePostedEpoch from message "
+                + "where postedBy = :postedBy and timePostedEpoch >= :since",
+                new MapSqlParameterSource("postedBy", accountId).addValue("since", since), Long.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long findOldestTimePostedEpoch() {
+        Long oldest = null;
+        for(Long shardOldest : scatter(shard -> shard.getJdbcTemplate()
+                .queryForObject("select min(timePostedEpoch) from message", Long.class))) {
+            if(shardOldest != null && (oldest == null || shardOldest < oldest)) {
+                oldest = shardOldest;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteAllByMessageIdIn(List<Integer> messageIds) {
+        if(messageIds.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource("messageIds", messageIds);
+        int deleted = 0;
+        for(int shardDeleted : scatter(shard -> shard.update("delete from message where messageId in (:messageIds)",
+                params))) {
+            deleted += shardDeleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteByMessageId(int messageId) {
+        return deleteAllByMessageIdIn(List.of(messageId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageView> findSparseViews(List<String> fields, Integer postedBy) {
+        String columns = String.join(", ", withKeys(fields));
+        List<MessageView> views;
+        if(postedBy != null) {
+            views = shardOf(postedBy).query("select " + columns + " from message where postedBy = :postedBy" + BY_ID,
+                    new MapSqlParameterSource("postedBy", postedBy), sparseMapper(withKeys(fields)));
+        }
+        else {
+            views = merge(scatter(shard -> shard.query("select " + columns + " from message" + BY_ID,
+                    sparseMapper(withKeys(fields)))), VIEW_ID_ORDER, Integer.MAX_VALUE);
+        }
+        return project(views, fields);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slice<MessageView> findSparseViewsPostedBetween(List<String> fields, Integer postedBy, long from, long to,
+            Pageable pageable) {
+        Slice<MessageView> slice = findRange(String.join(", ", withKeys(fields)), postedBy, from, to, pageable);
+        return new SliceImpl<>(project(slice.getContent(), fields), pageable, slice.hasNext());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <S extends Message> S save(S entity) {
+        int shard = shardNumber(entity);
+        if(entity.getMessageId() == null) {
+            entity.setMessageId(nextMessageId());
+            insert(shards.get(shard), entity);
+        }
+        else if(update(shards.get(shard), entity) == 0) {
+            insert(shards.get(shard), entity);
+        }
+        return entity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <S extends Message> List<S> saveAll(Iterable<S> entities) {
+        Map<Integer, List<S>> byShard = new HashMap<>();
+        List<S> saved = new ArrayList<>();
+        for(S entity : entities) {
+            if(entity.getMessageId() == null) {
+                entity.setMessageId(nextMessageId());
+            }
+            byShard.computeIfAbsent(shardNumber(entity), shard -> new ArrayList<>()).add(entity);
+            saved.add(entity);
+        }
+        List<Integer> written = new ArrayList<>();
+        try {
+            for(Map.Entry<Integer, List<S>> group : byShard.entrySet()) {
+                NamedParameterJdbcTemplate shard = shards.get(group.getKey());
+                shardTransactions.get(group.getKey()).executeWithoutResult(status -> {
+                    for(S entity : group.getValue()) {
+                        if(update(shard, entity) == 0) {
+                            insert(shard, entity);
+                        }
+                    }
+                });
+                written.add(group.getKey());
+            }
+        }
+        catch(RuntimeException ex) {
+            // Undo the shards that already committed so the batch fails as a whole.
+            for(Integer shard : written) {
+                List<Integer> messageIds = new ArrayList<>();
+                for(S entity : byShard.get(shard)) {
+                    messageIds.add(entity.getMessageId());
+                }
+                shards.get(shard).update("delete from message where messageId in (:messageIds)",
+                        new MapSqlParameterSource("messageIds", messageIds));
+            }
+            throw ex;
+        }
+        return saved;
+    }
+
+    /**
+     * Returns one page of the messages posted within a time range, from one shard when postedBy is given and
+     * from every shard otherwise. Each shard returns at most offset + size + 1 rows, so deep pages read more.
+     * @param  columns The comma separated columns to select, including timePostedEpoch and messageId.
+     * @param  postedBy The postedBy value to filter by, or null for every account.
+     * @param  from The earliest timePostedEpoch to include.
+     * @param  to The latest timePostedEpoch to include.
+     * @param  pageable The page to return.
+     * @return Returns a slice of messages ordered by timePostedEpoch, then messageId.
+     */
+    private Slice<MessageView> findRange(String columns, Integer postedBy, long from, long to, Pageable pageable) {
+        int offset = (int) pageable.getOffset();
+        int window = offset + pageable.getPageSize() + 1;
+        MapSqlParameterSource params = new MapSqlParameterSource("from", from).addValue("to", to)
+                .addValue("limit", window).addValue("postedBy", postedBy);
+        RowMapper<MessageView> mapper = sparseMapper(List.of(columns.split(", ")));
+        String sql = "select " + columns + " from message where timePostedEpoch between :from and :to"
+                + (postedBy != null ? " and postedBy = :postedBy" : "") + BY_TIME + " limit :limit";
+        List<MessageView> merged = postedBy != null
+                ? shardOf(postedBy).query(sql, params, mapper)
+                : merge(scatter(shard -> shard.query(sql, params, mapper)), VIEW_TIME_ORDER, window);
+        List<MessageView> page = merged.subList(Math.min(offset, merged.size()), merged.size());
+        boolean hasNext = page.size() > pageable.getPageSize();
+        if(hasNext) {
+            page = page.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(new ArrayList<>(page), pageable, hasNext);
+    }
+
+    /**
+     * Runs a query on every shard in parallel.
+     * @param  query The query to run against one shard.
+     * @return Returns the results of every shard, in shard order.
+     */
+    private <T> List<T> scatter(Function<NamedParameterJdbcTemplate, T> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for(NamedParameterJdbcTemplate shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), scatterPool));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for(CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        }
+        catch(CompletionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return results;
+    }
+
+    /**
+     * Merges lists that are each sorted into one sorted list.
+     * @param  sorted The lists to merge, each sorted by order.
+     * @param  order The order of the lists and of the result.
+     * @param  limit The maximum number of elements to return.
+     * @return Returns the first limit elements of all lists, in order.
+     */
+    private static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head(), b.head()));
+        for(List<T> list : sorted) {
+            if(!list.isEmpty()) {
+                heads.add(new Cursor<>(list));
+            }
+        }
+        List<T> merged = new ArrayList<>();
+        while(!heads.isEmpty() && merged.size() < limit) {
+            Cursor<T> cursor = heads.poll();
+            merged.add(cursor.head());
+            if(cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Adds the merge keys messageId and timePostedEpoch to a sparse fieldset.
+     * @param  fields The requested fields.
+     * @return Returns the requested fields followed by any missing merge key.
+     */
+    private static List<String> withKeys(List<String> fields) {
+        List<String> columns = new ArrayList<>(fields);
+        for(String key : List.of("messageId", "timePostedEpoch")) {
+            if(!columns.contains(key)) {
+                columns.add(key);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Builds a row mapper for the selected columns, leaving the others null.
+     * @param  columns The selected column names.
+     * @return Returns a RowMapper of MessageViews.
+     */
+    private static RowMapper<MessageView> sparseMapper(List<String> columns) {
+        return (ResultSet rs, int row) -> new MessageView(
+                column(rs, columns, "messageId", Integer.class), column(rs, columns, "postedBy", Integer.class),
+                column(rs, columns, "messageText", String.class), column(rs, columns, "timePostedEpoch", Long.class));
+    }
+
+    private static <T> T column(ResultSet rs, List<String> columns, String name, Class<T> type) throws SQLException {
+        return columns.contains(name) ? rs.getObject(name, type) : null;
+    }
+
+    /**
+     * Drops the merge keys that were not requested from merged views.
+     * @param  views The merged views.
+     * @param  fields The requested fields.
+     * @return Returns views with only the requested fields set.
+     */
+    private static List<MessageView> project(List<MessageView> views, List<String> fields) {
+        List<MessageView> projected = new ArrayList<>(views.size());
+        for(MessageView view : views) {
+            projected.add(new MessageView(
+                    fields.contains("messageId") ? view.getMessageId() : null,
+                    fields.contains("postedBy") ? view.getPostedBy() : null,
+                    fields.contains("messageText") ? view.getMessageText() : null,
+                    fields.contains("timePostedEpoch") ? view.getTimePostedEpoch() : null));
+        }
+        return projected;
+    }
+
+    private NamedParameterJdbcTemplate shardOf(int postedBy) {
+        return shards.get(ring.shardFor(postedBy));
+    }
+
+    private int shardNumber(Message message) {
+        if(message.getPostedBy() == null) {
+            throw new IllegalArgumentException("A message needs a postedBy value to be stored in a shard.");
+        }
+        return ring.shardFor(message.getPostedBy());
+    }
+
+    private int nextMessageId() {
+        return primary.queryForObject("select next value for hibernate_sequence", Integer.class);
+    }
+
+    private static int insert(NamedParameterJdbcTemplate shard, Message message) {
+        return shard.update("insert into message (" + COLUMNS + ") values "
+                + "(:messageId, :postedBy, :messageText, :timePostedEpoch)", parameters(message));
+    }
+
+    private static int update(NamedParameterJdbcTemplate shard, Message message) {
+        return shard.update("update message set postedBy = :postedBy, messageText = :messageText, "
+                + "timePostedEpoch = :timePostedEpoch where messageId = :messageId", parameters(message));
+    }
+
+    private static MapSqlParameterSource parameters(Message message) {
+        return new MapSqlParameterSource("messageId", message.getMessageId())
+                .addValue("postedBy", message.getPostedBy())
+                .addValue("messageText", message.getMessageText())
+                .addValue("timePostedEpoch", message.getTimePostedEpoch());
+    }
+
+    /**
+     * A read position in one of the sorted lists of a merge.
+     */
+    private static class Cursor<T> {
+        private final List<T> list;
+        private int position;
+
+        Cursor(List<T> list) {
+            this.list = list;
+        }
+
+        T head() {
+            return list.get(position);
+        }
+
+        boolean advance() {
+            return ++position < list.size();
+        }
+    }
+}
@@ -15,6 +15,19 @@ import com.example.repository.AccountRepository;
  */
 @Service
 public class AccountService {
+    /**
+     * Validation failures only produce an error response, and their exceptions capture no stack trace, so each
+     * fixed message is created once and thrown on every rejected request.
+     */
+    private static final InvalidModelFieldValuesException BLANK_USERNAME =
+            new InvalidModelFieldValuesException("The account username can not be blank.");
+    private static final InvalidModelFieldValuesException SHORT_PASSWORD =
+            new InvalidModelFieldValuesException("The account password must be four or more characters long.");
+    /**
+     * Thrown for every rejected login. Failed logins are the bulk of credential-stuffing traffic, so the
+     * exception is created once instead of per attempt.
+     */
+    private static final InvalidLoginException INVALID_LOGIN = new InvalidLoginException("Invalid username and password.");
     /**
      * Repository class for interacting with Accounts in the DAO layer.
      */
@@ -39,10 +52,10 @@ public class AccountService {
      */
     public Account registerAccount(Account account) {
         if(account.getUsername().equals("")) {
-            throw new InvalidModelFieldValuesException("The account username can not be blank.");
+            throw BLANK_USERNAME;
         }
         if(account.getPassword().length() <= 4) {
-            throw new InvalidModelFieldValuesException("The account password must be four or more characters long.");
+            throw SHORT_PASSWORD;
         }
         if(accountRepository.findByUsername(account.getUsername()) != null) {
             throw new DataIntegrityViolationException("Account with username" + account.getUsername() + "already exists.");
@@ -60,7 +73,7 @@ public class AccountService {
     public Account login(Account account) {
         Account loginAccount = accountRepository.findByUsername(account.getUsername());
         if(loginAccount == null || !loginAccount.getPassword().equals(account.getPassword())) {
-            throw new InvalidLoginException("Invalid username and password.");
+            throw INVALID_LOGIN;
         }
 
         return loginAccount;
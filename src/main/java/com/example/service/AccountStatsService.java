@@ -0,0 +1,279 @@
+package com.example.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.AccountStats;
+import com.example.dto.AccountStatsView;
+import com.example.dto.MessageView;
+import com.example.event.MessageChangedEvent;
+import com.example.repository.MessageStore;
+
+/**
+ * AccountStatsService maintains per-account posting statistics incrementally. The aggregates of an account are
+ * computed from the message table once, the first time the account is read or written, and are then kept up to
+ * date in memory from MessageChangedEvents. A reconciliation job recomputes every cached account from the message
+ * table to correct any drift caused by events racing with a load.
+ */
+@Service
+public class AccountStatsService {
+    private static final Logger log = LoggerFactory.getLogger(AccountStatsService.class);
+    /**
+     * The number of hourly buckets used to answer postsLast24h.
+     */
+    private static final int HOURS_PER_DAY = 24;
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    /**
+     * Repository class for reading the message aggregates.
+     */
+    private MessageStore messageStore;
+    /**
+     * In-memory aggregates keyed by accountId.
+     */
+    private final Map<Integer, StatsCell> cells = new ConcurrentHashMap<>();
+    /**
+     * The maximum number of accounts whose aggregates are kept in memory. Accounts beyond this limit are
+     * aggregated from the database on every read.
+     */
+    private final int maxAccounts;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the MessageStore dependency and the
+     * configured cache size.
+     * @param messageStore
+     * @param maxAccounts
+     */
+    @Autowired
+    public AccountStatsService(MessageStore messageStore, @Value("${app.stats.max-accounts:100000}") int maxAccounts) {
+        this.messageStore = messageStore;
+        this.maxAccounts = maxAccounts;
+    }
+
+    /**
+     * Returns the posting statistics of an account.
+     * @param  accountId The id of the account.
+     * @return Returns the message count, first and last post time, and the number of posts in the last 24 hours.
+     */
+    public AccountStatsView getStats(int accountId) {
+        StatsCell cell = cellFor(accountId);
+        if(cell.stale) {
+            refreshBounds(accountId, cell);
+        }
+        return cell.toView(accountId, currentHour());
+    }
+
+    /**
+     * Applies a committed message change to the in-memory aggregates of the message's account.
+     * @param event The change that was committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        MessageView message = event.getMessage();
+        if(message.getPostedBy() == null || message.getTimePostedEpoch() == null) {
+            return;
+        }
+        StatsCell cell = cells.get(message.getPostedBy());
+        if(cell == null) {
+            // The account is loaded from the message table on first read, which already includes this change.
+            return;
+        }
+        if(event.getType() == MessageChangedEvent.Type.CREATED) {
+            cell.add(message.getTimePostedEpoch());
+        }
+        else if(event.getType() == MessageChangedEvent.Type.DELETED) {
+            cell.remove(message.getTimePostedEpoch());
+        }
+    }
+
+    /**
+     * Recomputes the aggregates of every cached account from the message table and replaces the in-memory
+     * values that drifted.
+     */
+    @Scheduled(initialDelayString = "${app.stats.reconcile-interval-ms:300000}",
+            fixedDelayString = "${app.stats.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long hour = currentHour();
+        int corrected = 0;
+        for(Map.Entry<Integer, StatsCell> entry : cells.entrySet()) {
+            StatsCell current = entry.getValue();
+            StatsCell fresh = load(entry.getKey());
+            if(!fresh.sameAs(current, hour)) {
+                if(cells.replace(entry.getKey(), current, fresh)) {
+                    corrected++;
+                }
+            }
+        }
+        if(corrected > 0) {
+            log.info("Reconciled account statistics, corrected {} of {} accounts", corrected, cells.size());
+        }
+    }
+
+    /**
+     * Returns the cached aggregates of an account, loading them from the message table on a miss.
+     * @param  accountId The id of the account.
+     * @return Returns the StatsCell of the account.
+     */
+    private StatsCell cellFor(int accountId) {
+        StatsCell cell = cells.get(accountId);
+        if(cell != null) {
+            return cell;
+        }
+        cell = load(accountId);
+        if(cells.size() >= maxAccounts) {
+            return cell;
+        }
+        StatsCell existing = cells.putIfAbsent(accountId, cell);
+        return existing != null ? existing : cell;
+    }
+
+    /**
+     * Builds the aggregates of an account from the message table.
+     * @param  accountId The id of the account.
+     * @return Returns a new StatsCell.
+     */
+    private StatsCell load(int accountId) {
+        StatsCell cell = new StatsCell();
+        AccountStats aggregate = messageStore.aggregateByPostedBy(accountId);
+        if(aggregate != null) {
+            cell.count.add(aggregate.getMessageCount());
+            if(aggregate.getFirstPostEpoch() != null) {
+                cell.first.set(aggregate.getFirstPostEpoch());
+                cell.last.set(aggregate.getLastPostEpoch());
+            }
+        }
+        long since = (currentHour() - HOURS_PER_DAY + 1) * SECONDS_PER_HOUR;
+        for(Long epoch : messageStore.findPostTimesSince(accountId, since)) {
+            cell.addToBucket(epoch);
+        }
+        return cell;
+    }
+
+    /**
+     * Reloads the first and last post time of an account after a delete removed one of them.
+     * @param accountId The id of the account.
+     * @param cell The StatsCell of the account.
+     */
+    private void refreshBounds(int accountId, StatsCell cell) {
+        cell.stale = false;
+        AccountStats aggregate = messageStore.aggregateByPostedBy(accountId);
+        boolean hasPosts = aggregate != null && aggregate.getFirstPostEpoch() != null;
+        cell.first.set(hasPosts ? aggregate.getFirstPostEpoch() : Long.MAX_VALUE);
+        cell.last.set(hasPosts ? aggregate.getLastPostEpoch() : Long.MIN_VALUE);
+    }
+
+    /**
+     * @return Returns the number of whole hours since the epoch.
+     */
+    private static long currentHour() {
+        return Math.floorDiv(System.currentTimeMillis() / 1000, SECONDS_PER_HOUR);
+    }
+
+    /**
+     * StatsCell holds the aggregates of one account. Every field is updated lock-free so writers for the same
+     * account never block each other. Each hourly bucket packs the hour it counts in the upper 32 bits and the
+     * count in the lower 32 bits, so a bucket is rotated to a new hour with a single compare-and-set.
+     */
+    private static final class StatsCell {
+        final LongAdder count = new LongAdder();
+        final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong last = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLongArray hourBuckets = new AtomicLongArray(HOURS_PER_DAY);
+        /**
+         * Set when a delete removed the first or last post, which can not be recomputed incrementally.
+         */
+        volatile boolean stale;
+
+        void add(long epoch) {
+            count.increment();
+            first.accumulateAndGet(epoch, Math::min);
+            last.accumulateAndGet(epoch, Math::max);
+            addToBucket(epoch);
+        }
+
+        void remove(long epoch) {
+            count.decrement();
+            if(epoch <= first.get() || epoch >= last.get()) {
+                stale = true;
+            }
+            long hour = Math.floorDiv(epoch, SECONDS_PER_HOUR);
+            int index = (int) Math.floorMod(hour, (long) HOURS_PER_DAY);
+            while(true) {
+                long packed = hourBuckets.get(index);
+                if(bucketHour(packed) != hour || bucketCount(packed) == 0
+                        || hourBuckets.compareAndSet(index, packed, packed - 1)) {
+                    break;
+                }
+            }
+        }
+
+        void addToBucket(long epoch) {
+            long hour = Math.floorDiv(epoch, SECONDS_PER_HOUR);
+            int index = (int) Math.floorMod(hour, (long) HOURS_PER_DAY);
+            while(true) {
+                long packed = hourBuckets.get(index);
+                long packedHour = bucketHour(packed);
+                long updated;
+                if(packedHour == hour) {
+                    updated = packed + 1;
+                }
+                else if(packedHour < hour) {
+                    updated = (hour << 32) | 1;
+                }
+                else {
+                    // The bucket already counts a newer hour, so this post is outside the window.
+                    return;
+                }
+                if(hourBuckets.compareAndSet(index, packed, updated)) {
+                    return;
+                }
+            }
+        }
+
+        long postsSince(long currentHour) {
+            long total = 0;
+            for(int i = 0; i < HOURS_PER_DAY; i++) {
+                long packed = hourBuckets.get(i);
+                long hour = bucketHour(packed);
+                if(hour > currentHour - HOURS_PER_DAY && hour <= currentHour) {
+                    total += bucketCount(packed);
+                }
+            }
+            return total;
+        }
+
+        boolean sameAs(StatsCell other, long currentHour) {
+            return count.sum() == other.count.sum()
+                    && first.get() == other.first.get()
+                    && last.get() == other.last.get()
+                    && postsSince(currentHour) == other.postsSince(currentHour);
+        }
+
+        AccountStatsView toView(int accountId, long currentHour) {
+            long messageCount = count.sum();
+            return new AccountStatsView(accountId, messageCount,
+                    messageCount > 0 ? first.get() : null,
+                    messageCount > 0 ? last.get() : null,
+                    postsSince(currentHour));
+        }
+
+        static long bucketHour(long packed) {
+            return packed >> 32;
+        }
+
+        static long bucketCount(long packed) {
+            return packed & 0xFFFFFFFFL;
+        }
+    }
+}
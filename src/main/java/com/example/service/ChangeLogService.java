@@ -0,0 +1,225 @@
+package com.example.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.dto.ChangeFeedView;
+import com.example.dto.MessageView;
+import com.example.entity.MessageChange;
+import com.example.event.MessageChangedEvent;
+import com.example.exception.ChangeLogResetException;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.example.repository.MessageChangeRepository;
+
+/**
+ * ChangeLogService writes the message_change log and serves the "changes since" feed that offline clients use to
+ * resynchronise.
+ *
+ * Sequence numbers are assigned in memory so the service knows which of them belong to transactions that have not
+ * finished yet. The feed never returns a change past the oldest unfinished one, so a client that advances its
+ * since value can not skip a change that commits later with a smaller sequence number.
+ *
+ * A snapshot restore replaces every message, so it resets the log: the rows before it are deleted and a RESET
+ * row takes their place. A client whose since value is older than the reset gets a ChangeLogResetException and
+ * has to reload every message, then read the changes since the reset.
+ *
+ * The log is only exact when messages are stored in the primary database. With sharding the message write
+ * commits in its shard, outside the transaction that records the change; see ShardedMessageRepository.
+ */
+@Service
+public class ChangeLogService {
+    /**
+     * Repository class for interacting with the message_change log in the DAO layer.
+     */
+    private MessageChangeRepository messageChangeRepository;
+    /**
+     * Used for the batched inserts of recordAll.
+     */
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * The page size used when a request does not give a limit.
+     */
+    private final int defaultLimit;
+    /**
+     * The largest page size a request may ask for.
+     */
+    private final int maxLimit;
+    /**
+     * Guards lastSequence and inFlight.
+     */
+    private final Object sequenceLock = new Object();
+    /**
+     * The last assigned sequence number, or -1 before it was read from the log.
+     */
+    private long lastSequence = -1;
+    /**
+     * The sequence number of the last reset, or 0 if the log was never reset. Read from the log with lastSequence.
+     */
+    private volatile long resetSequence;
+    /**
+     * Sequence numbers assigned to transactions that have not completed, guarded by sequenceLock.
+     */
+    private final NavigableSet<Long> inFlight = new TreeSet<>();
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the MessageChangeRepository dependency
+     * and the configured page sizes.
+     * @param messageChangeRepository
+     * @param dataSource The primary DataSource.
+     * @param defaultLimit
+     * @param maxLimit
+     */
+    @Autowired
+    public ChangeLogService(MessageChangeRepository messageChangeRepository, DataSource dataSource,
+            @Value("${app.changes.default-limit:100}") int defaultLimit,
+            @Value("${app.changes.max-limit:1000}") int maxLimit) {
+        this.messageChangeRepository = messageChangeRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Appends a change to the log. Must be called inside the transaction that made the change.
+     * @param type The kind of change.
+     * @param message The message after a create or update, or before a delete.
+     */
+    public void record(MessageChangedEvent.Type type, MessageView message) {
+        long sequence = reserve(1);
+        if(type == MessageChangedEvent.Type.DELETED) {
+            messageChangeRepository.insert(sequence, MessageChange.DELETE, message.getMessageId(), null, null, null);
+        }
+        else {
+            messageChangeRepository.insert(sequence, MessageChange.UPSERT, message.getMessageId(),
+                    message.getPostedBy(), message.getMessageText(), message.getTimePostedEpoch());
+        }
+    }
+
+    /**
+     * Appends an UPSERT for each of a list of new messages with one batched insert, for writers that bypass
+     * MessageService such as the import. Must be called inside the transaction that inserted the messages.
+     * @param messages The inserted messages, which must have their messageIds set.
+     */
+    public void recordAll(List<MessageView> messages) {
+        if(messages.isEmpty()) {
+            return;
+        }
+        long first = reserve(messages.size());
+        jdbcTemplate.batchUpdate("insert into message_change "
+                + "(changeSeq, changeType, messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?, ?, ?)",
+                messages, messages.size(), new ParameterizedPreparedStatementSetter<MessageView>() {
+                    private long sequence = first;
+
+                    @Override
+                    public void setValues(PreparedStatement statement, MessageView message) throws SQLException {
+                        statement.setLong(1, sequence++);
+                        statement.setString(2, MessageChange.UPSERT);
+                        statement.setInt(3, message.getMessageId());
+                        statement.setInt(4, message.getPostedBy());
+                        statement.setString(5, message.getMessageText());
+                        statement.setObject(6, message.getTimePostedEpoch());
+                    }
+                });
+    }
+
+    /**
+     * Resets the log after every message was replaced, for example by a snapshot restore. The changes before the
+     * reset are deleted, and clients that read the log before it are told to reload.
+     */
+    @Transactional
+    public void reset() {
+        long sequence = reserve(1);
+        messageChangeRepository.deleteByChangeSeqLessThan(sequence);
+        messageChangeRepository.insert(sequence, MessageChange.RESET, 0, null, null, null);
+        resetSequence = sequence;
+    }
+
+    /**
+     * Returns the changes after a given sequence number.
+     * @param  since The nextSince value of the previous response, or 0 for the whole log.
+     * @param  limit The maximum number of changes to return, or null for the default.
+     * @throws InvalidModelFieldValuesException when limit is not positive.
+     * @throws ChangeLogResetException when since is before the last reset of the log.
+     * @return Returns the changes in order, the sequence number to resume from, and whether more are available.
+     */
+    public ChangeFeedView getChanges(long since, Integer limit) {
+        int pageSize = limit == null ? defaultLimit : Math.min(limit, maxLimit);
+        if(pageSize <= 0) {
+            throw new InvalidModelFieldValuesException("The limit must be a positive number.");
+        }
+        long upTo;
+        synchronized(sequenceLock) {
+            initSequence();
+            upTo = inFlight.isEmpty() ? lastSequence : inFlight.first() - 1;
+        }
+        long reset = resetSequence;
+        if(since > 0 && since < reset) {
+            throw new ChangeLogResetException("The change log was reset at " + reset
+                    + ". Reload the messages, then read the changes since " + reset + ".", reset);
+        }
+        long from = Math.max(since, reset);
+        List<MessageChange> changes = messageChangeRepository
+                .findByChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeq(from, upTo,
+                        PageRequest.of(0, pageSize + 1));
+        boolean hasMore = changes.size() > pageSize;
+        if(hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        long nextSince = changes.isEmpty() ? from : changes.get(changes.size() - 1).getChangeSeq();
+        return new ChangeFeedView(changes, nextSince, hasMore);
+    }
+
+    /**
+     * Assigns consecutive sequence numbers to the current transaction. They count as in flight until the
+     * transaction completes.
+     * @param  count The number of sequence numbers.
+     * @return Returns the first of the assigned sequence numbers.
+     */
+    private long reserve(int count) {
+        long first;
+        synchronized(sequenceLock) {
+            initSequence();
+            first = lastSequence + 1;
+            lastSequence += count;
+            for(long sequence = first; sequence <= lastSequence; sequence++) {
+                inFlight.add(sequence);
+            }
+        }
+        long last = first + count - 1;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized(sequenceLock) {
+                    inFlight.subSet(first, true, last, true).clear();
+                }
+            }
+        });
+        return first;
+    }
+
+    /**
+     * Reads the last sequence number from the log the first time it is needed. Callers hold sequenceLock.
+     */
+    private void initSequence() {
+        if(lastSequence < 0) {
+            MessageChangeRepository.SequenceBounds bounds = messageChangeRepository.findSequenceBounds();
+            lastSequence = bounds.getLastChangeSeq() == null ? 0 : bounds.getLastChangeSeq();
+            resetSequence = bounds.getResetChangeSeq() == null ? 0 : bounds.getResetChangeSeq();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+import com.example.repository.ShardedMessageRepository;
+import com.example.util.ZipfSampler;
+
+/**
+ * DataGeneratorService seeds the database with a production-like data set for performance testing. It runs once
+ * at startup when the app is started with --app.generator.enabled=true, e.g.
+ *
+ *     java -jar app.jar --app.generator.enabled=true --app.generator.accounts=1000000 --app.generator.messages=10000000
+ *
+ * Posters are drawn from a Zipf distribution over the generated accounts, so a few accounts post most of the
+ * messages. Message texts follow a log-normal length distribution capped at 255 characters, and post times are
+ * spread uniformly over the last days days. Rows are written with batched JDBC inserts, batch-size rows per
+ * statement batch and transaction, bypassing JPA, the change log and the message events like data.sql does.
+ *
+ * The generated ids are reserved from hibernate_sequence in blocks, so rows created through the API afterwards do
+ * not collide with them; the generator is meant to run before any traffic. An in-memory database needs roughly
+ * 200 bytes of heap per message.
+ */
+@Service
+@ConditionalOnProperty(name = "app.generator.enabled", havingValue = "true")
+public class DataGeneratorService implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(DataGeneratorService.class);
+
+    /**
+     * The words message texts are built from.
+     */
+    private static final String[] WORDS = { "the", "a", "to", "and", "of", "in", "is", "it", "you", "that", "was",
+            "for", "on", "are", "with", "they", "be", "at", "one", "have", "this", "from", "had", "by", "word", "but",
+            "what", "some", "we", "can", "out", "other", "were", "all", "there", "when", "up", "use", "your", "how",
+            "said", "each", "she", "which", "do", "their", "time", "if", "will", "way", "about", "many", "then",
+            "them", "write", "would", "like", "so", "these", "her", "long", "make", "thing", "see", "him", "two",
+            "has", "look", "more", "day", "could", "go", "come", "did", "number", "sound", "no", "most", "people",
+            "my", "over", "know", "water", "than", "call", "first", "who", "may", "down", "side", "been", "now",
+            "find", "coffee", "weekend", "game", "today", "tonight", "great", "new", "love", "happy", "#perf" };
+
+    /**
+     * Used for the batched inserts into the primary database.
+     */
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * Repository class for interacting with Messages, used instead of JDBC when messages are sharded.
+     */
+    private MessageStore messageStore;
+    /**
+     * Runs each batch in its own transaction.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * The number of accounts to generate.
+     */
+    private final int accounts;
+    /**
+     * The number of messages to generate.
+     */
+    private final long messages;
+    /**
+     * The skew of the Zipf distribution of posters.
+     */
+    private final double posterSkew;
+    /**
+     * The median length of a message text.
+     */
+    private final int medianTextLength;
+    /**
+     * Messages are posted within this many seconds before the generator runs.
+     */
+    private final long timeSpanSeconds;
+    /**
+     * The number of rows per batch.
+     */
+    private final int batchSize;
+    /**
+     * The seed of the generator, so a data set can be reproduced.
+     */
+    private final long seed;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the database access and the settings.
+     * @param dataSource The primary DataSource.
+     * @param messageStore
+     * @param transactionManager Used to run each batch in its own transaction.
+     * @param accounts The number of accounts to generate.
+     * @param messages The number of messages to generate.
+     * @param posterSkew The exponent of the Zipf distribution of posters; 0 spreads messages evenly.
+     * @param medianTextLength The median length of a message text.
+     * @param days Messages are posted within this many days before the generator runs.
+     * @param batchSize The number of rows per batch.
+     * @param seed The seed of the generator.
+     */
+    @Autowired
+    public DataGeneratorService(DataSource dataSource, MessageStore messageStore,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.generator.accounts:100000}") int accounts,
+            @Value("${app.generator.messages:1000000}") long messages,
+            @Value("${app.generator.poster-skew:1.1}") double posterSkew,
+            @Value("${app.generator.median-text-length:60}") int medianTextLength,
+            @Value("${app.generator.days:365}") int days,
+            @Value("${app.generator.batch-size:5000}") int batchSize,
+            @Value("${app.generator.seed:42}") long seed) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.messageStore = messageStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accounts = accounts;
+        this.messages = messages;
+        this.posterSkew = posterSkew;
+        this.medianTextLength = medianTextLength;
+        this.timeSpanSeconds = TimeUnit.DAYS.toSeconds(days);
+        this.batchSize = batchSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the accounts and then the messages.
+     * @param args The arguments of the program.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        int firstAccountId = (int) reserveIds(accounts);
+        insertAccounts(firstAccountId);
+        log.info("Generated {} accounts in {} ms", accounts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        start = System.nanoTime();
+        insertMessages(firstAccountId, random);
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Generated {} messages in {} ms ({} rows/s)", messages, elapsedMs, messages * 1000 / elapsedMs);
+    }
+
+    /**
+     * Inserts the accounts user{accountId} with the password "password", so load tests can log in as any of them.
+     * @param firstAccountId The id of the first account.
+     */
+    private void insertAccounts(int firstAccountId) {
+        for(int offset = 0; offset < accounts; offset += batchSize) {
+            int first = firstAccountId + offset;
+            int size = Math.min(batchSize, accounts - offset);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    "insert into account (accountId, username, password) values (?, ?, ?)",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement statement, int i) throws SQLException {
+                            statement.setInt(1, first + i);
+                            statement.setString(2, "user" + (first + i));
+                            statement.setString(3, "password");
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return size;
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * Inserts the messages in batches.
+     * @param firstAccountId The id of the first generated account.
+     * @param random The source of randomness.
+     */
+    private void insertMessages(int firstAccountId, Random random) {
+        ZipfSampler posters = new ZipfSampler(accounts, posterSkew);
+        int stride = coprimeStride(accounts);
+        String corpus = corpus(random);
+        long now = System.currentTimeMillis() / 1000;
+        boolean sharded = messageStore instanceof ShardedMessageRepository;
+        long firstMessageId = reserveIds(messages);
+        for(long offset = 0; offset < messages; offset += batchSize) {
+            int size = (int) Math.min(batchSize, messages - offset);
+            List<Message> batch = new ArrayList<>(size);
+            for(int i = 0; i < size; i++) {
+                // Spread the popular ranks over the id range so the busiest posters are not all neighbours.
+                int rank = posters.sample(random) - 1;
+                int postedBy = firstAccountId + (int) ((long) rank * stride % accounts);
+                batch.add(new Message((int) (firstMessageId + offset + i), postedBy, text(corpus, random),
+                        now - (long) (random.nextDouble() * timeSpanSeconds)));
+            }
+            if(sharded) {
+                messageStore.saveAll(batch);
+                continue;
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    "insert into message (messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?)",
+                    batch, batch.size(), (statement, message) -> {
+                        statement.setInt(1, message.getMessageId());
+                        statement.setInt(2, message.getPostedBy());
+                        statement.setString(3, message.getMessageText());
+                        statement.setLong(4, message.getTimePostedEpoch());
+                    }));
+        }
+    }
+
+    /**
+     * Reserves a block of consecutive ids from hibernate_sequence. The block starts above the ids already in use,
+     * including the ids data.sql inserts without the sequence.
+     * @param  count The number of ids.
+     * @return Returns the first id of the block.
+     */
+    private long reserveIds(long count) {
+        long next = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+        long used = jdbcTemplate.queryForObject("select greatest((select coalesce(max(accountId), 0) from account), "
+                + "(select coalesce(max(messageId), 0) from message))", Long.class);
+        long first = Math.max(next, used + 1);
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + (first + count));
+        return first;
+    }
+
+    /**
+     * Builds a message text with a log-normal length between 1 and 255 characters.
+     * @param  corpus The text the message is cut from.
+     * @param  random The source of randomness.
+     * @return Returns the message text.
+     */
+    private String text(String corpus, Random random) {
+        int length = (int) Math.round(medianTextLength * Math.exp(0.8 * random.nextGaussian()));
+        length = Math.max(1, Math.min(255, length));
+        int start = random.nextInt(corpus.length() - 256);
+        while(corpus.charAt(start) == ' ') {
+            start++;
+        }
+        return corpus.substring(start, start + length).trim();
+    }
+
+    /**
+     * Builds the text messages are cut from out of random words.
+     * @param  random The source of randomness.
+     * @return Returns about 64 KB of words separated by single spaces.
+     */
+    private static String corpus(Random random) {
+        StringBuilder corpus = new StringBuilder(1 << 16);
+        while(corpus.length() < 1 << 16) {
+            corpus.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return corpus.toString();
+    }
+
+    /**
+     * Finds a stride that is coprime to n, so multiplying ranks by it permutes 0..n-1.
+     * @param  n The number of accounts.
+     * @return Returns the stride.
+     */
+    private static int coprimeStride(int n) {
+        if(n == 1) {
+            return 1;
+        }
+        int stride = (int) (0x9E3779B1L % n);
+        while(stride == 0 || gcd(stride, n) != 1) {
+            stride = (stride + 1) % n;
+        }
+        return stride;
+    }
+
+    /**
+     * Euclid's algorithm.
+     * @param  a
+     * @param  b
+     * @return Returns the greatest common divisor of a and b.
+     */
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.event.MessageChangedEvent;
+import com.example.repository.MessageStore;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * GroupCommitWriter is the opt-in write-behind path for message creation. Validated messages are queued in a
+ * bounded buffer and a single writer thread inserts them in one transaction once max-batch-size messages are
+ * queued or max-delay-ms has passed since the first one arrived.
+ *
+ * Durability: a request only returns after the transaction holding its message has committed, so an
+ * acknowledged message is exactly as durable as with one transaction per request. A crash can only lose
+ * messages whose requests have not been answered yet. If a batch fails, each of its messages is retried in a
+ * transaction of its own so one bad row does not fail the others. When the buffer is full, the message is
+ * written synchronously on the request thread instead of waiting for space.
+ *
+ * A request that waits longer than request-timeout-ms withdraws its message from the buffer and fails, and the
+ * message is then never written. If the writer has already taken the message into a batch, the request waits for
+ * that batch instead and answers with its outcome, so a failed request never leaves a message that commits later.
+ */
+@Service
+public class GroupCommitWriter {
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    /**
+     * Repository class for interacting with Messages in the DAO layer.
+     */
+    private MessageStore messageStore;
+    /**
+     * Runs each batch in a single transaction.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * Publishes a MessageChangedEvent for every written message.
+     */
+    private ApplicationEventPublisher eventPublisher;
+    /**
+     * Appends the created messages to the message_change log inside the batch transaction.
+     */
+    private ChangeLogService changeLogService;
+    /**
+     * Whether createMessage should go through the group-commit buffer.
+     */
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long requestTimeoutMillis;
+    private final BlockingQueue<PendingMessage> queue;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the dependencies and the configured
+     * batching limits.
+     * @param messageStore
+     * @param transactionManager
+     * @param eventPublisher
+     * @param changeLogService
+     * @param meterRegistry
+     * @param enabled
+     * @param maxBatchSize
+     * @param maxDelayMillis
+     * @param queueCapacity
+     * @param requestTimeoutMillis
+     */
+    @Autowired
+    public GroupCommitWriter(MessageStore messageStore, PlatformTransactionManager transactionManager,
+            ApplicationEventPublisher eventPublisher, ChangeLogService changeLogService, MeterRegistry meterRegistry,
+            @Value("${app.group-commit.enabled:false}") boolean enabled,
+            @Value("${app.group-commit.max-batch-size:64}") int maxBatchSize,
+            @Value("${app.group-commit.max-delay-ms:5}") long maxDelayMillis,
+            @Value("${app.group-commit.queue-capacity:4096}") int queueCapacity,
+            @Value("${app.group-commit.request-timeout-ms:30000}") long requestTimeoutMillis) {
+        this.messageStore = messageStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.changeLogService = changeLogService;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("app.group_commit.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for the next group commit")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("app.group_commit.batch.size")
+                .description("Messages written per group commit")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("app.group_commit.flush")
+                .description("Time spent writing and committing one batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the writer thread when group commit is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if(!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::run, "group-commit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer thread after it has written every queued message.
+     * @throws InterruptedException
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if(writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * @return Returns true if createMessage should call write instead of saving the message itself.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a validated message and blocks until the batch holding it has committed.
+     * @param  message The message to insert.
+     * @return Returns the saved message, including its generated messageId.
+     */
+    public Message write(Message message) {
+        PendingMessage pending = new PendingMessage(message);
+        if(!running || !queue.offer(pending)) {
+            return writeAlone(message);
+        }
+        try {
+            return pending.result.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch(ExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the group commit.", ex);
+        }
+        catch(TimeoutException ex) {
+            // The queue lock orders this with the writer taking messages, so a message that is still queued can
+            // be withdrawn and is never written. Otherwise it is in the batch being written, which decides it.
+            if(queue.remove(pending)) {
+                throw new IllegalStateException("Timed out waiting for the group commit, the message was not "
+                        + "written.", ex);
+            }
+            return awaitBatch(pending);
+        }
+    }
+
+    /**
+     * Waits for the batch that holds a message without a time limit, once the writer has taken it from the queue.
+     * @param  pending The message.
+     * @return Returns the saved message.
+     */
+    private Message awaitBatch(PendingMessage pending) {
+        try {
+            return pending.result.get();
+        }
+        catch(ExecutionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the group commit.", ex);
+        }
+    }
+
+    /**
+     * The writer thread loop. Collects up to maxBatchSize messages, waiting at most maxDelay after the first one,
+     * and writes them in one transaction.
+     */
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while(running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while(batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if(batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if(next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if(!writeBatch(batch)) {
+                    for(PendingMessage pending : batch) {
+                        try {
+                            pending.result.complete(writeAlone(pending.message));
+                        }
+                        catch(RuntimeException ex) {
+                            pending.result.completeExceptionally(ex);
+                        }
+                    }
+                }
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                IllegalStateException stopped = new IllegalStateException("The group commit writer was stopped.");
+                for(PendingMessage pending : batch) {
+                    pending.result.completeExceptionally(stopped);
+                }
+                return;
+            }
+            catch(RuntimeException ex) {
+                log.error("Group commit writer failed", ex);
+                for(PendingMessage pending : batch) {
+                    pending.result.completeExceptionally(ex);
+                }
+            }
+            finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch of messages in one transaction and completes their requests after the commit.
+     * @param  batch The messages to insert.
+     * @return Returns false if the transaction failed and the messages still have to be written.
+     */
+    private boolean writeBatch(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        List<Message> messages = new ArrayList<>(batch.size());
+        for(PendingMessage pending : batch) {
+            messages.add(pending.message);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for(Message saved : messageStore.saveAll(messages)) {
+                    recordCreated(saved);
+                }
+            });
+        }
+        catch(RuntimeException ex) {
+            log.warn("Group commit of {} messages failed, retrying them one by one", batch.size(), ex);
+            for(Message message : messages) {
+                message.setMessageId(null);
+            }
+            return false;
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        for(PendingMessage pending : batch) {
+            pending.result.complete(pending.message);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts one message in a transaction of its own.
+     * @param  message The message to insert.
+     * @return Returns the saved message.
+     */
+    private Message writeAlone(Message message) {
+        return transactionTemplate.execute(status -> {
+            Message saved = messageStore.save(message);
+            recordCreated(saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Logs a created message in the current transaction and publishes it to the listeners that run after the
+     * commit.
+     * @param saved The inserted message.
+     */
+    private void recordCreated(Message saved) {
+        MessageView view = MessageView.of(saved);
+        changeLogService.record(MessageChangedEvent.Type.CREATED, view);
+        eventPublisher.publishEvent(new MessageChangedEvent(MessageChangedEvent.Type.CREATED, view));
+    }
+
+    /**
+     * A queued message and the future its request is waiting on.
+     */
+    private static final class PendingMessage {
+        final Message message;
+        final CompletableFuture<Message> result = new CompletableFuture<>();
+
+        PendingMessage(Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.entity.IdempotencyRecord;
+import com.example.exception.IdempotencyKeyReusedException;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.example.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * IdempotencyService makes POST handlers safe to retry. The first request with a given Idempotency-Key runs the
+ * handler and its successful response is remembered for a limited time; retries with the same key get that
+ * response back without running the handler again, and concurrent duplicates wait for the first execution
+ * instead of starting their own. Failed executions are forgotten so the client can retry them.
+ *
+ * Every key is remembered with a SHA-256 fingerprint of the request it was first used with, and a key that comes
+ * back with a different request is rejected with an IdempotencyKeyReusedException instead of being answered with
+ * the response of the other request. Callers put the identity of the client into the scope where the request has
+ * one, and can redact the remembered response, so a replay never hands out data like credentials that only the
+ * first caller should see.
+ *
+ * Responses are kept in a bounded in-memory map, and can additionally be written to the idempotency_key table so
+ * they survive a restart. Once the map is full and holds no expired keys, new keys are executed without being
+ * remembered.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    /**
+     * Header sent on responses that were replayed from a previous execution.
+     */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final IdempotencyKeyReusedException KEY_REUSED =
+            new IdempotencyKeyReusedException("The Idempotency-Key was already used with a different request.");
+
+    /**
+     * Repository class for the optional durable copy of the remembered responses.
+     */
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+    /**
+     * Serializes response bodies for the durable copy.
+     */
+    private ObjectMapper objectMapper;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final boolean persistent;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the dependencies and the configured
+     * limits.
+     * @param idempotencyRecordRepository
+     * @param objectMapper
+     * @param ttlSeconds
+     * @param maxEntries
+     * @param persistent
+     */
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+            @Value("${app.idempotency.ttl-seconds:86400}") long ttlSeconds,
+            @Value("${app.idempotency.max-entries:100000}") int maxEntries,
+            @Value("${app.idempotency.persistent:false}") boolean persistent) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.persistent = persistent;
+    }
+
+    /**
+     * Runs a handler at most once per idempotency key, remembering its response as is.
+     * @param  scope The route the key belongs to, and the client identity where the request has one.
+     * @param  key The Idempotency-Key header, or null to run the handler unconditionally.
+     * @param  request The request body, whose fingerprint a reused key must match.
+     * @param  bodyType The type of the response body, used to read the durable copy.
+     * @param  action The handler.
+     * @throws InvalidModelFieldValuesException when the key is blank or longer than 255 characters.
+     * @throws IdempotencyKeyReusedException when the key was used with a different request.
+     * @return Returns the response of the handler, or the remembered response of an earlier execution.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Class<T> bodyType,
+            Supplier<ResponseEntity<T>> action) {
+        return execute(scope, key, request, bodyType, UnaryOperator.identity(), action);
+    }
+
+    /**
+     * Runs a handler at most once per idempotency key. The first caller gets the response of the handler, and
+     * retries get the redacted copy that is remembered.
+     * @param  scope The route the key belongs to, and the client identity where the request has one.
+     * @param  key The Idempotency-Key header, or null to run the handler unconditionally.
+     * @param  request The request body, whose fingerprint a reused key must match.
+     * @param  bodyType The type of the response body, used to read the durable copy.
+     * @param  redaction Returns the body to remember for replays, without the fields retries must not see.
+     * @param  action The handler.
+     * @throws InvalidModelFieldValuesException when the key is blank or longer than 255 characters.
+     * @throws IdempotencyKeyReusedException when the key was used with a different request.
+     * @return Returns the response of the handler, or the remembered response of an earlier execution.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Class<T> bodyType,
+            UnaryOperator<T> redaction, Supplier<ResponseEntity<T>> action) {
+        if(key == null) {
+            return action.get();
+        }
+        if(key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidModelFieldValuesException("The Idempotency-Key must be between 1 and 255 characters.");
+        }
+        String storeKey = scope + ":" + key;
+        String fingerprint = fingerprint(storeKey, request);
+        Entry entry = new Entry(fingerprint);
+        while(true) {
+            Entry existing = entries.get(storeKey);
+            if(existing != null && !existing.isExpired(System.currentTimeMillis())) {
+                if(!existing.fingerprint.equals(fingerprint)) {
+                    throw KEY_REUSED;
+                }
+                return replay(existing.response, bodyType);
+            }
+            if(existing == null && entries.size() >= maxEntries && evictExpired() == 0) {
+                return action.get();
+            }
+            boolean claimed = existing == null
+                    ? entries.putIfAbsent(storeKey, entry) == null
+                    : entries.replace(storeKey, existing, entry);
+            if(claimed) {
+                break;
+            }
+        }
+        try {
+            ResponseEntity<T> response = persistent ? loadRecord(storeKey, fingerprint, bodyType) : null;
+            ResponseEntity<T> remembered = response;
+            if(response == null) {
+                response = action.get();
+                remembered = ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders())
+                        .body(response.getBody() == null ? null : redaction.apply(response.getBody()));
+                if(persistent) {
+                    saveRecord(storeKey, fingerprint, remembered);
+                }
+            }
+            entry.expiresAt = System.currentTimeMillis() + ttlMillis;
+            entry.response.complete(remembered);
+            return response;
+        }
+        catch(RuntimeException ex) {
+            entries.remove(storeKey, entry);
+            entry.response.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Removes the remembered responses whose time to live has passed.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        evictExpired();
+        if(persistent) {
+            idempotencyRecordRepository.deleteExpired(System.currentTimeMillis() - ttlMillis);
+        }
+    }
+
+    private int evictExpired() {
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next().isExpired(now)) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Waits for the execution that claimed a key and returns a copy of its response.
+     */
+    private static <T> ResponseEntity<T> replay(CompletableFuture<ResponseEntity<?>> pending, Class<T> bodyType) {
+        ResponseEntity<?> response;
+        try {
+            response = pending.join();
+        }
+        catch(CompletionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return ResponseEntity.status(response.getStatusCode()).headers(headers).body(bodyType.cast(response.getBody()));
+    }
+
+    private <T> ResponseEntity<T> loadRecord(String storeKey, String fingerprint, Class<T> bodyType) {
+        IdempotencyRecord record = idempotencyRecordRepository.findById(storeKey).orElse(null);
+        if(record == null || record.getCreatedAt() + ttlMillis < System.currentTimeMillis()) {
+            return null;
+        }
+        if(!fingerprint.equals(record.getRequestHash())) {
+            throw KEY_REUSED;
+        }
+        try {
+            T body = record.getBody() == null ? null : objectMapper.readValue(record.getBody(), bodyType);
+            return ResponseEntity.status(record.getStatus()).header(REPLAYED_HEADER, "true").body(body);
+        }
+        catch(JsonProcessingException ex) {
+            throw new IllegalStateException("Stored idempotent response could not be read.", ex);
+        }
+    }
+
+    /**
+     * Writes the durable copy of a response. The handler has already run at this point, so a failure is logged
+     * rather than turned into an error response the client would retry.
+     */
+    private void saveRecord(String storeKey, String fingerprint, ResponseEntity<?> response) {
+        try {
+            String body = response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody());
+            idempotencyRecordRepository.save(new IdempotencyRecord(storeKey, fingerprint,
+                    response.getStatusCodeValue(), body, System.currentTimeMillis()));
+        }
+        catch(JsonProcessingException | RuntimeException ex) {
+            log.warn("Idempotent response for {} could not be stored", storeKey, ex);
+        }
+    }
+
+    /**
+     * Hashes the request a key is used with. The store key salts the hash, so equal bodies sent with different
+     * keys do not share a fingerprint.
+     * @param  storeKey The scope and key.
+     * @param  request The request body.
+     * @return Returns the Base64 encoded SHA-256 of the store key and the JSON of the request body.
+     */
+    private String fingerprint(String storeKey, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(storeKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        }
+        catch(NoSuchAlgorithmException | JsonProcessingException ex) {
+            throw new IllegalStateException("The request could not be fingerprinted.", ex);
+        }
+    }
+
+    /**
+     * A claimed key. The response completes when the first execution finishes.
+     */
+    private static final class Entry {
+        /**
+         * The fingerprint of the request that claimed the key.
+         */
+        final String fingerprint;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            return now > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.MessageView;
+import com.example.event.MessageChangedEvent;
+import com.example.repository.MessageStore;
+import com.example.util.LatestMessagesRing;
+
+/**
+ * LatestMessagesService keeps the newest messages in a LatestMessagesRing, so GET /messages?latest=N is answered
+ * from memory without a query. The ring is loaded from the message table once the application is ready and is
+ * then fed by the committed MessageChangedEvents.
+ *
+ * Bulk paths that write the message table without events, the snapshot restore and the import, call reload
+ * afterwards. Changes committed while a reload reads the table may be missing from the ring until the next
+ * reload; new messages keep arriving through the events.
+ */
+@Service
+public class LatestMessagesService {
+    private static final Logger log = LoggerFactory.getLogger(LatestMessagesService.class);
+
+    /**
+     * Repository class for loading the newest messages.
+     */
+    private MessageStore messageStore;
+    /**
+     * The number of messages kept.
+     */
+    private final int capacity;
+    /**
+     * The average text size the byte store of the ring is sized for.
+     */
+    private final int textBytesPerMessage;
+    /**
+     * The current ring, replaced as a whole by reload.
+     */
+    private volatile LatestMessagesRing ring;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the MessageStore dependency and
+     * the size of the ring.
+     * @param messageStore
+     * @param capacity The number of messages kept.
+     * @param textBytesPerMessage The average text size the byte store of the ring is sized for.
+     */
+    @Autowired
+    public LatestMessagesService(MessageStore messageStore,
+            @Value("${app.latest.capacity:1000}") int capacity,
+            @Value("${app.latest.text-bytes-per-message:128}") int textBytesPerMessage) {
+        this.messageStore = messageStore;
+        this.capacity = capacity;
+        this.textBytesPerMessage = textBytesPerMessage;
+        this.ring = new LatestMessagesRing(capacity, textBytesPerMessage);
+    }
+
+    /**
+     * Returns the newest messages.
+     * @param  count The largest number of messages returned, at most getCapacity.
+     * @return Returns up to count messages, newest first.
+     */
+    public List<MessageView> getLatest(int count) {
+        return ring.latest(count);
+    }
+
+    /**
+     * @return Returns the largest number of messages getLatest returns.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Replaces the ring with one loaded from the message table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        LatestMessagesRing loaded = new LatestMessagesRing(capacity, textBytesPerMessage);
+        List<MessageView> newest = messageStore.findLatestViews(PageRequest.of(0, capacity));
+        for(int i = newest.size() - 1; i >= 0; i--) {
+            loaded.add(newest.get(i));
+        }
+        ring = loaded;
+        log.info("Loaded the latest {} messages", newest.size());
+    }
+
+    /**
+     * Applies a committed change to the ring.
+     * @param event The change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        MessageView message = event.getMessage();
+        switch(event.getType()) {
+            case CREATED:
+                ring.add(message);
+                break;
+            case UPDATED:
+                ring.updateText(message.getMessageId(), message.getMessageText());
+                break;
+            case DELETED:
+                ring.remove(message.getMessageId());
+                break;
+        }
+    }
+}
@@ -0,0 +1,788 @@
+package com.example.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.ImportReport;
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.example.repository.MessageStore;
+import com.example.repository.ShardedMessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * MessageImportService streams messages from a local NDJSON or CSV file into the message table, for migrating
+ * history from other systems. It runs at startup when app.import.file names a file, and can be called directly.
+ *
+ * The file is read sequentially in chunks of batch-size lines. Chunks are parsed and validated by parse-workers
+ * threads, and the validated chunks are inserted in file order, one batched JDBC insert per chunk. At most two
+ * chunks per worker are in flight, so memory use does not depend on the size of the file. Rows are validated with
+ * the same rules as MessageService.createMessage, with the posters checked against the account ids loaded when the
+ * import starts. Rejected rows are appended to "<file>.rejected" with their line number and the reason.
+ *
+ * Each chunk is inserted in the same transaction that advances the import's row in message_import to the byte
+ * offset after the chunk. An import that is interrupted resumes from that offset when it is started again, and an
+ * import that completed imports nothing when it is started again. Rejections are written before the transaction,
+ * so a crash between the two can list the rejected rows of one chunk twice. With sharding enabled, a chunk and its
+ * checkpoint are committed separately, so one chunk may be imported twice after a crash.
+ *
+ * The imported messages are logged to the change feed in the transaction of their chunk, as UPSERTs, but no
+ * MessageChangedEvents are published for them. The services that keep derived state reload or reconcile it once
+ * the import stops.
+ *
+ * NDJSON lines are message objects as accepted by POST /messages. CSV files start with a header naming the
+ * postedBy, messageText and optionally timePostedEpoch columns; other columns are ignored. Every record must be on
+ * one line, so texts with line breaks need NDJSON.
+ */
+@Service
+public class MessageImportService implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(MessageImportService.class);
+
+    /**
+     * Used for the batched inserts and the checkpoints in the primary database.
+     */
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * Repository class for interacting with Messages, used instead of JDBC when messages are sharded.
+     */
+    private MessageStore messageStore;
+    /**
+     * Reloaded after an import, since the imported messages are inserted without events.
+     */
+    private LatestMessagesService latestMessagesService;
+    /**
+     * Reloaded after an import, since the imported messages are inserted without events.
+     */
+    private TrendingService trendingService;
+    /**
+     * Reconciled after an import, since the imported messages are inserted without events.
+     */
+    private AccountStatsService accountStatsService;
+    /**
+     * Logs the imported messages to the change feed.
+     */
+    private ChangeLogService changeLogService;
+    /**
+     * Runs each chunk and its checkpoint in one transaction.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * Parses NDJSON lines with the application's Message deserializer.
+     */
+    private ObjectMapper objectMapper;
+    /**
+     * Counts the imported rows.
+     */
+    private final Counter importedRows;
+    /**
+     * Counts the rejected rows.
+     */
+    private final Counter rejectedRows;
+    /**
+     * The file imported at startup, or empty for none.
+     */
+    private final String startupFile;
+    /**
+     * The number of lines per chunk and insert batch.
+     */
+    private final int batchSize;
+    /**
+     * The number of threads parsing and validating chunks.
+     */
+    private final int parseWorkers;
+    /**
+     * Longer lines are rejected without being kept in memory.
+     */
+    private final int maxLineBytes;
+    /**
+     * The minimum time between two progress log lines.
+     */
+    private final long progressIntervalNanos;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the database access and the settings.
+     * @param dataSource The primary DataSource.
+     * @param messageStore
+     * @param latestMessagesService
+     * @param trendingService
+     * @param accountStatsService
+     * @param changeLogService
+     * @param transactionManager Used to run each chunk in its own transaction.
+     * @param objectMapper The application's ObjectMapper.
+     * @param meterRegistry The registry of the app.import.rows counters.
+     * @param startupFile The file imported at startup, or empty for none.
+     * @param batchSize The number of lines per chunk and insert batch.
+     * @param parseWorkers The number of threads parsing and validating chunks, or 0 for one per processor.
+     * @param maxLineBytes Longer lines are rejected.
+     * @param progressIntervalMs The minimum time between two progress log lines.
+     */
+    @Autowired
+    public MessageImportService(DataSource dataSource, MessageStore messageStore,
+            LatestMessagesService latestMessagesService, TrendingService trendingService,
+            AccountStatsService accountStatsService, ChangeLogService changeLogService,
+            PlatformTransactionManager transactionManager, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${app.import.file:}") String startupFile,
+            @Value("${app.import.batch-size:2000}") int batchSize,
+            @Value("${app.import.parse-workers:0}") int parseWorkers,
+            @Value("${app.import.max-line-bytes:65536}") int maxLineBytes,
+            @Value("${app.import.progress-interval-ms:10000}") long progressIntervalMs) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.messageStore = messageStore;
+        this.latestMessagesService = latestMessagesService;
+        this.trendingService = trendingService;
+        this.accountStatsService = accountStatsService;
+        this.changeLogService = changeLogService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.importedRows = Counter.builder("app.import.rows").tag("outcome", "imported").register(meterRegistry);
+        this.rejectedRows = Counter.builder("app.import.rows").tag("outcome", "rejected").register(meterRegistry);
+        this.startupFile = startupFile;
+        this.batchSize = batchSize;
+        this.parseWorkers = parseWorkers > 0 ? parseWorkers : Runtime.getRuntime().availableProcessors();
+        this.maxLineBytes = maxLineBytes;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(progressIntervalMs);
+    }
+
+    /**
+     * Imports app.import.file when it is set.
+     * @param args The arguments of the program.
+     */
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if(!startupFile.isBlank()) {
+            ImportReport report = importFile(Paths.get(startupFile));
+            log.info("Import of {} finished: {}", startupFile, report);
+        }
+    }
+
+    /**
+     * Imports the messages of a file, resuming from its checkpoint if it was imported before.
+     * @param  file The NDJSON file, or a CSV file when the name ends with ".csv".
+     * @throws IOException when the file can not be read or the rejected rows can not be written.
+     * @throws IllegalArgumentException when a CSV file does not have a valid header.
+     * @return Returns the totals of the import over all of its runs.
+     */
+    public ImportReport importFile(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        String importKey = path.toString();
+        boolean csv = path.getFileName().toString().toLowerCase().endsWith(".csv");
+        Progress progress = loadCheckpoint(importKey);
+        if(progress.byteOffset > Files.size(path)) {
+            log.warn("The checkpoint of {} is past the end of the file, importing it from the start", importKey);
+            progress = new Progress();
+        }
+        long resumedFromOffset = progress.byteOffset;
+
+        CsvColumns columns = null;
+        if(csv) {
+            columns = readCsvHeader(path);
+            if(progress.byteOffset == 0) {
+                progress.byteOffset = columns.headerBytes;
+                progress.lineNumber = 1;
+            }
+        }
+        BitSet accountIds = loadAccountIds();
+        skipUsedIds();
+        boolean sharded = messageStore instanceof ShardedMessageRepository;
+        ExecutorService workers = Executors.newFixedThreadPool(parseWorkers, parseThreadFactory());
+        Path rejectedFile = path.resolveSibling(path.getFileName() + ".rejected");
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                BufferedWriter rejected = Files.newBufferedWriter(rejectedFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            channel.position(progress.byteOffset);
+            LineReader reader = new LineReader(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16),
+                    progress.byteOffset, progress.lineNumber, maxLineBytes);
+            Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+            long started = System.nanoTime();
+            long lastReport = started;
+            CsvColumns csvColumns = columns;
+            for(Chunk chunk = reader.read(batchSize); chunk != null; chunk = reader.read(batchSize)) {
+                Chunk next = chunk;
+                inFlight.add(workers.submit(() -> parse(next, csvColumns, accountIds)));
+                if(inFlight.size() >= parseWorkers * 2) {
+                    write(importKey, await(inFlight.poll()), rejected, progress, sharded);
+                }
+                if(System.nanoTime() - lastReport >= progressIntervalNanos) {
+                    lastReport = System.nanoTime();
+                    logProgress(importKey, progress, Files.size(path), started, resumedFromOffset);
+                }
+            }
+            while(!inFlight.isEmpty()) {
+                write(importKey, await(inFlight.poll()), rejected, progress, sharded);
+            }
+            progress.completed = true;
+            saveCheckpoint(importKey, progress);
+        }
+        finally {
+            workers.shutdownNow();
+            latestMessagesService.reload();
+            trendingService.reload();
+            accountStatsService.reconcile();
+        }
+        return new ImportReport(resumedFromOffset, progress.byteOffset, progress.lineNumber, progress.importedRows,
+                progress.rejectedRows);
+    }
+
+    /**
+     * Parses and validates the lines of a chunk. Runs on a parse worker.
+     * @param  chunk The lines to parse.
+     * @param  csvColumns The columns of a CSV file, or null for NDJSON.
+     * @param  accountIds The ids of the existing accounts.
+     * @return Returns the valid messages and the rejections of the chunk.
+     */
+    private ParsedChunk parse(Chunk chunk, CsvColumns csvColumns, BitSet accountIds) {
+        ParsedChunk parsed = new ParsedChunk(chunk);
+        for(int i = 0; i < chunk.lines.size(); i++) {
+            long lineNumber = chunk.firstLineNumber + i;
+            byte[] bytes = chunk.lines.get(i);
+            if(bytes == null) {
+                parsed.reject(lineNumber, "The line is longer than " + maxLineBytes + " bytes.", "");
+                continue;
+            }
+            String line = new String(bytes, StandardCharsets.UTF_8);
+            if(line.isBlank()) {
+                continue;
+            }
+            try {
+                Message message = csvColumns != null ? csvColumns.toMessage(line)
+                        : objectMapper.readValue(line, Message.class);
+                message.setMessageId(null);
+                MessageService.validateNewMessage(message,
+                        accountId -> accountId >= 0 && accountIds.get(accountId));
+                parsed.messages.add(message);
+            }
+            catch(InvalidModelFieldValuesException e) {
+                parsed.reject(lineNumber, e.getMessage(), line);
+            }
+            catch(JsonProcessingException e) {
+                parsed.reject(lineNumber, e.getOriginalMessage(), line);
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Writes the rejections of a chunk, then inserts and logs its messages and advances the checkpoint.
+     * @param importKey The key of the import's checkpoint.
+     * @param chunk The parsed chunk.
+     * @param rejected The file rejected rows are appended to.
+     * @param progress The totals of the import, advanced past the chunk.
+     * @param sharded Whether messages are stored in shards.
+     */
+    private void write(String importKey, ParsedChunk chunk, BufferedWriter rejected, Progress progress,
+            boolean sharded) throws IOException {
+        for(Map<String, Object> rejection : chunk.rejections) {
+            rejected.write(objectMapper.writeValueAsString(rejection));
+            rejected.newLine();
+        }
+        rejected.flush();
+
+        progress.byteOffset = chunk.endOffset;
+        progress.lineNumber = chunk.firstLineNumber + chunk.lineCount - 1;
+        progress.importedRows += chunk.messages.size();
+        progress.rejectedRows += chunk.rejections.size();
+        transactionTemplate.executeWithoutResult(status -> {
+            if(sharded) {
+                messageStore.saveAll(chunk.messages);
+            }
+            else {
+                insert(chunk.messages);
+            }
+            changeLogService.recordAll(chunk.messages.stream().map(MessageView::of).collect(Collectors.toList()));
+            saveCheckpoint(importKey, progress);
+        });
+        importedRows.increment(chunk.messages.size());
+        rejectedRows.increment(chunk.rejections.size());
+    }
+
+    /**
+     * Inserts messages with one batched statement, taking their ids from hibernate_sequence.
+     * @param messages The messages to insert.
+     */
+    private void insert(List<Message> messages) {
+        if(messages.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = jdbcTemplate.queryForList("select next value for hibernate_sequence from system_range(1, ?)",
+                Integer.class, messages.size());
+        for(int i = 0; i < messages.size(); i++) {
+            messages.get(i).setMessageId(ids.get(i));
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into message (messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?)",
+                messages, messages.size(), (statement, message) -> {
+                    statement.setInt(1, message.getMessageId());
+                    statement.setInt(2, message.getPostedBy());
+                    statement.setString(3, message.getMessageText());
+                    statement.setObject(4, message.getTimePostedEpoch());
+                });
+    }
+
+    /**
+     * Moves hibernate_sequence past the ids already in use, including the ids data.sql inserts without the
+     * sequence, so the imported messages do not collide with them.
+     */
+    private void skipUsedIds() {
+        long next = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+        long used = jdbcTemplate.queryForObject("select greatest((select coalesce(max(accountId), 0) from account), "
+                + "(select coalesce(max(messageId), 0) from message))", Long.class);
+        if(used >= next) {
+            jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + (used + 1));
+        }
+    }
+
+    /**
+     * Loads the checkpoint of an import.
+     * @param  importKey The key of the import.
+     * @return Returns the totals stored with the checkpoint, or empty totals for a new import.
+     */
+    private Progress loadCheckpoint(String importKey) {
+        List<Progress> checkpoints = jdbcTemplate.query("select byteOffset, lineNumber, importedRows, rejectedRows, "
+                + "completed from message_import where importKey = ?", (row, i) -> {
+                    Progress progress = new Progress();
+                    progress.byteOffset = row.getLong("byteOffset");
+                    progress.lineNumber = row.getLong("lineNumber");
+                    progress.importedRows = row.getLong("importedRows");
+                    progress.rejectedRows = row.getLong("rejectedRows");
+                    progress.completed = row.getBoolean("completed");
+                    return progress;
+                }, importKey);
+        return checkpoints.isEmpty() ? new Progress() : checkpoints.get(0);
+    }
+
+    /**
+     * Stores the checkpoint of an import, in the current transaction if there is one.
+     * @param importKey The key of the import.
+     * @param progress The totals to store.
+     */
+    private void saveCheckpoint(String importKey, Progress progress) {
+        jdbcTemplate.update("merge into message_import (importKey, byteOffset, lineNumber, importedRows, rejectedRows, "
+                + "completed, updatedAt) key (importKey) values (?, ?, ?, ?, ?, ?, ?)", importKey, progress.byteOffset,
+                progress.lineNumber, progress.importedRows, progress.rejectedRows, progress.completed,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Loads the ids of all accounts into a bit set, which takes one bit per id up to the largest id.
+     * @return Returns the account ids.
+     */
+    private BitSet loadAccountIds() {
+        BitSet accountIds = new BitSet();
+        jdbcTemplate.query("select accountId from account", row -> {
+            accountIds.set(row.getInt(1));
+        });
+        return accountIds;
+    }
+
+    /**
+     * Reads the header line of a CSV file.
+     * @param  path The CSV file.
+     * @throws IllegalArgumentException when the header does not name the postedBy and messageText columns.
+     * @return Returns the positions of the message columns.
+     */
+    private CsvColumns readCsvHeader(Path path) throws IOException {
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            Chunk header = new LineReader(in, 0, 0, maxLineBytes).read(1);
+            if(header == null || header.lines.get(0) == null) {
+                throw new IllegalArgumentException("The CSV file " + path + " has no header line.");
+            }
+            List<String> names = parseCsvLine(new String(header.lines.get(0), StandardCharsets.UTF_8));
+            CsvColumns columns = new CsvColumns(names.indexOf("postedBy"), names.indexOf("messageText"),
+                    names.indexOf("timePostedEpoch"), header.endOffset);
+            if(columns.postedBy < 0 || columns.messageText < 0) {
+                throw new IllegalArgumentException("The CSV header must name the postedBy and messageText columns.");
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Splits a CSV line into its fields. Fields may be quoted with double quotes, with "" standing for a quote.
+     * @param  line The line without its line break.
+     * @throws InvalidModelFieldValuesException when a quoted field is not closed.
+     * @return Returns the fields.
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while(true) {
+            field.setLength(0);
+            if(i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while(true) {
+                    if(i >= line.length()) {
+                        throw new InvalidModelFieldValuesException("A quoted CSV field is not closed.");
+                    }
+                    char c = line.charAt(i++);
+                    if(c == '"') {
+                        if(i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                    field.append(c);
+                }
+                while(i < line.length() && line.charAt(i) != ',') {
+                    i++;
+                }
+            }
+            else {
+                int end = line.indexOf(',', i);
+                end = end < 0 ? line.length() : end;
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if(i >= line.length()) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Waits for a chunk to be parsed.
+     * @param  future The parse of the chunk.
+     * @return Returns the parsed chunk.
+     */
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The import was interrupted.", e);
+        }
+        catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Parsing a chunk failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Logs the progress of an import.
+     * @param importKey The key of the import.
+     * @param progress The totals of the import.
+     * @param fileSize The size of the file.
+     * @param started When this run of the import started.
+     * @param resumedFromOffset The byte offset this run started at.
+     */
+    private static void logProgress(String importKey, Progress progress, long fileSize, long started,
+            long resumedFromOffset) {
+        double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+        log.info("Importing {}: {}% of the file, {} rows imported, {} rejected, {} MB/s", importKey,
+                fileSize == 0 ? 100 : progress.byteOffset * 100 / fileSize, progress.importedRows,
+                progress.rejectedRows, String.format("%.1f", (progress.byteOffset - resumedFromOffset) / seconds / 1e6));
+    }
+
+    /**
+     * @return Returns a factory for the daemon threads parsing chunks.
+     */
+    private static ThreadFactory parseThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "message-import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The totals and the resume position of an import.
+     */
+    private static final class Progress {
+        /**
+         * The byte offset after the last committed chunk.
+         */
+        private long byteOffset;
+        /**
+         * The number of lines before byteOffset.
+         */
+        private long lineNumber;
+        /**
+         * The number of inserted messages.
+         */
+        private long importedRows;
+        /**
+         * The number of rejected rows.
+         */
+        private long rejectedRows;
+        /**
+         * Whether the whole file was imported.
+         */
+        private boolean completed;
+    }
+
+    /**
+     * Consecutive lines of the file.
+     */
+    private static final class Chunk {
+        /**
+         * The 1-based line number of the first line.
+         */
+        private final long firstLineNumber;
+        /**
+         * The lines without their line breaks, or null for lines that were too long.
+         */
+        private final List<byte[]> lines;
+        /**
+         * The byte offset after the last line.
+         */
+        private final long endOffset;
+        /**
+         * The number of lines in the chunk.
+         */
+        private final int lineCount;
+
+        /**
+         * Constructor with all fields.
+         * @param firstLineNumber
+         * @param lines
+         * @param endOffset
+         */
+        Chunk(long firstLineNumber, List<byte[]> lines, long endOffset) {
+            this.firstLineNumber = firstLineNumber;
+            this.lines = lines;
+            this.endOffset = endOffset;
+            this.lineCount = lines.size();
+        }
+    }
+
+    /**
+     * The result of parsing a chunk.
+     */
+    private static final class ParsedChunk {
+        /**
+         * The 1-based line number of the first line.
+         */
+        private final long firstLineNumber;
+        /**
+         * The number of lines in the chunk.
+         */
+        private final int lineCount;
+        /**
+         * The byte offset after the last line.
+         */
+        private final long endOffset;
+        /**
+         * The valid messages, in file order.
+         */
+        private final List<Message> messages;
+        /**
+         * The rejected rows with their line number and the reason.
+         */
+        private final List<Map<String, Object>> rejections = new ArrayList<>();
+
+        /**
+         * Parameterized constructor that takes the position of a chunk.
+         * @param chunk The parsed chunk.
+         */
+        ParsedChunk(Chunk chunk) {
+            this.firstLineNumber = chunk.firstLineNumber;
+            this.lineCount = chunk.lineCount;
+            this.endOffset = chunk.endOffset;
+            this.messages = new ArrayList<>(chunk.lineCount);
+        }
+
+        /**
+         * Adds a rejected row.
+         * @param lineNumber The line number of the row.
+         * @param reason Why the row was rejected.
+         * @param line The row.
+         */
+        void reject(long lineNumber, String reason, String line) {
+            rejections.add(Map.of("line", lineNumber, "reason", reason, "row", line));
+        }
+    }
+
+    /**
+     * The positions of the message columns of a CSV file.
+     */
+    private static final class CsvColumns {
+        /**
+         * The position of the postedBy column.
+         */
+        private final int postedBy;
+        /**
+         * The position of the messageText column.
+         */
+        private final int messageText;
+        /**
+         * The position of the timePostedEpoch column, or -1 when there is none.
+         */
+        private final int timePostedEpoch;
+        /**
+         * The length of the header line including its line break.
+         */
+        private final long headerBytes;
+
+        /**
+         * Constructor with all fields.
+         * @param postedBy
+         * @param messageText
+         * @param timePostedEpoch
+         * @param headerBytes
+         */
+        CsvColumns(int postedBy, int messageText, int timePostedEpoch, long headerBytes) {
+            this.postedBy = postedBy;
+            this.messageText = messageText;
+            this.timePostedEpoch = timePostedEpoch;
+            this.headerBytes = headerBytes;
+        }
+
+        /**
+         * Builds a message from a CSV record.
+         * @param  line The record.
+         * @throws InvalidModelFieldValuesException when the record is malformed or a number can not be parsed.
+         * @return Returns the message.
+         */
+        Message toMessage(String line) {
+            List<String> fields = parseCsvLine(line);
+            try {
+                Message message = new Message();
+                message.setPostedBy(Integer.valueOf(field(fields, postedBy).trim()));
+                message.setMessageText(field(fields, messageText));
+                String time = field(fields, timePostedEpoch).trim();
+                message.setTimePostedEpoch(time.isEmpty() ? null : Long.valueOf(time));
+                return message;
+            }
+            catch(NumberFormatException e) {
+                throw new InvalidModelFieldValuesException("postedBy and timePostedEpoch must be numbers.");
+            }
+        }
+
+        /**
+         * @return Returns the field at a position, or "" when the record is shorter or position is -1.
+         */
+        private static String field(List<String> fields, int position) {
+            return position >= 0 && position < fields.size() ? fields.get(position) : "";
+        }
+    }
+
+    /**
+     * Reads lines as bytes and keeps track of the byte offset after each line.
+     */
+    private static final class LineReader {
+        /**
+         * The file, positioned at offset.
+         */
+        private final InputStream in;
+        /**
+         * The byte offset of the next unread byte.
+         */
+        private long offset;
+        /**
+         * The number of lines read before offset.
+         */
+        private long lineNumber;
+        /**
+         * Longer lines are returned as null.
+         */
+        private final int maxLineBytes;
+        /**
+         * The bytes of the current line.
+         */
+        private byte[] buffer = new byte[256];
+
+        /**
+         * Constructor with all fields.
+         * @param in
+         * @param offset
+         * @param lineNumber
+         * @param maxLineBytes
+         */
+        LineReader(InputStream in, long offset, long lineNumber, int maxLineBytes) {
+            this.in = in;
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.maxLineBytes = maxLineBytes;
+        }
+
+        /**
+         * Reads up to count lines. A last line without a line break is read as well.
+         * @param  count The maximum number of lines.
+         * @return Returns the lines, or null at the end of the file.
+         */
+        Chunk read(int count) throws IOException {
+            long firstLineNumber = lineNumber + 1;
+            List<byte[]> lines = new ArrayList<>(count);
+            while(lines.size() < count) {
+                int length = 0;
+                boolean tooLong = false;
+                int b = in.read();
+                if(b < 0) {
+                    break;
+                }
+                while(b >= 0 && b != '\n') {
+                    offset++;
+                    if(length < maxLineBytes) {
+                        if(length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, Math.min(maxLineBytes, buffer.length * 2));
+                        }
+                        buffer[length++] = (byte) b;
+                    }
+                    else {
+                        tooLong = true;
+                    }
+                    b = in.read();
+                }
+                if(b == '\n') {
+                    offset++;
+                }
+                if(length > 0 && buffer[length - 1] == '\r') {
+                    length--;
+                }
+                lineNumber++;
+                lines.add(tooLong ? null : Arrays.copyOf(buffer, length));
+            }
+            return lines.isEmpty() ? null : new Chunk(firstLineNumber, lines, offset);
+        }
+    }
+}
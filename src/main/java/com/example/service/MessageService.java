@@ -1,85 +1,311 @@
 package com.example.service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.dto.ChangeFeedView;
+import com.example.dto.MessageView;
+import com.example.entity.ArchivedMessage;
 import com.example.entity.Message;
+import com.example.event.MessageChangedEvent;
 import com.example.exception.InvalidModelFieldValuesException;
 import com.example.repository.AccountRepository;
-import com.example.repository.MessageRepository;
+import com.example.repository.ArchivedMessageRepository;
+import com.example.repository.MessageStore;
+import com.example.util.SingleFlight;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * MessageService is a service class that holds the business logic for working with Message objects.
+ *
+ * Identical reads that run at the same time, such as many clients fetching a viral message, share one repository
+ * call through a SingleFlight per read method. The keys include a write epoch that is advanced after every
+ * committed change, so a read that starts after a change never shares a call that started before it.
  * @author Broden Horton
  */
 @Service
 public class MessageService {
+    /**
+     * The longest accepted messageText.
+     */
+    public static final int MAX_MESSAGE_TEXT_LENGTH = 255;
+    /**
+     * Thrown for a messageText that is missing, blank or too long, also by the MessageDeserializer. Like the
+     * other validation exceptions below, it has a fixed message and no stack trace, so one instance is thrown
+     * for every rejected request.
+     */
+    public static final InvalidModelFieldValuesException INVALID_MESSAGE_TEXT =
+            new InvalidModelFieldValuesException("Message text must be between 1 and " + MAX_MESSAGE_TEXT_LENGTH
+                    + " characters.");
+    private static final InvalidModelFieldValuesException UNKNOWN_POSTER =
+            new InvalidModelFieldValuesException("Posted by user could not be found.");
+    private static final InvalidModelFieldValuesException UNKNOWN_USER =
+            new InvalidModelFieldValuesException("User could not be found.");
+    private static final InvalidModelFieldValuesException INVALID_RANGE =
+            new InvalidModelFieldValuesException("The from value must not be after the to value.");
+    private static final InvalidModelFieldValuesException INVALID_PAGE =
+            new InvalidModelFieldValuesException("The page must not be negative and the size must be positive.");
+    private static final InvalidModelFieldValuesException INVALID_LATEST =
+            new InvalidModelFieldValuesException("The latest count must be positive.");
     /**
      * Repository class for interacting with Messages in the DAO layer.
      */
-    private MessageRepository messageRepository;
+    private MessageStore messageStore;
     /**
      * Repository class for interacting with Accounts in the DAO layer.
      */
     private AccountRepository accountRepository;
+    /**
+     * Publishes a MessageChangedEvent for every message that is created, updated or deleted.
+     */
+    private ApplicationEventPublisher eventPublisher;
+    /**
+     * Repository class for reading messages the retention job moved to message_archive.
+     */
+    private ArchivedMessageRepository archivedMessageRepository;
+    /**
+     * Opt-in write-behind path that inserts created messages in group commits.
+     */
+    private GroupCommitWriter groupCommitWriter;
+    /**
+     * Appends every create, update and delete to the message_change log in the same transaction.
+     */
+    private ChangeLogService changeLogService;
+    /**
+     * Runs the synchronous insert of createMessage in a transaction without holding one during validation.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * Serves the newest messages from memory.
+     */
+    private LatestMessagesService latestMessagesService;
+    /**
+     * Opt-in soft-delete path that marks deleted messages instead of deleting their rows.
+     */
+    private SoftDeleteService softDeleteService;
+    /**
+     * The page size of a time-range query when a request does not give one.
+     */
+    private final int defaultRangePageSize;
+    /**
+     * The largest page size a time-range query may ask for, which bounds the rows read per request.
+     */
+    private final int maxRangePageSize;
+    /**
+     * Whether identical concurrent reads share one repository call.
+     */
+    private final boolean singleFlightEnabled;
+    /**
+     * Advanced after every committed message change, and part of every single-flight key.
+     */
+    private final AtomicLong writeEpoch = new AtomicLong();
+    /**
+     * Coalesces getAllMessages.
+     */
+    private final SingleFlight<List<Object>, List<MessageView>> allMessagesFlights = new SingleFlight<>();
+    /**
+     * Coalesces getMessageById.
+     */
+    private final SingleFlight<List<Object>, Message> messageByIdFlights = new SingleFlight<>();
+    /**
+     * Coalesces getAllMessagesByPostedBy.
+     */
+    private final SingleFlight<List<Object>, List<MessageView>> messagesByPostedByFlights = new SingleFlight<>();
 
     /**
-     * Parameterized constructor annotated with @Autowired so Spring injects the MessageRepository and
-     * AccountRepository dependencies.
-     * @param messageRepository
+     * Parameterized constructor annotated with @Autowired so Spring injects the MessageStore,
+     * AccountRepository, ArchivedMessageRepository, ApplicationEventPublisher, GroupCommitWriter, ChangeLogService,
+     * PlatformTransactionManager, LatestMessagesService and SoftDeleteService dependencies and the configured
+     * time-range page sizes.
+     * @param messageStore
      * @param accountRepository
+     * @param archivedMessageRepository
+     * @param eventPublisher
+     * @param groupCommitWriter
+     * @param changeLogService
+     * @param transactionManager
+     * @param latestMessagesService
+     * @param softDeleteService
+     * @param defaultRangePageSize
+     * @param maxRangePageSize
+     * @param singleFlightEnabled Whether identical concurrent reads share one repository call.
+     * @param meterRegistry The registry of the app.single_flight.calls counters.
      */
     @Autowired
-    public MessageService(MessageRepository messageRepository, AccountRepository accountRepository) {
-        this.messageRepository = messageRepository;
+    public MessageService(MessageStore messageStore, AccountRepository accountRepository,
+            ArchivedMessageRepository archivedMessageRepository, ApplicationEventPublisher eventPublisher, GroupCommitWriter groupCommitWriter,
+            ChangeLogService changeLogService, PlatformTransactionManager transactionManager,
+            LatestMessagesService latestMessagesService, SoftDeleteService softDeleteService,
+            @Value("${app.messages.range.default-page-size:100}") int defaultRangePageSize,
+            @Value("${app.messages.range.max-page-size:1000}") int maxRangePageSize,
+            @Value("${app.single-flight.enabled:true}") boolean singleFlightEnabled, MeterRegistry meterRegistry) {
+        this.messageStore = messageStore;
         this.accountRepository = accountRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.eventPublisher = eventPublisher;
+        this.groupCommitWriter = groupCommitWriter;
+        this.changeLogService = changeLogService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.latestMessagesService = latestMessagesService;
+        this.softDeleteService = softDeleteService;
+        this.defaultRangePageSize = defaultRangePageSize;
+        this.maxRangePageSize = maxRangePageSize;
+        this.singleFlightEnabled = singleFlightEnabled;
+        registerFlightCounters(meterRegistry, "getAllMessages", allMessagesFlights);
+        registerFlightCounters(meterRegistry, "getMessageById", messageByIdFlights);
+        registerFlightCounters(meterRegistry, "getAllMessagesByPostedBy", messagesByPostedByFlights);
     }
 
     /**
-     * Registers a new message in the database.
+     * Registers a new message in the database. When group commit is enabled the message is inserted by the
+     * GroupCommitWriter, and this method returns once the batch holding it has committed.
      * @param  message The message that is being registered to the database.
      * @throws InvalidModelFieldValuesException when The messageText is blank or over 255 characters,
      *         and when the the postedBy id does not match to an existing account id.
      * @return Returns the message that was registered to the database.
      */
     public Message createMessage(Message message) {
-        if(message.getMessageText().equals("") || message.getMessageText().length() > 255) {
-            throw new InvalidModelFieldValuesException("Message text must be between 1 and 255 characters.");
+        validateNewMessage(message, accountId -> accountRepository.findByAccountId(accountId) != null);
+        if(groupCommitWriter.isEnabled()) {
+            return groupCommitWriter.write(message);
         }
-        if(accountRepository.findByAccountId(message.getPostedBy()) == null) {
-            throw new InvalidModelFieldValuesException("Posted by user could not be found.");
+
+        return transactionTemplate.execute(status -> {
+            Message savedMessage = messageStore.save(message);
+            recordChange(MessageChangedEvent.Type.CREATED, MessageView.of(savedMessage));
+            return savedMessage;
+        });
+    }
+
+    /**
+     * Checks a new message against the rules every created message must follow. Shared with the bulk import, which
+     * checks the poster against a preloaded set of account ids instead of the database.
+     * @param  message The message to check.
+     * @param  accountExists Tells whether an accountId belongs to an existing account.
+     * @throws InvalidModelFieldValuesException when the messageText is missing, blank or over 255 characters,
+     *         and when the postedBy id does not match to an existing account id.
+     */
+    public static void validateNewMessage(Message message, IntPredicate accountExists) {
+        String messageText = message.getMessageText();
+        if(messageText == null || messageText.equals("") || messageText.length() > MAX_MESSAGE_TEXT_LENGTH) {
+            throw INVALID_MESSAGE_TEXT;
         }
+        if(message.getPostedBy() == null || !accountExists.test(message.getPostedBy())) {
+            throw UNKNOWN_POSTER;
+        }
+    }
 
-        return messageRepository.save(message);
+    /**
+     * Returns all messages in the database as read-only projections.
+     * @param  fields The sparse fieldset to select, or null/empty to select every field.
+     * @throws InvalidModelFieldValuesException when fields contains an unknown field name.
+     * @return Returns a list<MessageView> of all messages in the database
+     */
+    public List<MessageView> getAllMessages(List<String> fields) {
+        if(fields == null || fields.isEmpty()) {
+            return coalesce(allMessagesFlights, List.of(writeEpoch.get()), messageStore::findAllViews);
+        }
+        List<String> validFields = validateFields(fields);
+        return coalesce(allMessagesFlights, List.of(writeEpoch.get(), validFields),
+                () -> messageStore.findSparseViews(validFields, null));
     }
 
     /**
-     * Returns all messages in the database.
-     * @return Returns a list<Message> of all messages in the database
+     * Returns the newest messages from memory, without reading the database. Larger counts are lowered to the
+     * number of messages kept in memory.
+     * @param  count The largest number of messages to return.
+     * @param  fields The sparse fieldset to return, or null/empty to return every field.
+     * @throws InvalidModelFieldValuesException when count is not positive or fields contains an unknown field name.
+     * @return Returns up to count messages, newest first.
      */
-    public List<Message> getAllMessages() {
-        return messageRepository.findAll();
+    public List<MessageView> getLatestMessages(int count, List<String> fields) {
+        if(count <= 0) {
+            throw INVALID_LATEST;
+        }
+        List<MessageView> latest =
+                latestMessagesService.getLatest(Math.min(count, latestMessagesService.getCapacity()));
+        if(fields == null || fields.isEmpty()) {
+            return latest;
+        }
+        List<String> validFields = validateFields(fields);
+        List<MessageView> sparse = new ArrayList<>(latest.size());
+        for(MessageView message : latest) {
+            sparse.add(new MessageView(
+                    validFields.contains("messageId") ? message.getMessageId() : null,
+                    validFields.contains("postedBy") ? message.getPostedBy() : null,
+                    validFields.contains("messageText") ? message.getMessageText() : null,
+                    validFields.contains("timePostedEpoch") ? message.getTimePostedEpoch() : null));
+        }
+        return sparse;
     }
 
     /**
-     * Returns a message with a specified messageId.
+     * Returns a message with a specified messageId, falling back to message_archive for messages the retention
+     * job has archived.
      * @param  id The messageId being searched for.
      * @return Returns the Message with a messageId that matches id.
      */
     public Message getMessageById(int id) {
-        return messageRepository.findByMessageId(id);
+        return coalesce(messageByIdFlights, List.of(writeEpoch.get(), id), () -> findMessageById(id));
     }
 
     /**
-     * Deletes a message with a specified id
+     * Reads a message from the message table, or from message_archive when it is not there.
+     * @param  id The messageId being searched for.
+     * @return Returns the message, or null when neither table has it.
+     */
+    private Message findMessageById(int id) {
+        Message message = messageStore.findByMessageId(id);
+        if(message == null) {
+            return archivedMessageRepository.findById(id).map(ArchivedMessage::toMessage).orElse(null);
+        }
+        return message;
+    }
+
+    /**
+     * Deletes a message with a specified id. In soft-delete mode the message is only marked as deleted, which hides
+     * it from every read, and its row is purged later by the SoftDeleteService compactor.
      * @param  id The messageId of the message that will be deleted.
      * @return Returns the number of deleted messages.
      */
+    @Transactional
     public Integer deleteMessageById(int id) {
-        long messagesDeleted = messageRepository.deleteByMessageId(id);
-        return  messagesDeleted > 0 ? (int)messagesDeleted : null;
+        if(softDeleteService.isEnabled()) {
+            MessageView deletedMessage = softDeleteService.markDeleted(id);
+            if(deletedMessage == null) {
+                return null;
+            }
+            recordChange(MessageChangedEvent.Type.DELETED, deletedMessage);
+            return 1;
+        }
+        Message message = messageStore.findByMessageId(id);
+        if(message == null) {
+            return null;
+        }
+        MessageView deletedMessage = MessageView.of(message);
+        int messagesDeleted = messageStore.deleteByMessageId(id);
+        if(messagesDeleted == 0) {
+            return null;
+        }
+        recordChange(MessageChangedEvent.Type.DELETED, deletedMessage);
+        return messagesDeleted;
     }
 
     /**
@@ -90,27 +316,147 @@ public class MessageService {
      *         and when a message with the messageId of id does not exist.
      * @return Returns the number of updated messages.
      */
+    @Transactional
     public Integer updateMessageTextById(int id, String messageText) {
-        if(messageText.equals("") || messageText.length() > 255) {
-            throw new InvalidModelFieldValuesException("Message text must be between 1 and 255 characters.");
+        if(messageText.equals("") || messageText.length() > MAX_MESSAGE_TEXT_LENGTH) {
+            throw INVALID_MESSAGE_TEXT;
         }
-        Message message = messageRepository.findByMessageId(id);
+        Message message = messageStore.findByMessageId(id);
         if(message == null) {
-            throw new InvalidModelFieldValuesException("User could not be found.");
+            throw UNKNOWN_USER;
         }
 
         message.setMessageText(messageText);
-        messageRepository.save(message);
+        messageStore.save(message);
+        recordChange(MessageChangedEvent.Type.UPDATED, MessageView.of(message));
         return 1;
     }
 
     /**
-     * Returns all messages posted by a given account id.
+     * Returns all messages posted by a given account id as read-only projections.
      * @param  postedBy The postedBy value being searched for.
+     * @param  fields The sparse fieldset to select, or null/empty to select every field.
+     * @throws InvalidModelFieldValuesException when fields contains an unknown field name.
      * @return Returns all messages with the given postedBy value.
      */
-    public List<Message> getAllMessagesByPostedBy(int postedBy) {
-        return messageRepository.findAllByPostedBy(postedBy);
+    public List<MessageView> getAllMessagesByPostedBy(int postedBy, List<String> fields) {
+        if(fields == null || fields.isEmpty()) {
+            return coalesce(messagesByPostedByFlights, List.of(writeEpoch.get(), postedBy),
+                    () -> messageStore.findAllViewsByPostedBy(postedBy));
+        }
+        List<String> validFields = validateFields(fields);
+        return coalesce(messagesByPostedByFlights, List.of(writeEpoch.get(), postedBy, validFields),
+                () -> messageStore.findSparseViews(validFields, postedBy));
+    }
+
+    /**
+     * Returns one page of the messages posted within a time range, optionally limited to one account. The page
+     * size is capped so a single request can not read an unbounded number of rows.
+     * @param  postedBy The postedBy value to filter by, or null for messages from every account.
+     * @param  from The earliest timePostedEpoch to include, or null for no lower bound.
+     * @param  to The latest timePostedEpoch to include, or null for no upper bound.
+     * @param  fields The sparse fieldset to select, or null/empty to select every field.
+     * @param  page The zero-based page number.
+     * @param  size The page size, or null for the default. Larger sizes are lowered to the maximum.
+     * @throws InvalidModelFieldValuesException when from is after to, the page or size is out of range, or
+     *         fields contains an unknown field name.
+     * @return Returns the page of messages ordered by timePostedEpoch, then messageId.
+     */
+    public Slice<MessageView> getMessagesPostedBetween(Integer postedBy, Long from, Long to, List<String> fields,
+            int page, Integer size) {
+        long lower = from == null ? Long.MIN_VALUE : from;
+        long upper = to == null ? Long.MAX_VALUE : to;
+        if(lower > upper) {
+            throw INVALID_RANGE;
+        }
+        int pageSize = size == null ? defaultRangePageSize : Math.min(size, maxRangePageSize);
+        if(page < 0 || pageSize <= 0) {
+            throw INVALID_PAGE;
+        }
+        Pageable pageable = PageRequest.of(page, pageSize);
+        if(fields != null && !fields.isEmpty()) {
+            return messageStore.findSparseViewsPostedBetween(validateFields(fields), postedBy, lower, upper,
+                    pageable);
+        }
+        if(postedBy == null) {
+            return messageStore.findViewsPostedBetween(lower, upper, pageable);
+        }
+        return messageStore.findViewsByPostedByPostedBetween(postedBy, lower, upper, pageable);
+    }
+
+    /**
+     * Returns the changes to messages after a given position of the message_change log.
+     * @param  since The sequence number to resume from.
+     * @param  limit The maximum number of changes to return, or null for the default.
+     * @return Returns upserts and delete tombstones in log order.
+     */
+    public ChangeFeedView getChangesSince(long since, Integer limit) {
+        return changeLogService.getChanges(since, limit);
+    }
+
+    /**
+     * Logs a change in the current transaction and publishes it to the listeners that run after the commit.
+     * @param type The kind of change.
+     * @param message The message after a create or update, or before a delete.
+     */
+    private void recordChange(MessageChangedEvent.Type type, MessageView message) {
+        changeLogService.record(type, message);
+        eventPublisher.publishEvent(new MessageChangedEvent(type, message));
+    }
+
+    /**
+     * Advances the write epoch once a message change has committed, so reads that start from now on do not share
+     * a call that may have read the data from before the change.
+     * @param event The change that was committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        writeEpoch.incrementAndGet();
+    }
+
+    /**
+     * Runs a read through a SingleFlight when coalescing is enabled.
+     * @param  flights The SingleFlight of the read method.
+     * @param  key The write epoch followed by the arguments of the read.
+     * @param  read The repository call.
+     * @return Returns the result of the read, possibly shared with concurrent callers.
+     */
+    private <V> V coalesce(SingleFlight<List<Object>, V> flights, List<Object> key, Supplier<V> read) {
+        return singleFlightEnabled ? flights.execute(key, read) : read.get();
+    }
+
+    /**
+     * Registers counters of the repository calls a SingleFlight ran and of the calls it saved.
+     * @param meterRegistry The registry of the counters.
+     * @param operation The read method.
+     * @param flights The SingleFlight of the read method.
+     */
+    private static void registerFlightCounters(MeterRegistry meterRegistry, String operation,
+            SingleFlight<?, ?> flights) {
+        FunctionCounter.builder("app.single_flight.calls", flights, SingleFlight::getExecuted)
+                .tag("operation", operation).tag("outcome", "executed").register(meterRegistry);
+        FunctionCounter.builder("app.single_flight.calls", flights, SingleFlight::getShared)
+                .tag("operation", operation).tag("outcome", "shared").register(meterRegistry);
+    }
+
+    /**
+     * Checks a sparse fieldset against the fields of MessageView and removes duplicates.
+     * @param  fields The requested field names.
+     * @throws InvalidModelFieldValuesException when a field name is not a MessageView field.
+     * @return Returns the distinct requested field names.
+     */
+    private List<String> validateFields(List<String> fields) {
+        List<String> distinctFields = new ArrayList<>(fields.size());
+        for(String field : fields) {
+            String trimmed = field.trim();
+            if(!MessageView.FIELDS.contains(trimmed)) {
+                throw new InvalidModelFieldValuesException("Unknown message field: " + trimmed);
+            }
+            if(!distinctFields.contains(trimmed)) {
+                distinctFields.add(trimmed);
+            }
+        }
+        return distinctFields;
     }
 
 }
@@ -0,0 +1,257 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.dto.MessageView;
+import com.example.event.MessageChangedEvent;
+
+/**
+ * MessageStreamService pushes committed message changes to Server-Sent Events subscribers. Every change gets a
+ * sequence number that is sent as the SSE event id, and the most recent changes are kept in a history ring so a
+ * reconnecting client can resume from its Last-Event-ID. Each subscriber has a bounded buffer that is drained by
+ * a small sender pool, so a slow client never blocks the thread that committed the change.
+ */
+@Service
+public class MessageStreamService {
+    /**
+     * Name of the event sent when the requested Last-Event-ID is older than the retained history. The client
+     * should reload the message list and continue from the id of this event.
+     */
+    public static final String RESET_EVENT = "reset";
+
+    private final long timeoutMillis;
+    private final int bufferSize;
+    /**
+     * If true, a subscriber whose buffer is full loses the new event instead of being disconnected.
+     */
+    private final boolean dropOnOverflow;
+    private final StreamEvent[] history;
+    private long sequence;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the configured stream limits.
+     * @param timeoutMillis
+     * @param bufferSize
+     * @param historySize
+     * @param slowConsumerPolicy
+     * @param senderThreads
+     */
+    @Autowired
+    public MessageStreamService(@Value("${app.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${app.stream.buffer-size:256}") int bufferSize,
+            @Value("${app.stream.history-size:1024}") int historySize,
+            @Value("${app.stream.slow-consumer:disconnect}") String slowConsumerPolicy,
+            @Value("${app.stream.sender-threads:2}") int senderThreads) {
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = bufferSize;
+        this.dropOnOverflow = "drop".equalsIgnoreCase(slowConsumerPolicy);
+        this.history = new StreamEvent[historySize];
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "message-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a new stream.
+     * @param  postedBy Only stream changes to messages of this account, or null for every message.
+     * @param  lastEventId The id of the last event the client received, or null for a new stream.
+     * @return Returns the SseEmitter of the new subscriber.
+     */
+    public SseEmitter subscribe(Integer postedBy, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, postedBy, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+        synchronized(history) {
+            if(lastEventId != null) {
+                long oldest = Math.max(1, sequence - history.length + 1);
+                if(lastEventId + 1 < oldest || lastEventId > sequence) {
+                    subscriber.buffer.offer(new StreamEvent(sequence, RESET_EVENT, null));
+                }
+                else {
+                    for(long id = lastEventId + 1; id <= sequence; id++) {
+                        StreamEvent event = history[(int) (id % history.length)];
+                        if(subscriber.accepts(event) && !subscriber.buffer.offer(event)) {
+                            subscriber.buffer.clear();
+                            subscriber.buffer.offer(new StreamEvent(sequence, RESET_EVENT, null));
+                            break;
+                        }
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Publishes a committed message change to every matching subscriber.
+     * @param event The change that was committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        List<Subscriber> ready = new ArrayList<>();
+        synchronized(history) {
+            StreamEvent streamEvent = new StreamEvent(++sequence, event.getType().name().toLowerCase(), event.getMessage());
+            history[(int) (streamEvent.id % history.length)] = streamEvent;
+            for(Subscriber subscriber : subscribers) {
+                if(!subscriber.accepts(streamEvent)) {
+                    continue;
+                }
+                if(subscriber.buffer.offer(streamEvent)) {
+                    ready.add(subscriber);
+                }
+                else if(!dropOnOverflow) {
+                    close(subscriber);
+                }
+            }
+        }
+        for(Subscriber subscriber : ready) {
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Sends an SSE comment to every subscriber so proxies keep the connection open and disconnected clients are
+     * detected.
+     */
+    @Scheduled(fixedDelayString = "${app.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for(Subscriber subscriber : subscribers) {
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            catch(IOException | IllegalStateException ex) {
+                close(subscriber);
+            }
+        }
+    }
+
+    /**
+     * @return Returns the number of open streams.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Completes every open stream while the web server is still running.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void closeAll() {
+        for(Subscriber subscriber : subscribers) {
+            close(subscriber);
+        }
+    }
+
+    /**
+     * Stops the sender pool.
+     */
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if(!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            StreamEvent event;
+            while(!subscriber.closed && (event = subscriber.buffer.poll()) != null) {
+                SseEmitter.SseEventBuilder builder = SseEmitter.event().id(String.valueOf(event.id)).name(event.name);
+                subscriber.emitter.send(event.message != null
+                        ? builder.data(event.message, MediaType.APPLICATION_JSON)
+                        : builder.data(""));
+            }
+        }
+        catch(IOException | IllegalStateException ex) {
+            close(subscriber);
+        }
+        finally {
+            subscriber.draining.set(false);
+        }
+        if(!subscriber.closed) {
+            schedule(subscriber);
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        if(!subscriber.closed) {
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+            subscriber.buffer.clear();
+            try {
+                subscriber.emitter.complete();
+            }
+            catch(RuntimeException ex) {
+                // The connection is already gone.
+            }
+        }
+    }
+
+    /**
+     * An event in the stream history.
+     */
+    private static final class StreamEvent {
+        final long id;
+        final String name;
+        final MessageView message;
+
+        StreamEvent(long id, String name, MessageView message) {
+            this.id = id;
+            this.name = name;
+            this.message = message;
+        }
+    }
+
+    /**
+     * An open stream and its pending events.
+     */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Integer postedBy;
+        final BlockingQueue<StreamEvent> buffer;
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, Integer postedBy, BlockingQueue<StreamEvent> buffer) {
+            this.emitter = emitter;
+            this.postedBy = postedBy;
+            this.buffer = buffer;
+        }
+
+        boolean accepts(StreamEvent event) {
+            return postedBy == null || event.message == null || postedBy.equals(event.message.getPostedBy());
+        }
+    }
+}
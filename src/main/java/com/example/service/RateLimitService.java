@@ -0,0 +1,89 @@
+package com.example.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.exception.RateLimitExceededException;
+import com.example.util.TokenBucketStore;
+
+/**
+ * RateLimitService holds the per-account and per-IP token buckets that protect the message write endpoints.
+ */
+@Service
+public class RateLimitService {
+    /**
+     * Whether rate limiting is applied at all.
+     */
+    private final boolean enabled;
+    /**
+     * Token buckets keyed by the postedBy account id.
+     */
+    private final TokenBucketStore accountBuckets;
+    /**
+     * Token buckets keyed by the client IP address.
+     */
+    private final TokenBucketStore ipBuckets;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the configured rates.
+     * @param enabled
+     * @param accountPermitsPerSecond
+     * @param accountBurst
+     * @param ipPermitsPerSecond
+     * @param ipBurst
+     * @param maxEntries
+     */
+    @Autowired
+    public RateLimitService(@Value("${app.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.rate-limit.account.permits-per-second:5}") double accountPermitsPerSecond,
+            @Value("${app.rate-limit.account.burst:20}") int accountBurst,
+            @Value("${app.rate-limit.ip.permits-per-second:20}") double ipPermitsPerSecond,
+            @Value("${app.rate-limit.ip.burst:100}") int ipBurst,
+            @Value("${app.rate-limit.max-entries:100000}") int maxEntries) {
+        this.enabled = enabled;
+        this.accountBuckets = new TokenBucketStore(accountPermitsPerSecond, accountBurst, maxEntries);
+        this.ipBuckets = new TokenBucketStore(ipPermitsPerSecond, ipBurst, maxEntries);
+    }
+
+    /**
+     * Takes a token from the bucket of an account.
+     * @param  accountId The id of the account that is writing.
+     * @throws RateLimitExceededException when the account has no tokens left.
+     */
+    public void checkAccount(Integer accountId) {
+        if(enabled && accountId != null) {
+            check(accountBuckets.tryAcquire(accountId), "account");
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of a client IP address.
+     * @param  ip The remote address of the client.
+     * @throws RateLimitExceededException when the IP address has no tokens left.
+     */
+    public void checkIp(String ip) {
+        if(enabled) {
+            check(ipBuckets.tryAcquire(ip), "client address");
+        }
+    }
+
+    /**
+     * Removes the buckets that have refilled completely so idle clients do not hold memory.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        accountBuckets.evictIdle();
+        ipBuckets.evictIdle();
+    }
+
+    private static void check(long waitNanos, String scope) {
+        if(waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+            throw new RateLimitExceededException("Too many requests for this " + scope + ".", retryAfterSeconds);
+        }
+    }
+}
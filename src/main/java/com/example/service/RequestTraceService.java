@@ -0,0 +1,477 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * RequestTraceService records where the time of a request goes. The TracingAspect opens a span around every call
+ * into the controller, the services and the repositories, and the StatementCountingDataSource adds the time spent
+ * acquiring connections and executing SQL. Spans are kept in arrays allocated once per request and owned by the
+ * thread handling it, so recording a span takes no locks, and outside of a request nothing is recorded.
+ *
+ * The time per layer is written as a Server-Timing header by the ServerTimingFilter, and requests slower than
+ * slow-request-ms are copied with all their spans into a ring buffer of the last ring-size slow requests.
+ */
+@Service
+public class RequestTraceService {
+    /**
+     * The Server-Timing metric of a controller span.
+     */
+    public static final String CONTROLLER = "controller";
+    /**
+     * The Server-Timing metric of a service span.
+     */
+    public static final String SERVICE = "service";
+    /**
+     * The Server-Timing metric of a repository span.
+     */
+    public static final String REPOSITORY = "repository";
+    /**
+     * The layers in the order their metrics are reported.
+     */
+    private static final String[] LAYERS = { CONTROLLER, SERVICE, REPOSITORY };
+
+    /**
+     * The trace of the request being handled by the current thread, or null outside of a request.
+     */
+    private final ThreadLocal<RequestTrace> currentTrace = new ThreadLocal<>();
+    /**
+     * The most recent slow requests. Slot sequence % length is overwritten by the next slow request.
+     */
+    private final AtomicReferenceArray<SlowRequest> slowRequests;
+    /**
+     * The number of slow requests recorded so far.
+     */
+    private final AtomicLong slowRequestSequence = new AtomicLong();
+    /**
+     * Requests that take at least this long are recorded as slow.
+     */
+    private final long slowThresholdNanos;
+    /**
+     * The largest number of spans kept per request. Deeper or later spans are only counted.
+     */
+    private final int maxSpans;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the settings.
+     * @param slowRequestMs Requests that take at least this many milliseconds are recorded as slow.
+     * @param ringSize The number of slow requests kept.
+     * @param maxSpans The largest number of spans kept per request.
+     */
+    @Autowired
+    public RequestTraceService(@Value("${app.tracing.slow-request-ms:500}") long slowRequestMs,
+            @Value("${app.tracing.ring-size:100}") int ringSize, @Value("${app.tracing.max-spans:64}") int maxSpans) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMs);
+        this.slowRequests = new AtomicReferenceArray<>(ringSize);
+        this.maxSpans = maxSpans;
+    }
+
+    /**
+     * Starts tracing the request handled by the current thread.
+     * @param  method The HTTP method of the request.
+     * @param  path The path of the request.
+     * @return Returns the trace of the request.
+     */
+    public RequestTrace beginRequest(String method, String path) {
+        RequestTrace trace = new RequestTrace(method, path, maxSpans);
+        currentTrace.set(trace);
+        return trace;
+    }
+
+    /**
+     * Stops tracing the current thread and records the request if it was slow.
+     * @param trace The trace returned by beginRequest.
+     * @param status The status code of the response.
+     */
+    public void endRequest(RequestTrace trace, int status) {
+        currentTrace.remove();
+        long elapsedNanos = System.nanoTime() - trace.startNanos;
+        if(elapsedNanos >= slowThresholdNanos && slowRequests.length() > 0) {
+            long sequence = slowRequestSequence.getAndIncrement();
+            slowRequests.set((int) (sequence % slowRequests.length()),
+                    new SlowRequest(sequence, System.currentTimeMillis(), trace, status, elapsedNanos));
+        }
+    }
+
+    /**
+     * @return Returns whether the current thread is handling a traced request.
+     */
+    public boolean isTracing() {
+        return currentTrace.get() != null;
+    }
+
+    /**
+     * Opens a span on the current thread.
+     * @param  layer The Server-Timing metric the span is reported under.
+     * @param  name The name of the span, e.g. "MessageService.createMessage".
+     * @return Returns the handle to pass to exit, or -1 when the thread is not handling a request.
+     */
+    public int enter(String layer, String name) {
+        RequestTrace trace = currentTrace.get();
+        return trace == null ? -1 : trace.enter(layer, name);
+    }
+
+    /**
+     * Closes a span opened by enter.
+     * @param span The handle returned by enter.
+     */
+    public void exit(int span) {
+        if(span >= 0) {
+            RequestTrace trace = currentTrace.get();
+            if(trace != null) {
+                trace.exit(span);
+            }
+        }
+    }
+
+    /**
+     * Adds the time spent acquiring a JDBC connection to the current request.
+     * @param elapsedNanos The time spent waiting for the connection.
+     */
+    public void recordConnectionAcquisition(long elapsedNanos) {
+        RequestTrace trace = currentTrace.get();
+        if(trace != null) {
+            trace.connections++;
+            trace.connectionNanos += elapsedNanos;
+        }
+    }
+
+    /**
+     * Adds the time spent executing a statement to the current request.
+     * @param elapsedNanos The execution time of the statement.
+     */
+    public void recordStatement(long elapsedNanos) {
+        RequestTrace trace = currentTrace.get();
+        if(trace != null) {
+            trace.statements++;
+            trace.statementNanos += elapsedNanos;
+        }
+    }
+
+    /**
+     * Returns the recorded slow requests.
+     * @return Returns up to ring-size slow requests, most recent first.
+     */
+    public List<SlowRequest> getSlowRequests() {
+        List<SlowRequest> requests = new ArrayList<>(slowRequests.length());
+        for(int i = 0; i < slowRequests.length(); i++) {
+            SlowRequest request = slowRequests.get(i);
+            if(request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort((a, b) -> Long.compare(b.sequence, a.sequence));
+        return requests;
+    }
+
+    /**
+     * Formats a duration as milliseconds with microsecond precision.
+     * @param  nanos The duration in nanoseconds.
+     * @return Returns the duration in milliseconds, e.g. "1.234".
+     */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * The spans of one request. A request is handled by one thread, so the fields are not synchronized.
+     */
+    public static final class RequestTrace {
+        /**
+         * The HTTP method of the request.
+         */
+        private final String method;
+        /**
+         * The path of the request.
+         */
+        private final String path;
+        /**
+         * When the request started.
+         */
+        private final long startNanos = System.nanoTime();
+        /**
+         * The Server-Timing metric of each span.
+         */
+        private final String[] layers;
+        /**
+         * The name of each span.
+         */
+        private final String[] names;
+        /**
+         * The nesting depth of each span, 0 for spans opened directly by the request.
+         */
+        private final int[] depths;
+        /**
+         * The start of each span relative to startNanos.
+         */
+        private final long[] offsets;
+        /**
+         * The duration of each span, or -1 while it is open.
+         */
+        private final long[] durations;
+        /**
+         * The number of spans kept.
+         */
+        private int size;
+        /**
+         * The number of spans not kept because the buffer was full.
+         */
+        private int dropped;
+        /**
+         * The number of currently open spans.
+         */
+        private int depth;
+        /**
+         * The number of JDBC connections acquired.
+         */
+        private int connections;
+        /**
+         * The total time spent acquiring JDBC connections.
+         */
+        private long connectionNanos;
+        /**
+         * The number of statements executed.
+         */
+        private int statements;
+        /**
+         * The total execution time of the statements.
+         */
+        private long statementNanos;
+
+        /**
+         * Parameterized constructor that allocates the span buffer.
+         * @param method The HTTP method of the request.
+         * @param path The path of the request.
+         * @param maxSpans The largest number of spans kept.
+         */
+        RequestTrace(String method, String path, int maxSpans) {
+            this.method = method;
+            this.path = path;
+            this.layers = new String[maxSpans];
+            this.names = new String[maxSpans];
+            this.depths = new int[maxSpans];
+            this.offsets = new long[maxSpans];
+            this.durations = new long[maxSpans];
+        }
+
+        /**
+         * Opens a span.
+         * @param  layer The Server-Timing metric of the span.
+         * @param  name The name of the span.
+         * @return Returns the index of the span, or a handle that only closes the nesting level when the buffer
+         *         is full.
+         */
+        int enter(String layer, String name) {
+            int level = depth++;
+            if(size == names.length) {
+                dropped++;
+                return Integer.MAX_VALUE;
+            }
+            layers[size] = layer;
+            names[size] = name;
+            depths[size] = level;
+            offsets[size] = System.nanoTime() - startNanos;
+            durations[size] = -1;
+            return size++;
+        }
+
+        /**
+         * Closes a span.
+         * @param span The index returned by enter.
+         */
+        void exit(int span) {
+            depth--;
+            if(span < size) {
+                durations[span] = System.nanoTime() - startNanos - offsets[span];
+            }
+        }
+
+        /**
+         * Builds the value of the Server-Timing header from the spans closed so far. The controller, service and
+         * repository metrics are the time spent in each layer, counting a call nested in a call of the same layer
+         * once; connection acquisition and SQL execution are summed into a pool and a sql metric. dispatch is the
+         * time before the controller was called, which is spent in filters, interceptors and request body binding.
+         * With detailed, every closed span becomes a metric of its own instead, with the traced method as
+         * description, which names the classes and methods of the application to the client.
+         * @param  detailed Whether to report every span instead of the time per layer.
+         * @return Returns the header value.
+         */
+        public String toServerTiming(boolean detailed) {
+            long now = System.nanoTime() - startNanos;
+            StringBuilder header = new StringBuilder(detailed ? 64 + size * 48 : 160);
+            header.append("total;dur=").append(millis(now));
+            for(int i = 0; i < size; i++) {
+                if(depths[i] == 0 && CONTROLLER.equals(layers[i])) {
+                    header.append(", dispatch;desc=\"filters and binding\";dur=").append(millis(offsets[i]));
+                    break;
+                }
+            }
+            if(detailed) {
+                for(int i = 0; i < size; i++) {
+                    if(durations[i] >= 0) {
+                        header.append(", ").append(layers[i]).append(";desc=\"").append(names[i]).append("\";dur=")
+                                .append(millis(durations[i]));
+                    }
+                }
+            }
+            else {
+                for(String layer : LAYERS) {
+                    long layerNanos = layerNanos(layer);
+                    if(layerNanos >= 0) {
+                        header.append(", ").append(layer).append(";dur=").append(millis(layerNanos));
+                    }
+                }
+            }
+            if(connections > 0) {
+                header.append(", pool;desc=\"").append(connections).append(" connections\";dur=")
+                        .append(millis(connectionNanos));
+            }
+            if(statements > 0) {
+                header.append(", sql;desc=\"").append(statements).append(" statements\";dur=")
+                        .append(millis(statementNanos));
+            }
+            return header.toString();
+        }
+
+        /**
+         * Sums the closed spans of a layer. Spans are kept in the order they were opened, so a span that starts
+         * before the end of the last counted span of the same layer is nested in it and is not counted again.
+         * @param  layer The Server-Timing metric of the spans.
+         * @return Returns the time spent in the layer, or -1 when it has no closed spans.
+         */
+        private long layerNanos(String layer) {
+            long total = -1;
+            long coveredUntil = -1;
+            for(int i = 0; i < size; i++) {
+                if(durations[i] >= 0 && layer.equals(layers[i]) && offsets[i] >= coveredUntil) {
+                    total = Math.max(total, 0) + durations[i];
+                    coveredUntil = offsets[i] + durations[i];
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * A copy of the trace of a slow request.
+     */
+    public static final class SlowRequest {
+        /**
+         * The position of the request among all recorded slow requests.
+         */
+        private final long sequence;
+        /**
+         * When the request completed, in epoch milliseconds.
+         */
+        private final long completedAt;
+        /**
+         * The HTTP method of the request.
+         */
+        private final String method;
+        /**
+         * The path of the request.
+         */
+        private final String path;
+        /**
+         * The status code of the response.
+         */
+        private final int status;
+        /**
+         * The total time of the request in milliseconds, including writing the response body.
+         */
+        private final double durationMs;
+        /**
+         * The Server-Timing breakdown of the request, with every span.
+         */
+        private final String serverTiming;
+        /**
+         * The kept spans, indented by nesting depth, with their start offset and duration in milliseconds.
+         */
+        private final List<String> spans;
+
+        /**
+         * Parameterized constructor that copies a finished trace.
+         * @param sequence The position of the request among all recorded slow requests.
+         * @param completedAt When the request completed, in epoch milliseconds.
+         * @param trace The trace of the request.
+         * @param status The status code of the response.
+         * @param elapsedNanos The total time of the request.
+         */
+        SlowRequest(long sequence, long completedAt, RequestTrace trace, int status, long elapsedNanos) {
+            this.sequence = sequence;
+            this.completedAt = completedAt;
+            this.method = trace.method;
+            this.path = trace.path;
+            this.status = status;
+            this.durationMs = elapsedNanos / 1_000_000.0;
+            this.serverTiming = trace.toServerTiming(true);
+            List<String> spans = new ArrayList<>(trace.size + 1);
+            for(int i = 0; i < trace.size; i++) {
+                spans.add("  ".repeat(trace.depths[i]) + trace.names[i] + " +" + millis(trace.offsets[i]) + "ms "
+                        + (trace.durations[i] >= 0 ? millis(trace.durations[i]) + "ms" : "unfinished"));
+            }
+            if(trace.dropped > 0) {
+                spans.add(trace.dropped + " more spans not kept");
+            }
+            this.spans = Collections.unmodifiableList(spans);
+        }
+
+        /**
+         * @return Returns when the request completed, in epoch milliseconds.
+         */
+        public long getCompletedAt() {
+            return completedAt;
+        }
+
+        /**
+         * @return Returns the HTTP method of the request.
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return Returns the path of the request.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return Returns the status code of the response.
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return Returns the total time of the request in milliseconds.
+         */
+        public double getDurationMs() {
+            return durationMs;
+        }
+
+        /**
+         * @return Returns the Server-Timing breakdown of the request.
+         */
+        public String getServerTiming() {
+            return serverTiming;
+        }
+
+        /**
+         * @return Returns the kept spans, indented by nesting depth.
+         */
+        public List<String> getSpans() {
+            return spans;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.MessageView;
+import com.example.entity.ArchivedMessage;
+import com.example.event.MessageChangedEvent;
+import com.example.repository.ArchivedMessageRepository;
+import com.example.repository.MessageStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * RetentionService keeps the message table small by moving messages older than the configured age into
+ * message_archive, or purging them.
+ *
+ * Each run works through the old messages in chunks of chunk-size rows, each in its own short transaction,
+ * and pauses between chunks so live requests are not blocked behind one long delete. In both modes a retired
+ * message has left the message table: it is logged as a delete in the change feed and published as a DELETED
+ * MessageChangedEvent, so the account stats, the latest and trending messages and the stream drop it. Archived
+ * messages stay readable through MessageService.getMessageById only.
+ */
+@Service
+public class RetentionService {
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    /**
+     * Repository class for interacting with Messages in the DAO layer.
+     */
+    private MessageStore messageStore;
+    /**
+     * Repository class for interacting with the message_archive table in the DAO layer.
+     */
+    private ArchivedMessageRepository archivedMessageRepository;
+    /**
+     * Logs retired messages as deletes in the message_change log.
+     */
+    private ChangeLogService changeLogService;
+    /**
+     * Publishes a DELETED MessageChangedEvent for every retired message.
+     */
+    private ApplicationEventPublisher eventPublisher;
+    /**
+     * Runs each chunk in its own transaction.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * Whether the scheduled job does anything.
+     */
+    private final boolean enabled;
+    /**
+     * Whether old messages are deleted instead of archived.
+     */
+    private final boolean purge;
+    /**
+     * Messages posted more than this many seconds ago are retired.
+     */
+    private final long maxAgeSeconds;
+    /**
+     * The number of messages moved per transaction.
+     */
+    private final int chunkSize;
+    /**
+     * The pause between two chunks.
+     */
+    private final long pauseMillis;
+    /**
+     * Counts the messages archived or purged.
+     */
+    private final Counter rowsMoved;
+    /**
+     * How many seconds the oldest message is past the retention cutoff, as of the last run.
+     */
+    private final AtomicLong lagSeconds = new AtomicLong();
+    /**
+     * Set on shutdown so a running job stops after its current chunk.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the dependencies and the configured
+     * retention policy.
+     * @param messageStore
+     * @param archivedMessageRepository
+     * @param changeLogService
+     * @param eventPublisher
+     * @param transactionManager
+     * @param meterRegistry
+     * @param enabled
+     * @param mode
+     * @param maxAgeDays
+     * @param chunkSize
+     * @param pauseMillis
+     */
+    @Autowired
+    public RetentionService(MessageStore messageStore, ArchivedMessageRepository archivedMessageRepository,
+            ChangeLogService changeLogService, ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.retention.enabled:false}") boolean enabled,
+            @Value("${app.retention.mode:archive}") String mode,
+            @Value("${app.retention.max-age-days:365}") long maxAgeDays,
+            @Value("${app.retention.chunk-size:500}") int chunkSize,
+            @Value("${app.retention.pause-ms:50}") long pauseMillis) {
+        this.messageStore = messageStore;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.changeLogService = changeLogService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.purge = "purge".equalsIgnoreCase(mode);
+        this.maxAgeSeconds = TimeUnit.DAYS.toSeconds(maxAgeDays);
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.rowsMoved = Counter.builder("app.retention.rows.moved")
+                .description("Messages moved out of the message table by the retention job")
+                .tag("mode", purge ? "purge" : "archive")
+                .register(meterRegistry);
+        Gauge.builder("app.retention.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("How far the oldest message is past the retention cutoff")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Archives or purges every message older than the configured age, one chunk at a time.
+     */
+    @Scheduled(initialDelayString = "${app.retention.initial-delay-ms:60000}",
+            fixedDelayString = "${app.retention.interval-ms:3600000}")
+    public void retireOldMessages() {
+        if(!enabled) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() / 1000 - maxAgeSeconds;
+        long moved = 0;
+        try {
+            int chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> retireChunk(cutoff));
+                moved += chunk;
+                rowsMoved.increment(chunk);
+                if(chunk == chunkSize && !stopping) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while(chunk == chunkSize && !stopping);
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            updateLag(cutoff);
+        }
+        if(moved > 0) {
+            log.info("Retention {} {} messages posted before {}", purge ? "purged" : "archived", moved, cutoff);
+        }
+    }
+
+    /**
+     * Stops a running job after its current chunk.
+     */
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * Moves the oldest chunk of messages posted before the cutoff. Runs inside a transaction.
+     * @param  cutoff The timePostedEpoch before which messages are retired.
+     * @return Returns the number of messages moved.
+     */
+    private int retireChunk(long cutoff) {
+        List<MessageView> chunk = messageStore.findViewsPostedBefore(cutoff, PageRequest.of(0, chunkSize));
+        if(chunk.isEmpty()) {
+            return 0;
+        }
+        List<Integer> messageIds = new ArrayList<>(chunk.size());
+        for(MessageView message : chunk) {
+            messageIds.add(message.getMessageId());
+        }
+        for(MessageView message : chunk) {
+            changeLogService.record(MessageChangedEvent.Type.DELETED, message);
+            eventPublisher.publishEvent(new MessageChangedEvent(MessageChangedEvent.Type.DELETED, message));
+        }
+        if(!purge) {
+            long archivedAt = System.currentTimeMillis() / 1000;
+            List<ArchivedMessage> archived = new ArrayList<>(chunk.size());
+            for(MessageView message : chunk) {
+                archived.add(new ArchivedMessage(message.getMessageId(), message.getPostedBy(),
+                        message.getMessageText(), message.getTimePostedEpoch(), archivedAt));
+            }
+            archivedMessageRepository.saveAll(archived);
+        }
+        return messageStore.deleteAllByMessageIdIn(messageIds);
+    }
+
+    /**
+     * Recomputes how far the oldest remaining message is past the cutoff.
+     * @param cutoff The timePostedEpoch before which messages are retired.
+     */
+    private void updateLag(long cutoff) {
+        Long oldest = messageStore.findOldestTimePostedEpoch();
+        lagSeconds.set(oldest == null ? 0 : Math.max(0, cutoff - oldest));
+    }
+}
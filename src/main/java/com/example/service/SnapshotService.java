@@ -0,0 +1,514 @@
+package com.example.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.dto.SnapshotReport;
+import com.example.json.MessageJsonCache;
+import com.example.repository.MessageStore;
+import com.example.repository.ShardedMessageRepository;
+
+/**
+ * SnapshotService writes consistent snapshots of the account and message tables to gzip-compressed files in the
+ * snapshot directory, and restores them.
+ *
+ * A backup reads both tables in one transaction with H2's SNAPSHOT isolation, so it sees the tables as of its
+ * first read while requests keep writing; MVCC readers take no locks, so writes are not stalled. The tables are
+ * read in primary key order in chunks of chunk-rows rows, each chunk continuing after the last key of the
+ * previous one, so the time per chunk does not grow with the table and the database never materializes a whole
+ * table. Messages deleted in soft-delete mode are left out. The file is written under a temporary name and
+ * renamed once complete.
+ *
+ * A restore empties both tables and loads them with batched prepared inserts, committing every batch-size rows,
+ * which is much faster than running one parsed insert statement per row like data.sql. The message indexes are
+ * dropped during the load and rebuilt afterwards, with the definitions of data.sql. A restore is not atomic: it
+ * is meant for quiet periods, and one that fails part way leaves the tables partly loaded until it is run again.
+ * Afterwards hibernate_sequence is moved past the restored ids, the second-level caches are cleared and the
+ * account statistics are reconciled. The change log is reset, so change feed readers that read it before the
+ * restore get a 410 and reload every message.
+ */
+@Service
+public class SnapshotService {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotService.class);
+
+    /**
+     * The first bytes of a snapshot file, "SMSS".
+     */
+    private static final int MAGIC = 0x534D5353;
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * H2's JDBC isolation level for SNAPSHOT, which has no constant in java.sql.Connection.
+     */
+    private static final int TRANSACTION_SNAPSHOT = 6;
+    /**
+     * The suffix of snapshot files.
+     */
+    private static final String SUFFIX = ".snapshot.gz";
+    /**
+     * The snapshot names that are accepted, which can not leave the snapshot directory.
+     */
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,99}");
+    /**
+     * The account table, written before the message table so messages can be restored after their posters.
+     */
+    private static final Table ACCOUNT = new Table("account",
+            new String[] { "accountId", "username", "password" },
+            new int[] { Types.INTEGER, Types.VARCHAR, Types.VARCHAR }, null);
+    /**
+     * The message table.
+     */
+    private static final Table MESSAGE = new Table("message",
+            new String[] { "messageId", "postedBy", "messageText", "timePostedEpoch" },
+            new int[] { Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.BIGINT },
+            "messageId not in (select messageId from message_tombstone)");
+
+    /**
+     * The primary DataSource.
+     */
+    private DataSource dataSource;
+    /**
+     * Translates SQLExceptions into Spring's DataAccessExceptions.
+     */
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * Repository class for interacting with Messages, checked so sharded messages are not silently left out.
+     */
+    private MessageStore messageStore;
+    /**
+     * Used to clear the second-level caches after a restore.
+     */
+    private EntityManagerFactory entityManagerFactory;
+    /**
+     * Reconciled after a restore, since the message table changed without events.
+     */
+    private AccountStatsService accountStatsService;
+    /**
+     * Reloaded after a restore, since the message table changed without events.
+     */
+    private LatestMessagesService latestMessagesService;
+    /**
+     * Reloaded after a restore, since the message table changed without events.
+     */
+    private TrendingService trendingService;
+    /**
+     * Cleared after a restore, since the cached encodings are of messages that were replaced.
+     */
+    private MessageJsonCache messageJsonCache;
+    /**
+     * Reset after a restore, since its changes describe messages that were replaced.
+     */
+    private ChangeLogService changeLogService;
+    /**
+     * The directory snapshot files are written to and restored from.
+     */
+    private final Path directory;
+    /**
+     * The number of rows read per query during a backup.
+     */
+    private final int chunkRows;
+    /**
+     * The number of rows per insert batch during a restore.
+     */
+    private final int batchSize;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the database access and the settings.
+     * @param dataSource The primary DataSource.
+     * @param messageStore
+     * @param entityManagerFactory
+     * @param accountStatsService
+     * @param latestMessagesService
+     * @param trendingService
+     * @param messageJsonCache
+     * @param changeLogService
+     * @param directory The directory of the snapshot files.
+     * @param chunkRows The number of rows read per query during a backup.
+     * @param batchSize The number of rows per insert batch during a restore.
+     */
+    @Autowired
+    public SnapshotService(DataSource dataSource, MessageStore messageStore,
+            EntityManagerFactory entityManagerFactory, AccountStatsService accountStatsService,
+            LatestMessagesService latestMessagesService, TrendingService trendingService,
+            MessageJsonCache messageJsonCache, ChangeLogService changeLogService,
+            @Value("${app.snapshot.directory:snapshots}") String directory,
+            @Value("${app.snapshot.chunk-rows:10000}") int chunkRows,
+            @Value("${app.snapshot.batch-size:5000}") int batchSize) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.messageStore = messageStore;
+        this.entityManagerFactory = entityManagerFactory;
+        this.accountStatsService = accountStatsService;
+        this.latestMessagesService = latestMessagesService;
+        this.trendingService = trendingService;
+        this.messageJsonCache = messageJsonCache;
+        this.changeLogService = changeLogService;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.chunkRows = chunkRows;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Lists the snapshots in the snapshot directory.
+     * @return Returns the names of the snapshots, sorted.
+     */
+    public List<String> listSnapshots() throws IOException {
+        List<String> names = new ArrayList<>();
+        if(!Files.isDirectory(directory)) {
+            return names;
+        }
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for(Path file : files) {
+                String fileName = file.getFileName().toString();
+                names.add(fileName.substring(0, fileName.length() - SUFFIX.length()));
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Writes a snapshot of the account and message tables, replacing an earlier snapshot with the same name.
+     * @param  name The name of the snapshot.
+     * @throws IllegalArgumentException when the name is not valid.
+     * @throws IllegalStateException when messages are sharded.
+     * @return Returns the number of rows written and the size of the file.
+     */
+    public SnapshotReport backup(String name) throws IOException {
+        Path target = fileOf(name);
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, name, ".tmp");
+        long accounts;
+        long messages;
+        try(Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(TRANSACTION_SNAPSHOT);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temporary), 1 << 16), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                accounts = write(connection, ACCOUNT, out);
+                messages = write(connection, MESSAGE, out);
+            }
+            finally {
+                connection.rollback();
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("Writing snapshot " + name, null, e);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+        SnapshotReport report = new SnapshotReport(name, accounts, messages, Files.size(target),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Wrote snapshot {}", report);
+        return report;
+    }
+
+    /**
+     * Replaces the contents of the account and message tables with a snapshot.
+     * @param  name The name of the snapshot.
+     * @throws IllegalArgumentException when the name is not valid or there is no such snapshot.
+     * @throws IllegalStateException when messages are sharded.
+     * @throws IOException when the file can not be read or is not a snapshot.
+     * @throws org.springframework.dao.DataAccessException when the restore fails, for example because a concurrent
+     *         write conflicts with it.
+     * @return Returns the number of rows loaded and the size of the file.
+     */
+    public SnapshotReport restore(String name) throws IOException {
+        Path source = fileOf(name);
+        if(!Files.isRegularFile(source)) {
+            throw new IllegalArgumentException("There is no snapshot named " + name + ".");
+        }
+        long start = System.nanoTime();
+        long accounts;
+        long messages;
+        try(Connection connection = dataSource.getConnection();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new GZIPInputStream(Files.newInputStream(source), 1 << 16), 1 << 16))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(source + " is not a snapshot of this version.");
+            }
+            try(Statement statement = connection.createStatement()) {
+                statement.executeUpdate("truncate table message");
+                statement.executeUpdate("truncate table message_tombstone");
+                statement.executeUpdate("delete from account");
+                statement.execute("drop index if exists message_time_posted_idx");
+                statement.execute("drop index if exists message_posted_by_time_idx");
+            }
+            connection.setAutoCommit(false);
+            try {
+                accounts = load(connection, ACCOUNT, in);
+                messages = load(connection, MESSAGE, in);
+            }
+            catch(IOException | SQLException | RuntimeException e) {
+                connection.rollback();
+                log.error("Restoring snapshot {} failed part way, restore it again", name);
+                throw e;
+            }
+            finally {
+                connection.setAutoCommit(true);
+                try(Statement statement = connection.createStatement()) {
+                    statement.execute("create index if not exists message_time_posted_idx "
+                            + "on message (timePostedEpoch)");
+                    statement.execute("create index if not exists message_posted_by_time_idx "
+                            + "on message (postedBy, timePostedEpoch)");
+                }
+            }
+            skipUsedIds(connection);
+        }
+        catch(SQLException e) {
+            throw jdbcTemplate.getExceptionTranslator().translate("Restoring snapshot " + name, null, e);
+        }
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        accountStatsService.reconcile();
+        latestMessagesService.reload();
+        trendingService.reload();
+        messageJsonCache.clear();
+        changeLogService.reset();
+        SnapshotReport report = new SnapshotReport(name, accounts, messages, Files.size(source),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Restored snapshot {}", report);
+        return report;
+    }
+
+    /**
+     * Writes the rows of a table in primary key order, one chunk of rows per query.
+     * @param  connection The connection of the snapshot transaction.
+     * @param  table The table.
+     * @param  out The snapshot file.
+     * @return Returns the number of rows written.
+     */
+    private long write(Connection connection, Table table, DataOutputStream out) throws IOException, SQLException {
+        out.writeUTF(table.name);
+        long rows = 0;
+        long lastKey = Long.MIN_VALUE;
+        try(PreparedStatement statement = connection.prepareStatement("select " + String.join(", ", table.columns)
+                + " from " + table.name + " where " + table.columns[0] + " > ?"
+                + (table.filter == null ? "" : " and " + table.filter) + " order by " + table.columns[0]
+                + " limit ?")) {
+            int read;
+            do {
+                statement.setLong(1, lastKey);
+                statement.setInt(2, chunkRows);
+                read = 0;
+                try(ResultSet result = statement.executeQuery()) {
+                    while(result.next()) {
+                        out.writeBoolean(true);
+                        for(int i = 0; i < table.types.length; i++) {
+                            writeValue(out, table.types[i], result, i + 1);
+                        }
+                        lastKey = result.getLong(1);
+                        read++;
+                    }
+                }
+                rows += read;
+            }
+            while(read == chunkRows);
+        }
+        out.writeBoolean(false);
+        return rows;
+    }
+
+    /**
+     * Inserts the rows of a table from a snapshot with batched inserts, committing each batch.
+     * @param  connection A connection that is not in auto-commit mode.
+     * @param  table The table.
+     * @param  in The snapshot file, positioned at the table.
+     * @return Returns the number of rows inserted.
+     */
+    private long load(Connection connection, Table table, DataInputStream in) throws IOException, SQLException {
+        String name = in.readUTF();
+        if(!name.equals(table.name)) {
+            throw new IOException("Expected the " + table.name + " table in the snapshot but found " + name + ".");
+        }
+        long rows = 0;
+        try(PreparedStatement statement = connection.prepareStatement("insert into " + table.name + " ("
+                + String.join(", ", table.columns) + ") values (?" + ", ?".repeat(table.columns.length - 1) + ")")) {
+            int batched = 0;
+            while(in.readBoolean()) {
+                for(int i = 0; i < table.types.length; i++) {
+                    readValue(in, table.types[i], statement, i + 1);
+                }
+                statement.addBatch();
+                rows++;
+                if(++batched == batchSize) {
+                    statement.executeBatch();
+                    connection.commit();
+                    batched = 0;
+                }
+            }
+            if(batched > 0) {
+                statement.executeBatch();
+                connection.commit();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes one nullable column value.
+     * @param out The snapshot file.
+     * @param type The SQL type of the column.
+     * @param result The current row.
+     * @param column The 1-based position of the column.
+     */
+    private static void writeValue(DataOutputStream out, int type, ResultSet result, int column)
+            throws IOException, SQLException {
+        switch(type) {
+            case Types.INTEGER:
+                int intValue = result.getInt(column);
+                out.writeBoolean(!result.wasNull());
+                if(!result.wasNull()) {
+                    out.writeInt(intValue);
+                }
+                break;
+            case Types.BIGINT:
+                long longValue = result.getLong(column);
+                out.writeBoolean(!result.wasNull());
+                if(!result.wasNull()) {
+                    out.writeLong(longValue);
+                }
+                break;
+            default:
+                String text = result.getString(column);
+                out.writeBoolean(text != null);
+                if(text != null) {
+                    out.writeUTF(text);
+                }
+        }
+    }
+
+    /**
+     * Reads one nullable column value into an insert.
+     * @param in The snapshot file.
+     * @param type The SQL type of the column.
+     * @param statement The insert.
+     * @param column The 1-based position of the parameter.
+     */
+    private static void readValue(DataInputStream in, int type, PreparedStatement statement, int column)
+            throws IOException, SQLException {
+        if(!in.readBoolean()) {
+            statement.setNull(column, type);
+            return;
+        }
+        switch(type) {
+            case Types.INTEGER:
+                statement.setInt(column, in.readInt());
+                break;
+            case Types.BIGINT:
+                statement.setLong(column, in.readLong());
+                break;
+            default:
+                statement.setString(column, in.readUTF());
+        }
+    }
+
+    /**
+     * Moves hibernate_sequence past the restored ids, so new accounts and messages do not collide with them.
+     * @param connection A connection in auto-commit mode.
+     */
+    private static void skipUsedIds(Connection connection) throws SQLException {
+        try(Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("select next value for hibernate_sequence, "
+                        + "greatest((select coalesce(max(accountId), 0) from account), "
+                        + "(select coalesce(max(messageId), 0) from message))")) {
+            result.next();
+            long used = result.getLong(2);
+            if(used >= result.getLong(1)) {
+                statement.execute("alter sequence hibernate_sequence restart with " + (used + 1));
+            }
+        }
+    }
+
+    /**
+     * Resolves the file of a snapshot.
+     * @param  name The name of the snapshot.
+     * @throws IllegalArgumentException when the name is not valid.
+     * @throws IllegalStateException when messages are sharded, since the shards are not part of a snapshot.
+     * @return Returns the path of the snapshot file in the snapshot directory.
+     */
+    private Path fileOf(String name) {
+        if(messageStore instanceof ShardedMessageRepository) {
+            throw new IllegalStateException("Snapshots do not include sharded messages.");
+        }
+        if(name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("A snapshot name has up to 100 letters, digits, '.', '_' and '-', "
+                    + "starting with a letter or digit.");
+        }
+        return directory.resolve(name + SUFFIX);
+    }
+
+    /**
+     * The columns of a table in a snapshot. The first column is the integer primary key.
+     */
+    private static final class Table {
+        /**
+         * The name of the table.
+         */
+        private final String name;
+        /**
+         * The names of the columns.
+         */
+        private final String[] columns;
+        /**
+         * The SQL types of the columns: INTEGER, BIGINT or VARCHAR.
+         */
+        private final int[] types;
+        /**
+         * The condition rows must meet to be backed up, or null for every row.
+         */
+        private final String filter;
+
+        /**
+         * Constructor with all fields.
+         * @param name
+         * @param columns
+         * @param types
+         * @param filter
+         */
+        Table(String name, String[] columns, int[] types, String filter) {
+            this.name = name;
+            this.columns = columns;
+            this.types = types;
+            this.filter = filter;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+import com.example.repository.MessageTombstoneRepository;
+import com.example.repository.ShardedMessageRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * SoftDeleteService is the opt-in soft-delete path for message deletion. A deleted message gets a row in
+ * message_tombstone instead of being deleted from the message table, which every read of MessageStore leaves
+ * out. The delete request thereby only inserts one small row, and does not delete from the message table and its
+ * indexes while other requests wait for the same pages.
+ *
+ * A scheduled compactor deletes the tombstoned messages from the message table in chunks of batch-size rows, each in
+ * its own short transaction, pausing between chunks like the retention job. It also runs when soft delete has been
+ * switched off, so tombstones left from before are still purged. Sharded messages are always deleted right away,
+ * since the shards are read by their own queries.
+ */
+@Service
+public class SoftDeleteService {
+    private static final Logger log = LoggerFactory.getLogger(SoftDeleteService.class);
+
+    /**
+     * Repository class for interacting with Messages in the DAO layer.
+     */
+    private MessageStore messageStore;
+    /**
+     * Repository class for interacting with the message_tombstone table in the DAO layer.
+     */
+    private MessageTombstoneRepository messageTombstoneRepository;
+    /**
+     * Runs each chunk in its own transaction.
+     */
+    private TransactionTemplate transactionTemplate;
+    /**
+     * Whether deleteMessageById marks messages instead of deleting them.
+     */
+    private final boolean enabled;
+    /**
+     * Whether messages are sharded, which leaves the compactor nothing to do.
+     */
+    private final boolean sharded;
+    /**
+     * The number of messages purged per transaction.
+     */
+    private final int batchSize;
+    /**
+     * The pause between two chunks.
+     */
+    private final long pauseMillis;
+    /**
+     * Counts the messages purged by the compactor.
+     */
+    private final Counter purged;
+    /**
+     * The number of tombstones left after the last compaction.
+     */
+    private final AtomicLong pending = new AtomicLong();
+    /**
+     * Set on shutdown so a running compaction stops after its current chunk.
+     */
+    private volatile boolean stopping;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the dependencies and the configured
+     * compaction settings.
+     * @param messageStore
+     * @param messageTombstoneRepository
+     * @param transactionManager
+     * @param meterRegistry
+     * @param enabled
+     * @param batchSize
+     * @param pauseMillis
+     */
+    @Autowired
+    public SoftDeleteService(MessageStore messageStore,
+            MessageTombstoneRepository messageTombstoneRepository, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.soft-delete.enabled:false}") boolean enabled,
+            @Value("${app.soft-delete.batch-size:500}") int batchSize,
+            @Value("${app.soft-delete.pause-ms:50}") long pauseMillis) {
+        this.messageStore = messageStore;
+        this.messageTombstoneRepository = messageTombstoneRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sharded = messageStore instanceof ShardedMessageRepository;
+        if(enabled && sharded) {
+            log.warn("Soft delete is not supported for sharded messages, messages are deleted right away");
+        }
+        this.enabled = enabled && !sharded;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.purged = Counter.builder("app.soft_delete.purged")
+                .description("Tombstoned messages deleted from the message table by the compactor")
+                .register(meterRegistry);
+        Gauge.builder("app.soft_delete.pending", pending, AtomicLong::get)
+                .description("Tombstoned messages waiting for the compactor, as of its last run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Returns true if deleteMessageById should mark messages through markDeleted.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks a message as deleted. Must run in the transaction of the delete, which holds the lock on the message
+     * row until it commits, so a concurrent delete of the same message waits and then finds it deleted.
+     * @param  messageId The messageId of the message.
+     * @return Returns the message as it was before the delete, or null when it does not exist or was already
+     *         deleted.
+     */
+    public MessageView markDeleted(int messageId) {
+        Message message = messageTombstoneRepository.lockMessage(messageId);
+        if(message == null
+                || messageTombstoneRepository.insertIfAbsent(messageId, System.currentTimeMillis() / 1000) == 0) {
+            return null;
+        }
+        return MessageView.of(message);
+    }
+
+    /**
+     * Deletes every tombstoned message from the message table, one chunk at a time.
+     */
+    @Scheduled(initialDelayString = "${app.soft-delete.compact-interval-ms:10000}",
+            fixedDelayString = "${app.soft-delete.compact-interval-ms:10000}")
+    public void compact() {
+        if(sharded) {
+            return;
+        }
+        long compacted = 0;
+        try {
+            int chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> compactChunk());
+                compacted += chunk;
+                purged.increment(chunk);
+                if(chunk == batchSize && !stopping) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while(chunk == batchSize && !stopping);
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            pending.set(messageTombstoneRepository.count());
+        }
+        if(compacted > 0) {
+            log.info("Compaction purged {} deleted messages", compacted);
+        }
+    }
+
+    /**
+     * Stops a running compaction after its current chunk.
+     */
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * Deletes the chunk of tombstoned messages with the lowest ids and their tombstones. Runs inside a transaction.
+     * @return Returns the number of tombstones purged.
+     */
+    private int compactChunk() {
+        List<Integer> messageIds = messageTombstoneRepository.findMessageIds(PageRequest.of(0, batchSize));
+        if(messageIds.isEmpty()) {
+            return 0;
+        }
+        messageStore.deleteAllByMessageIdIn(messageIds);
+        return messageTombstoneRepository.deleteAllByMessageIdIn(messageIds);
+    }
+}
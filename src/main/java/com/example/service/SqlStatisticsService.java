@@ -0,0 +1,242 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * SqlStatisticsService receives every statement executed on the primary DataSource from the
+ * StatementCountingDataSource.
+ *
+ * While a request is open on the current thread, its statements are counted and timed so the QueryCountFilter
+ * can report them in response headers. Statements slower than slow-query-ms are aggregated by their SQL text and
+ * logged once per report interval as one line per statement, instead of one line per execution.
+ */
+@Service
+public class SqlStatisticsService {
+    private static final Logger log = LoggerFactory.getLogger(SqlStatisticsService.class);
+
+    /**
+     * Matches runs of whitespace, which are collapsed so differently formatted copies of a statement aggregate.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /**
+     * Matches in-lists of bind parameters, which are collapsed so lists of different lengths aggregate.
+     */
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\?(?:\\s*,\\s*\\?)+\\)");
+    /**
+     * The key that slow statements are aggregated under once maxSlowStatements distinct statements are tracked.
+     */
+    static final String OTHER_STATEMENTS = "<other statements>";
+
+    /**
+     * The statistics of the request being handled by the current thread, or null outside of a request.
+     */
+    private final ThreadLocal<RequestStatistics> currentRequest = new ThreadLocal<>();
+    /**
+     * The slow statements since the last report, by normalized SQL.
+     */
+    private final Map<String, SlowStatement> slowStatements = new ConcurrentHashMap<>();
+    /**
+     * Statements that take at least this long are aggregated as slow.
+     */
+    private final long slowThresholdNanos;
+    /**
+     * The largest number of distinct slow statements tracked between two reports.
+     */
+    private final int maxSlowStatements;
+    /**
+     * Times every statement, without a per-statement tag to keep the number of meters fixed.
+     */
+    private final Timer statementTimer;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the settings and the meter registry.
+     * @param slowQueryMs Statements that take at least this many milliseconds are aggregated as slow.
+     * @param maxSlowStatements The largest number of distinct slow statements tracked between two reports.
+     * @param meterRegistry The registry of the app.sql.statements timer.
+     */
+    @Autowired
+    public SqlStatisticsService(@Value("${app.sql-stats.slow-query-ms:100}") long slowQueryMs,
+            @Value("${app.sql-stats.max-slow-statements:200}") int maxSlowStatements, MeterRegistry meterRegistry) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+        this.maxSlowStatements = maxSlowStatements;
+        this.statementTimer = Timer.builder("app.sql.statements").register(meterRegistry);
+    }
+
+    /**
+     * Starts counting the statements executed by the current thread.
+     * @return Returns the statistics of the request, which are updated until endRequest is called.
+     */
+    public RequestStatistics beginRequest() {
+        RequestStatistics statistics = new RequestStatistics();
+        currentRequest.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * Stops counting the statements executed by the current thread.
+     */
+    public void endRequest() {
+        currentRequest.remove();
+    }
+
+    /**
+     * Records one executed statement.
+     * @param sql The SQL of the statement, or null when the driver was not given any.
+     * @param elapsedNanos The execution time of the statement.
+     */
+    public void recordStatement(String sql, long elapsedNanos) {
+        statementTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        RequestStatistics statistics = currentRequest.get();
+        if(statistics != null) {
+            statistics.count++;
+            statistics.elapsedNanos += elapsedNanos;
+        }
+        if(elapsedNanos >= slowThresholdNanos) {
+            String key = normalize(sql);
+            SlowStatement slow = slowStatements.get(key);
+            if(slow == null) {
+                if(slowStatements.size() >= maxSlowStatements) {
+                    key = OTHER_STATEMENTS;
+                }
+                slow = slowStatements.computeIfAbsent(key, k -> new SlowStatement());
+            }
+            slow.record(elapsedNanos);
+        }
+    }
+
+    /**
+     * Returns the slow statements aggregated since the last report.
+     * @return Returns the slow statements by normalized SQL, slowest total time first.
+     */
+    public List<Map.Entry<String, SlowStatement>> getSlowStatements() {
+        List<Map.Entry<String, SlowStatement>> statements = new ArrayList<>(slowStatements.entrySet());
+        statements.sort(Comparator.comparingLong(
+                (Map.Entry<String, SlowStatement> entry) -> entry.getValue().getTotalNanos()).reversed());
+        return statements;
+    }
+
+    /**
+     * Logs one line per distinct slow statement since the last report and starts a new aggregation period.
+     */
+    @Scheduled(initialDelayString = "${app.sql-stats.report-interval-ms:60000}",
+            fixedDelayString = "${app.sql-stats.report-interval-ms:60000}")
+    public void reportSlowStatements() {
+        for(Map.Entry<String, SlowStatement> entry : getSlowStatements()) {
+            SlowStatement slow = slowStatements.remove(entry.getKey());
+            if(slow != null) {
+                log.warn("Slow SQL executed {} times, total {} ms, max {} ms: {}", slow.getCount(),
+                        TimeUnit.NANOSECONDS.toMillis(slow.getTotalNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(slow.getMaxNanos()), entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Reduces a statement to the form its executions are aggregated under.
+     * @param  sql The SQL of the statement, or null.
+     * @return Returns the SQL with collapsed whitespace and parameter lists.
+     */
+    static String normalize(String sql) {
+        if(sql == null) {
+            return "<unknown>";
+        }
+        String collapsed = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return PARAMETER_LIST.matcher(collapsed).replaceAll("(?, ...)");
+    }
+
+    /**
+     * The statements executed while handling one request. A request is handled by one thread, so the fields are
+     * not synchronized.
+     */
+    public static final class RequestStatistics {
+        /**
+         * The number of statements executed so far.
+         */
+        private int count;
+        /**
+         * The total execution time of those statements.
+         */
+        private long elapsedNanos;
+
+        /**
+         * @return Returns the number of statements executed so far.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return Returns the total execution time of the statements in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    /**
+     * The executions of one slow statement since the last report.
+     */
+    public static final class SlowStatement {
+        /**
+         * The number of slow executions.
+         */
+        private final LongAdder count = new LongAdder();
+        /**
+         * The total time of the slow executions.
+         */
+        private final LongAdder totalNanos = new LongAdder();
+        /**
+         * The time of the slowest execution.
+         */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Adds one slow execution.
+         * @param elapsedNanos The execution time.
+         */
+        void record(long elapsedNanos) {
+            count.increment();
+            totalNanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        /**
+         * @return Returns the number of slow executions.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return Returns the total time of the slow executions in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @return Returns the time of the slowest execution in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+}
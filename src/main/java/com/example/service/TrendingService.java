@@ -0,0 +1,311 @@
+package com.example.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.dto.MessageView;
+import com.example.dto.TrendingView;
+import com.example.event.MessageChangedEvent;
+import com.example.exception.InvalidModelFieldValuesException;
+import com.example.repository.MessageStore;
+import com.example.util.Hashing;
+import com.example.util.HeavyHitters;
+import com.example.util.HyperLogLog;
+
+/**
+ * TrendingService answers "most active accounts" and "trending terms" for the last window-seconds from streaming
+ * sketches, without querying the message table. The window is a ring of buckets of bucket-seconds each, by
+ * timePostedEpoch. Every bucket counts posters and the terms of message texts in a HeavyHitters, a count-min
+ * sketch with a top-k heap, and the distinct posters in a HyperLogLog, so memory is fixed by the configuration
+ * whatever the traffic. A bucket that falls out of the window is replaced by the next one that starts.
+ *
+ * A query takes the union of the top keys of the buckets in the window and sums their estimates over the buckets,
+ * which like a single sketch never undercounts. Created messages arrive through the committed MessageChangedEvents;
+ * sketches can not subtract, so deletes and edits are only reflected once their bucket leaves the window. The
+ * sketches are loaded from the message table once the application is ready, and again after the bulk paths that
+ * write the message table without events, like LatestMessagesService.
+ */
+@Service
+public class TrendingService {
+    private static final Logger log = LoggerFactory.getLogger(TrendingService.class);
+    private static final InvalidModelFieldValuesException INVALID_LIMIT =
+            new InvalidModelFieldValuesException("The limit must be positive.");
+    /**
+     * Splits a message text into terms.
+     */
+    private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /**
+     * Frequent words that would otherwise trend all the time.
+     */
+    private static final Set<String> STOP_WORDS = Set.of("the", "and", "for", "are", "but", "not", "you", "all",
+            "any", "can", "had", "her", "was", "one", "our", "out", "his", "has", "have", "that", "this", "with",
+            "from", "they", "will", "what", "your", "just", "about", "there", "their", "been", "were", "into");
+    /**
+     * The number of messages loaded per query by reload.
+     */
+    private static final int RELOAD_PAGE_SIZE = 1000;
+
+    /**
+     * Repository class for loading the messages of the window.
+     */
+    private MessageStore messageStore;
+    /**
+     * The length of a bucket.
+     */
+    private final long bucketSeconds;
+    /**
+     * The number of buckets in the window.
+     */
+    private final int bucketCount;
+    /**
+     * The number of top keys kept per bucket, which is also the largest limit of a query.
+     */
+    private final int topK;
+    /**
+     * The number of counters per row of a count-min sketch.
+     */
+    private final int sketchWidth;
+    /**
+     * The number of rows of a count-min sketch.
+     */
+    private final int sketchDepth;
+    /**
+     * The precision of a HyperLogLog.
+     */
+    private final int hllPrecision;
+    /**
+     * The shortest term that is counted.
+     */
+    private final int minTermLength;
+    /**
+     * The buckets of the window by bucket index modulo bucketCount, replaced as a whole by reload.
+     */
+    private volatile AtomicReferenceArray<Bucket> window;
+
+    /**
+     * Parameterized constructor annotated with @Autowired so Spring injects the MessageStore dependency and
+     * the configured window and sketch sizes.
+     * @param messageStore
+     * @param windowSeconds The length of the window.
+     * @param bucketSeconds The length of a bucket, which windowSeconds is rounded up to a multiple of.
+     * @param topK The number of top keys kept per bucket.
+     * @param sketchWidth The number of counters per row of a count-min sketch.
+     * @param sketchDepth The number of rows of a count-min sketch.
+     * @param hllPrecision The precision of a HyperLogLog.
+     * @param minTermLength The shortest term that is counted.
+     */
+    @Autowired
+    public TrendingService(MessageStore messageStore,
+            @Value("${app.trending.window-seconds:3600}") long windowSeconds,
+            @Value("${app.trending.bucket-seconds:300}") long bucketSeconds,
+            @Value("${app.trending.top-k:50}") int topK,
+            @Value("${app.trending.sketch-width:2048}") int sketchWidth,
+            @Value("${app.trending.sketch-depth:4}") int sketchDepth,
+            @Value("${app.trending.hll-precision:12}") int hllPrecision,
+            @Value("${app.trending.min-term-length:3}") int minTermLength) {
+        if(windowSeconds <= 0 || bucketSeconds <= 0) {
+            throw new IllegalArgumentException("The trending window and bucket length must be positive.");
+        }
+        this.messageStore = messageStore;
+        this.bucketSeconds = bucketSeconds;
+        this.bucketCount = (int) ((windowSeconds + bucketSeconds - 1) / bucketSeconds);
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.hllPrecision = hllPrecision;
+        this.minTermLength = minTermLength;
+        this.window = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * Returns the accounts that posted the most messages within the window.
+     * @param  limit The largest number of accounts to return, lowered to top-k.
+     * @throws InvalidModelFieldValuesException when limit is not positive.
+     * @return Returns the top accountIds with their estimated message counts.
+     */
+    public TrendingView<Integer> getTopPosters(int limit) {
+        return query(limit, bucket -> bucket.posters);
+    }
+
+    /**
+     * Returns the terms used in the most messages within the window.
+     * @param  limit The largest number of terms to return, lowered to top-k.
+     * @throws InvalidModelFieldValuesException when limit is not positive.
+     * @return Returns the top terms with the estimated number of messages using them.
+     */
+    public TrendingView<String> getTrendingTerms(int limit) {
+        return query(limit, bucket -> bucket.terms);
+    }
+
+    /**
+     * Replaces the sketches with ones loaded from the messages of the window.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        AtomicReferenceArray<Bucket> loaded = new AtomicReferenceArray<>(bucketCount);
+        long now = System.currentTimeMillis() / 1000;
+        long current = Math.floorDiv(now, bucketSeconds);
+        long from = (current - bucketCount + 1) * bucketSeconds;
+        long messages = 0;
+        Slice<MessageView> slice;
+        int page = 0;
+        do {
+            slice = messageStore.findViewsPostedBetween(from, now, PageRequest.of(page++, RELOAD_PAGE_SIZE));
+            for(MessageView message : slice) {
+                add(loaded, message, current);
+            }
+            messages += slice.getNumberOfElements();
+        } while(slice.hasNext());
+        window = loaded;
+        log.info("Loaded {} messages of the trending window", messages);
+    }
+
+    /**
+     * Counts a committed new message.
+     * @param event The change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageChanged(MessageChangedEvent event) {
+        if(event.getType() == MessageChangedEvent.Type.CREATED) {
+            add(window, event.getMessage(), Math.floorDiv(System.currentTimeMillis() / 1000, bucketSeconds));
+        }
+    }
+
+    /**
+     * Answers a top-k query over the buckets of the window.
+     * @param  limit The largest number of keys to return.
+     * @param  sketch Selects the HeavyHitters of a bucket.
+     * @return Returns the top keys of the window.
+     */
+    private <K> TrendingView<K> query(int limit, Function<Bucket, HeavyHitters<K>> sketch) {
+        if(limit <= 0) {
+            throw INVALID_LIMIT;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        long current = Math.floorDiv(now, bucketSeconds);
+        List<Bucket> buckets = new ArrayList<>(bucketCount);
+        AtomicReferenceArray<Bucket> slots = window;
+        for(int i = 0; i < bucketCount; i++) {
+            Bucket bucket = slots.get(i);
+            if(bucket != null && bucket.index > current - bucketCount && bucket.index <= current) {
+                buckets.add(bucket);
+            }
+        }
+        Map<K, Long> candidates = new HashMap<>();
+        HyperLogLog posters = new HyperLogLog(hllPrecision);
+        for(Bucket bucket : buckets) {
+            candidates.putAll(sketch.apply(bucket).keys());
+            posters.merge(bucket.distinctPosters);
+        }
+        List<TrendingView.Item<K>> items = new ArrayList<>(candidates.size());
+        for(Map.Entry<K, Long> candidate : candidates.entrySet()) {
+            long count = 0;
+            for(Bucket bucket : buckets) {
+                count += sketch.apply(bucket).estimate(candidate.getValue());
+            }
+            items.add(new TrendingView.Item<>(candidate.getKey(), count));
+        }
+        items.sort(Comparator.comparingLong((TrendingView.Item<K> item) -> item.getCount()).reversed());
+        return new TrendingView<>((current - bucketCount + 1) * bucketSeconds, now, posters.estimate(),
+                new ArrayList<>(items.subList(0, Math.min(Math.min(limit, topK), items.size()))));
+    }
+
+    /**
+     * Counts a message in the bucket of its timePostedEpoch. Messages outside the window are not counted.
+     * @param slots The buckets of the window.
+     * @param message The message.
+     * @param current The index of the bucket of the current time.
+     */
+    private void add(AtomicReferenceArray<Bucket> slots, MessageView message, long current) {
+        if(message.getPostedBy() == null || message.getTimePostedEpoch() == null) {
+            return;
+        }
+        long index = Math.floorDiv(message.getTimePostedEpoch(), bucketSeconds);
+        if(index > current || index <= current - bucketCount) {
+            return;
+        }
+        Bucket bucket = bucketFor(slots, index);
+        if(bucket == null) {
+            return;
+        }
+        long posterHash = Hashing.mix64(message.getPostedBy());
+        bucket.posters.add(message.getPostedBy(), posterHash);
+        bucket.distinctPosters.add(posterHash);
+        if(message.getMessageText() != null) {
+            for(String term : terms(message.getMessageText())) {
+                bucket.terms.add(term, Hashing.hash64(term));
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket of an index, replacing the older bucket in its slot.
+     * @param  slots The buckets of the window.
+     * @param  index The index of the bucket.
+     * @return Returns the bucket, or null when its slot already holds a newer bucket.
+     */
+    private Bucket bucketFor(AtomicReferenceArray<Bucket> slots, long index) {
+        int slot = (int) Math.floorMod(index, (long) bucketCount);
+        while(true) {
+            Bucket bucket = slots.get(slot);
+            if(bucket != null && bucket.index >= index) {
+                return bucket.index == index ? bucket : null;
+            }
+            Bucket next = new Bucket(index);
+            if(slots.compareAndSet(slot, bucket, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * @param  text The text of a message.
+     * @return Returns the distinct lower-case terms of the text, without stop words and short terms.
+     */
+    private Set<String> terms(String text) {
+        Set<String> terms = new HashSet<>();
+        for(String term : TERM_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if(term.length() >= minTermLength && !STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * The sketches of the messages posted within one bucket.
+     */
+    private final class Bucket {
+        /**
+         * The timePostedEpoch of the messages divided by bucketSeconds.
+         */
+        final long index;
+        final HeavyHitters<Integer> posters = new HeavyHitters<>(topK, sketchWidth, sketchDepth);
+        final HeavyHitters<String> terms = new HeavyHitters<>(topK, sketchWidth, sketchDepth);
+        final HyperLogLog distinctPosters = new HyperLogLog(hllPrecision);
+
+        Bucket(long index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ConsistentHashRing maps integer keys to a fixed number of shards. Every shard owns virtualNodes points on a
+ * 32-bit ring and a key belongs to the shard owning the first point at or after the key's hash, so adding a
+ * shard only moves about 1/n of the keys instead of nearly all of them as with a plain modulo.
+ *
+ * The ring is immutable after construction and safe to share between threads.
+ */
+public class ConsistentHashRing {
+    /**
+     * The ring points, mapped to the index of the shard that owns them.
+     */
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+    /**
+     * The number of shards on the ring.
+     */
+    private final int shardCount;
+
+    /**
+     * Parameterized constructor that places every shard on the ring.
+     * @param shardCount The number of shards.
+     * @param virtualNodes The number of ring points per shard. More points spread the keys more evenly.
+     */
+    public ConsistentHashRing(int shardCount, int virtualNodes) {
+        if(shardCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("The shard count and virtual nodes of a hash ring must be positive.");
+        }
+        this.shardCount = shardCount;
+        for(int shard = 0; shard < shardCount; shard++) {
+            for(int node = 0; node < virtualNodes; node++) {
+                // On a collision the first shard keeps the point, which is deterministic for a given configuration.
+                ring.putIfAbsent(mix(shard * 0x10000 + node + 0x5bd1e995), shard);
+            }
+        }
+    }
+
+    /**
+     * Returns the shard that owns a key.
+     * @param  key The key, e.g. an accountId.
+     * @return Returns a shard index between 0 and shardCount - 1.
+     */
+    public int shardFor(int key) {
+        Map.Entry<Integer, Integer> owner = ring.ceilingEntry(mix(key));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * @return Returns the number of shards on the ring.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Scrambles an integer with the MurmurHash3 finalizer so consecutive keys land far apart on the ring.
+     * @param  value The value to hash.
+     * @return Returns the hash of value.
+     */
+    private static int mix(int value) {
+        int hash = value;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
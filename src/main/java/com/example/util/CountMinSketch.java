@@ -0,0 +1,75 @@
+package com.example.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CountMinSketch counts how often keys occur in a stream in constant memory. Every key increments one counter in
+ * each of depth rows of width counters, and its count is estimated by the smallest of its counters. An estimate
+ * is never below the true count, and with probability 1 - e^-depth it exceeds it by at most e / width times the
+ * total count added to the sketch.
+ *
+ * Counters are updated lock-free, so concurrent writers never block each other. Keys are given as 64-bit hashes
+ * (see Hashing), from which the row positions are derived by double hashing.
+ */
+public class CountMinSketch {
+    /**
+     * The number of counters per row.
+     */
+    private final int width;
+    /**
+     * The number of rows.
+     */
+    private final int depth;
+    /**
+     * The counters, row after row.
+     */
+    private final AtomicLongArray counters;
+
+    /**
+     * Parameterized constructor that sets the size of the sketch.
+     * @param width The number of counters per row, which bounds the error relative to the total count.
+     * @param depth The number of rows, which bounds the probability of exceeding that error.
+     */
+    public CountMinSketch(int width, int depth) {
+        if(width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("The width and depth of a count-min sketch must be positive.");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     * @param  hash The 64-bit hash of the key.
+     * @return Returns the estimated count of the key, including this occurrence.
+     */
+    public long add(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param  hash The 64-bit hash of the key.
+     * @return Returns the estimated count of the key, which is never below its true count.
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for(int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @return Returns the position of a key's counter in a row.
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return row * width + ((h1 + row * h2) & 0x7FFFFFFF) % width;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.util;
+
+/**
+ * GradientConcurrencyLimit is an adaptive limit on the number of requests in flight, adjusted from their latency
+ * with the gradient algorithm of Netflix's concurrency-limits library.
+ *
+ * Two moving averages of the latency are kept: a short one that follows the current latency, and a long one that
+ * stands for the latency of the unloaded server. While the short average stays within tolerance times the long one
+ * the limit grows by about its square root per sample; once requests queue in front of a saturated resource, the
+ * short average rises and the limit shrinks in proportion, down to at most half per sample. The limit only grows
+ * while at least half of it is used, so an idle server does not build up a limit it has never tested.
+ *
+ * Requests are admitted with a priority share: a request is admitted while the number of requests in flight is
+ * below its share of the limit, so requests with a smaller share are shed first when the limit shrinks.
+ */
+public class GradientConcurrencyLimit {
+    /**
+     * The smallest limit, so a few slow requests can not shut the server.
+     */
+    private final int minLimit;
+    /**
+     * The largest limit.
+     */
+    private final int maxLimit;
+    /**
+     * How much slower than the long-term latency requests may get before the limit shrinks.
+     */
+    private final double tolerance;
+    /**
+     * The weight of a new limit, smoothing the changes of the limit.
+     */
+    private final double smoothing;
+    /**
+     * The weight of a sample in the short-term latency.
+     */
+    private final double shortWeight;
+    /**
+     * The weight of a sample in the long-term latency.
+     */
+    private final double longWeight;
+
+    /**
+     * The current limit. It is only written while holding this object, and volatile so getLimit does not lock.
+     */
+    private volatile double limit;
+    /**
+     * The number of admitted requests that have not completed.
+     */
+    private int inFlight;
+    /**
+     * The short-term average latency in nanoseconds, 0 before the first sample.
+     */
+    private double shortLatency;
+    /**
+     * The long-term average latency in nanoseconds, 0 before the first sample.
+     */
+    private double longLatency;
+
+    /**
+     * Parameterized constructor that sets the bounds and the dynamics of the limit.
+     * @param initialLimit The limit before any latency was observed.
+     * @param minLimit The smallest limit.
+     * @param maxLimit The largest limit.
+     * @param tolerance How much slower than the long-term latency requests may get before the limit shrinks.
+     * @param shortWindow The number of samples the short-term latency averages over.
+     * @param longWindow The number of samples the long-term latency averages over.
+     */
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, int shortWindow,
+            int longWindow) {
+        if(minLimit < 1 || maxLimit < minLimit || tolerance < 1) {
+            throw new IllegalArgumentException("A concurrency limit needs 1 <= minLimit <= maxLimit and "
+                    + "a tolerance of at least 1.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = 0.2;
+        this.shortWeight = 2.0 / (shortWindow + 1);
+        this.longWeight = 2.0 / (longWindow + 1);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Admits a request if the requests in flight are below its share of the limit.
+     * @param  share The share of the limit requests of this priority may use, between 0 and 1.
+     * @return Returns true if the request was admitted and must be completed with release.
+     */
+    public synchronized boolean tryAcquire(double share) {
+        if(inFlight >= Math.max(1, (int) (limit * share))) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Completes an admitted request and adjusts the limit to its latency.
+     * @param latencyNanos The time the request took.
+     */
+    public synchronized void release(long latencyNanos) {
+        int used = inFlight--;
+        if(shortLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        shortLatency += shortWeight * (latencyNanos - shortLatency);
+        longLatency += longWeight * (shortLatency - longLatency);
+        if(longLatency > 2 * shortLatency) {
+            // The load dropped well below what the long-term latency was measured at; let it catch up faster.
+            longLatency *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+        double target = limit * gradient + Math.sqrt(limit);
+        double next = limit * (1 - smoothing) + target * smoothing;
+        if(next > limit && used < limit / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    /**
+     * @return Returns the current limit, rounded down.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return Returns the number of admitted requests that have not completed.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
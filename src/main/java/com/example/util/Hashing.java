@@ -0,0 +1,41 @@
+package com.example.util;
+
+/**
+ * Hashing holds the 64-bit hash functions of the streaming sketches. Both spread their input over every bit, as
+ * CountMinSketch derives its row positions from the two halves of a hash and HyperLogLog reads the register from
+ * the top bits and the rank from the rest.
+ */
+public final class Hashing {
+    private Hashing() {
+    }
+
+    /**
+     * Mixes a key with the finalizer of MurmurHash3, so keys that differ in one bit differ in about half the bits
+     * of their hashes.
+     * @param  key The key, e.g. an accountId.
+     * @return Returns the 64-bit hash.
+     */
+    public static long mix64(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Hashes the chars of a string with 64-bit FNV-1a and mixes the result.
+     * @param  value The string, e.g. a term.
+     * @return Returns the 64-bit hash.
+     */
+    public static long hash64(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.util;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * HeavyHitters tracks the most frequent keys of a stream in constant memory. Every key is counted in a
+ * CountMinSketch, and the k keys with the highest estimates are kept in a min-heap. A key whose estimate rises
+ * above the smallest count in the full heap replaces that key, so a key that occurs more than e / width of the
+ * stream is in the heap with high probability, whatever the number of distinct keys.
+ *
+ * The sketch is updated lock-free. Only keys that enter or move up in the heap take its lock, which with a
+ * skewed stream is a small share of the adds.
+ * @param <K> The type of the keys.
+ */
+public class HeavyHitters<K> {
+    /**
+     * The counts of every key.
+     */
+    private final CountMinSketch sketch;
+    /**
+     * The number of keys kept in the heap.
+     */
+    private final int k;
+    /**
+     * The top keys, the one with the smallest count first.
+     */
+    private final PriorityQueue<Candidate<K>> heap =
+            new PriorityQueue<>(Comparator.comparingLong((Candidate<K> candidate) -> candidate.count));
+    /**
+     * The heap entries by key.
+     */
+    private final Map<K, Candidate<K>> candidates = new HashMap<>();
+    /**
+     * The smallest count in the heap once it is full, read without the lock to skip keys that can not enter it.
+     */
+    private volatile long threshold;
+
+    /**
+     * Parameterized constructor that sets the size of the heap and the sketch.
+     * @param k The number of keys kept in the heap.
+     * @param width The number of counters per row of the sketch.
+     * @param depth The number of rows of the sketch.
+     */
+    public HeavyHitters(int k, int width, int depth) {
+        if(k <= 0) {
+            throw new IllegalArgumentException("The number of heavy hitters must be positive.");
+        }
+        this.k = k;
+        this.sketch = new CountMinSketch(width, depth);
+    }
+
+    /**
+     * Counts one occurrence of a key.
+     * @param key The key.
+     * @param hash The 64-bit hash of the key.
+     */
+    public void add(K key, long hash) {
+        long estimate = sketch.add(hash);
+        if(estimate <= threshold) {
+            return;
+        }
+        synchronized(heap) {
+            Candidate<K> candidate = candidates.get(key);
+            if(candidate != null) {
+                if(estimate > candidate.count) {
+                    heap.remove(candidate);
+                    candidate.count = estimate;
+                    heap.add(candidate);
+                }
+            }
+            else if(heap.size() < k) {
+                add(new Candidate<>(key, hash, estimate));
+            }
+            else if(estimate > heap.peek().count) {
+                candidates.remove(heap.poll().key);
+                add(new Candidate<>(key, hash, estimate));
+            }
+            if(heap.size() == k) {
+                threshold = heap.peek().count;
+            }
+        }
+    }
+
+    /**
+     * @param  hash The 64-bit hash of the key.
+     * @return Returns the estimated count of a key, which is never below its true count.
+     */
+    public long estimate(long hash) {
+        return sketch.estimate(hash);
+    }
+
+    /**
+     * @return Returns the keys in the heap with their hashes, in no particular order.
+     */
+    public Map<K, Long> keys() {
+        synchronized(heap) {
+            Map<K, Long> keys = new HashMap<>();
+            for(Candidate<K> candidate : heap) {
+                keys.put(candidate.key, candidate.hash);
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Adds a key to the heap. Must hold the lock of the heap.
+     */
+    private void add(Candidate<K> candidate) {
+        heap.add(candidate);
+        candidates.put(candidate.key, candidate);
+    }
+
+    /**
+     * A key in the heap and its estimated count when it last moved.
+     */
+    private static final class Candidate<K> {
+        final K key;
+        final long hash;
+        long count;
+
+        Candidate(K key, long hash, long count) {
+            this.key = key;
+            this.hash = hash;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * HyperLogLog estimates the number of distinct keys in a stream in constant memory. A key's 64-bit hash selects
+ * one of 2^precision registers by its top bits, and the register keeps the highest rank, the position of the first
+ * one bit, seen in the remaining bits. The estimate has a standard error of about 1.04 / sqrt(2^precision), and
+ * small cardinalities are counted exactly enough by linear counting over the empty registers.
+ *
+ * Registers are raised lock-free. Sketches of the same precision are merged by taking the highest rank per
+ * register, which estimates the distinct keys of the union of their streams.
+ */
+public class HyperLogLog {
+    /**
+     * The number of hash bits that select the register.
+     */
+    private final int precision;
+    /**
+     * The highest rank seen per register.
+     */
+    private final AtomicIntegerArray registers;
+
+    /**
+     * Parameterized constructor that sets the number of registers.
+     * @param precision The number of hash bits that select the register, from 4 to 16.
+     */
+    public HyperLogLog(int precision) {
+        if(precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("The precision of a HyperLogLog must be between 4 and 16.");
+        }
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    /**
+     * Adds a key.
+     * @param hash The 64-bit hash of the key.
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit caps the rank when the remaining bits are all zero.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        while(true) {
+            int current = registers.get(index);
+            if(current >= rank || registers.compareAndSet(index, current, rank)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds every key of another sketch to this one.
+     * @param other A sketch with the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if(other.precision != precision) {
+            throw new IllegalArgumentException("Only HyperLogLogs of the same precision can be merged.");
+        }
+        for(int i = 0; i < registers.length(); i++) {
+            registers.accumulateAndGet(i, other.registers.get(i), Math::max);
+        }
+    }
+
+    /**
+     * @return Returns the estimated number of distinct keys added.
+     */
+    public long estimate() {
+        int m = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for(int i = 0; i < m; i++) {
+            int rank = registers.get(i);
+            sum += Math.scalb(1.0, -rank);
+            if(rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if(estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return Returns the bias correction constant for m registers.
+     */
+    private static double alpha(int m) {
+        switch(m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.util;
+
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.example.dto.MessageView;
+
+/**
+ * LatestMessagesRing holds the most recently added messages in a fixed number of slots, in primitive arrays
+ * instead of message objects: the ids, posters and post times in int and long arrays, and the texts as UTF-8 in
+ * one circular byte store that every slot points into. A slot costs 44 bytes plus its text, and adding a message
+ * allocates nothing but the encoded text.
+ *
+ * Adding a message claims the next sequence number with one atomic increment, which picks the slot it overwrites.
+ * Every slot has a version that is odd while a writer changes the slot, so writers of the same slot take turns,
+ * and readers never wait: they copy a slot and retry if its version changed meanwhile. A text is gone once the
+ * byte store has wrapped around over it, which readers detect from the store's write position; its message is
+ * then skipped like an evicted one.
+ *
+ * Updates and deletes look the message up among the slots, newest first. A change to a message that has left the
+ * ring, or that arrives before the message was added, is ignored.
+ */
+public class LatestMessagesRing {
+    /**
+     * Stands for a null postedBy.
+     */
+    private static final int NO_POSTER = Integer.MIN_VALUE;
+    /**
+     * Stands for a null timePostedEpoch.
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+    /**
+     * The text start of a deleted message.
+     */
+    private static final long DELETED = -1;
+
+    /**
+     * The number of slots, a power of two.
+     */
+    private final int capacity;
+    /**
+     * The next sequence number; sequence s is stored in slot s & (capacity - 1).
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * The version of every slot, odd while a writer changes the slot.
+     */
+    private final AtomicLongArray versions;
+    /**
+     * The sequence number of the message in every slot, -1 for an empty slot.
+     */
+    private final long[] sequences;
+    /**
+     * The messageId of every slot.
+     */
+    private final int[] messageIds;
+    /**
+     * The postedBy of every slot, NO_POSTER for null.
+     */
+    private final int[] postedBy;
+    /**
+     * The timePostedEpoch of every slot, NO_TIME for null.
+     */
+    private final long[] timePostedEpochs;
+    /**
+     * The position of the text of every slot in the byte store, counted from the first byte ever written.
+     */
+    private final long[] textStarts;
+    /**
+     * The length of the text of every slot in bytes.
+     */
+    private final int[] textLengths;
+    /**
+     * The circular byte store of the texts, a power of two long.
+     */
+    private final byte[] texts;
+    /**
+     * The number of bytes ever reserved in the byte store.
+     */
+    private final AtomicLong textCursor = new AtomicLong();
+
+    /**
+     * Parameterized constructor that sizes the slots and the byte store.
+     * @param capacity The number of messages kept, rounded up to a power of two.
+     * @param textBytesPerMessage The average text size the byte store is sized for; longer texts make messages
+     *        leave the ring before their slot is reused.
+     */
+    public LatestMessagesRing(int capacity, int textBytesPerMessage) {
+        if(capacity < 1 || textBytesPerMessage < 1) {
+            throw new IllegalArgumentException("The capacity and the text bytes per message must be positive.");
+        }
+        this.capacity = roundUpToPowerOfTwo(capacity);
+        this.versions = new AtomicLongArray(this.capacity);
+        this.sequences = new long[this.capacity];
+        this.messageIds = new int[this.capacity];
+        this.postedBy = new int[this.capacity];
+        this.timePostedEpochs = new long[this.capacity];
+        this.textStarts = new long[this.capacity];
+        this.textLengths = new int[this.capacity];
+        // A message text is at most 255 characters, which is at most 765 bytes of UTF-8.
+        this.texts = new byte[roundUpToPowerOfTwo(Math.max(1024, this.capacity * textBytesPerMessage))];
+        Arrays.fill(sequences, -1);
+    }
+
+    /**
+     * Adds a message as the newest one, replacing the oldest once the ring is full.
+     * @param message The message.
+     */
+    public void add(MessageView message) {
+        long sequence = head.getAndIncrement();
+        int slot = (int) (sequence & (capacity - 1));
+        byte[] text = message.getMessageText() == null ? new byte[0]
+                : message.getMessageText().getBytes(StandardCharsets.UTF_8);
+        long textStart = store(text);
+        long version = lock(slot);
+        // A writer that claimed this slot a whole lap later may have got here first.
+        if(sequences[slot] < sequence) {
+            sequences[slot] = sequence;
+            messageIds[slot] = message.getMessageId();
+            postedBy[slot] = message.getPostedBy() == null ? NO_POSTER : message.getPostedBy();
+            timePostedEpochs[slot] = message.getTimePostedEpoch() == null ? NO_TIME : message.getTimePostedEpoch();
+            textStarts[slot] = textStart;
+            textLengths[slot] = text.length;
+        }
+        unlock(slot, version);
+    }
+
+    /**
+     * Replaces the text of a message in the ring.
+     * @param messageId The id of the message.
+     * @param messageText The new text.
+     * @return Returns false when the message is not in the ring.
+     */
+    public boolean updateText(int messageId, String messageText) {
+        int slot = find(messageId);
+        if(slot < 0) {
+            return false;
+        }
+        byte[] bytes = messageText.getBytes(StandardCharsets.UTF_8);
+        long textStart = store(bytes);
+        long version = lock(slot);
+        boolean found = messageIds[slot] == messageId && textStarts[slot] != DELETED;
+        if(found) {
+            textStarts[slot] = textStart;
+            textLengths[slot] = bytes.length;
+        }
+        unlock(slot, version);
+        return found;
+    }
+
+    /**
+     * Removes a message from the ring.
+     * @param messageId The id of the message.
+     * @return Returns false when the message is not in the ring.
+     */
+    public boolean remove(int messageId) {
+        int slot = find(messageId);
+        if(slot < 0) {
+            return false;
+        }
+        long version = lock(slot);
+        boolean found = messageIds[slot] == messageId && textStarts[slot] != DELETED;
+        if(found) {
+            textStarts[slot] = DELETED;
+        }
+        unlock(slot, version);
+        return found;
+    }
+
+    /**
+     * Returns the newest messages.
+     * @param  count The largest number of messages returned.
+     * @return Returns up to count messages, newest first.
+     */
+    public List<MessageView> latest(int count) {
+        List<MessageView> latest = new ArrayList<>(Math.min(count, capacity));
+        long newest = head.get() - 1;
+        for(long sequence = newest; sequence >= 0 && sequence > newest - capacity && latest.size() < count;
+                sequence--) {
+            MessageView message = read(sequence);
+            if(message != null) {
+                latest.add(message);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return Returns the number of slots.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Copies the message with a sequence number out of its slot without locking.
+     * @param  sequence The sequence number.
+     * @return Returns the message, or null when it was deleted, has left the ring or is still being added.
+     */
+    private MessageView read(long sequence) {
+        int slot = (int) (sequence & (capacity - 1));
+        while(true) {
+            long version = versions.get(slot);
+            if((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long textStart = textStarts[slot];
+            if(sequences[slot] != sequence || textStart == DELETED) {
+                return null;
+            }
+            int messageId = messageIds[slot];
+            int poster = postedBy[slot];
+            long time = timePostedEpochs[slot];
+            byte[] text = new byte[Math.max(0, Math.min(textLengths[slot], texts.length))];
+            copyText(textStart, text);
+            VarHandle.acquireFence();
+            if(versions.get(slot) != version) {
+                continue;
+            }
+            if(textCursor.get() - textStart > texts.length) {
+                return null;
+            }
+            return new MessageView(messageId, poster == NO_POSTER ? null : poster,
+                    new String(text, StandardCharsets.UTF_8), time == NO_TIME ? null : time);
+        }
+    }
+
+    /**
+     * Finds the slot of a message, newest first.
+     * @param  messageId The id of the message.
+     * @return Returns the slot, or -1 when the message is not in the ring.
+     */
+    private int find(int messageId) {
+        long newest = head.get() - 1;
+        for(long sequence = newest; sequence >= 0 && sequence > newest - capacity; sequence--) {
+            int slot = (int) (sequence & (capacity - 1));
+            if(messageIds[slot] == messageId && sequences[slot] == sequence) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Waits until no other writer changes a slot and marks it as being changed.
+     * @param  slot The slot.
+     * @return Returns the version of the slot before it was locked.
+     */
+    private long lock(int slot) {
+        while(true) {
+            long version = versions.get(slot);
+            if((version & 1) == 0 && versions.compareAndSet(slot, version, version + 1)) {
+                return version;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Publishes the changes to a slot.
+     * @param slot The slot.
+     * @param version The version returned by lock.
+     */
+    private void unlock(int slot, long version) {
+        versions.set(slot, version + 2);
+    }
+
+    /**
+     * Reserves room for bytes at the write position of the byte store and copies them there.
+     * @param  bytes The bytes.
+     * @return Returns the position of the bytes in the byte store.
+     */
+    private long store(byte[] bytes) {
+        long start = textCursor.getAndAdd(bytes.length);
+        int offset = (int) (start & (texts.length - 1));
+        int first = Math.min(bytes.length, texts.length - offset);
+        System.arraycopy(bytes, 0, texts, offset, first);
+        System.arraycopy(bytes, first, texts, 0, bytes.length - first);
+        return start;
+    }
+
+    /**
+     * Copies bytes out of the byte store.
+     * @param start The position of the bytes in the byte store.
+     * @param target The array the bytes are copied into, as long as the bytes.
+     */
+    private void copyText(long start, byte[] target) {
+        int offset = (int) (start & (texts.length - 1));
+        int first = Math.min(target.length, texts.length - offset);
+        System.arraycopy(texts, offset, target, 0, first);
+        System.arraycopy(texts, 0, target, first, target.length - first);
+    }
+
+    /**
+     * @return Returns the smallest power of two that is at least value.
+     */
+    private static int roundUpToPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
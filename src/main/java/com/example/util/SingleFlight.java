@@ -0,0 +1,84 @@
+package com.example.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight coalesces concurrent calls with the same key: the first caller runs the call, and callers that
+ * arrive while it is running wait for it and get its result, or its exception, instead of running it again.
+ *
+ * Nothing is cached. The key is forgotten as soon as the call completes, so a caller that arrives afterwards
+ * runs the call again and sees the data as of then. The shared result is the same object for every caller, so
+ * it must not be modified.
+ */
+public class SingleFlight<K, V> {
+    /**
+     * The running calls by key.
+     */
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    /**
+     * The number of calls that ran.
+     */
+    private final LongAdder executed = new LongAdder();
+    /**
+     * The number of calls that got the result of a running call.
+     */
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Runs a call, or waits for the running call with the same key.
+     * @param  key The key of the call; calls with equal keys must return equal results.
+     * @param  call The call.
+     * @return Returns the result of the call that ran.
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if(running != null) {
+            shared.increment();
+            try {
+                return running.join();
+            }
+            catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if(e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        executed.increment();
+        try {
+            V result = call.get();
+            flight.complete(result);
+            return result;
+        }
+        catch(RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return Returns the number of calls that ran.
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * @return Returns the number of calls that got the result of a running call instead of running.
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+}
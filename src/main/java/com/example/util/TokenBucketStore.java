@@ -0,0 +1,120 @@
+package com.example.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TokenBucketStore is a lock-free, bounded-memory map of token buckets keyed by an arbitrary client key.
+ * Each bucket is stored as a single "theoretical arrival time" (the generic cell rate algorithm), which admits
+ * exactly the same requests as a token bucket with the configured refill rate and capacity, but can be updated
+ * with one compare-and-set and needs no refill timer.
+ *
+ * A bucket whose arrival time is in the past is full, so it is indistinguishable from a new bucket and can be
+ * evicted at any time. Once the store holds maxEntries keys, new keys share a fixed array of overflow buckets
+ * selected by hash, so memory stays bounded while flooding clients are still limited.
+ */
+public class TokenBucketStore {
+    private static final int OVERFLOW_BUCKETS = 1024;
+
+    /**
+     * The nanoseconds it takes to refill one token.
+     */
+    private final long intervalNanos;
+    /**
+     * The nanoseconds it takes to refill a completely empty bucket.
+     */
+    private final long capacityNanos;
+    /**
+     * The maximum number of keys with a bucket of their own.
+     */
+    private final int maxEntries;
+    private final Map<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLongArray overflowBuckets = new AtomicLongArray(OVERFLOW_BUCKETS);
+
+    /**
+     * Parameterized constructor that sets the refill rate, the capacity and the maximum number of keys.
+     * @param permitsPerSecond The number of tokens added to a bucket every second.
+     * @param burst The capacity of a bucket.
+     * @param maxEntries The maximum number of keys with a bucket of their own.
+     */
+    public TokenBucketStore(double permitsPerSecond, int burst, int maxEntries) {
+        if(permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("The rate and burst of a token bucket must be positive.");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.capacityNanos = intervalNanos * burst;
+        this.maxEntries = maxEntries;
+        for(int i = 0; i < OVERFLOW_BUCKETS; i++) {
+            overflowBuckets.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Takes one token from the bucket of a key.
+     * @param  key The client key.
+     * @return Returns 0 if a token was taken, otherwise the nanoseconds until a token will be available.
+     */
+    public long tryAcquire(Object key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if(bucket == null) {
+            if(buckets.size() >= maxEntries) {
+                int index = (key.hashCode() & 0x7FFFFFFF) % OVERFLOW_BUCKETS;
+                while(true) {
+                    long arrival = overflowBuckets.get(index);
+                    long next = Math.max(arrival, now) + intervalNanos;
+                    long waitNanos = next - now - capacityNanos;
+                    if(waitNanos > 0) {
+                        return waitNanos;
+                    }
+                    if(overflowBuckets.compareAndSet(index, arrival, next)) {
+                        return 0;
+                    }
+                }
+            }
+            AtomicLong created = new AtomicLong(Long.MIN_VALUE);
+            bucket = buckets.putIfAbsent(key, created);
+            if(bucket == null) {
+                bucket = created;
+            }
+        }
+        while(true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long waitNanos = next - now - capacityNanos;
+            if(waitNanos > 0) {
+                return waitNanos;
+            }
+            if(bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes every bucket that has refilled completely.
+     * @return Returns the number of evicted buckets.
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        Iterator<Map.Entry<Object, AtomicLong>> iterator = buckets.entrySet().iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next().getValue().get() <= now) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return Returns the number of keys with a bucket of their own.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
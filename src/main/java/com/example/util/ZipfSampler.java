@@ -0,0 +1,119 @@
+package com.example.util;
+
+import java.util.Random;
+
+/**
+ * ZipfSampler draws ranks between 1 and n where rank k is drawn with a probability proportional to 1 / k^exponent,
+ * so a few ranks are drawn very often and most are drawn rarely, like the posters of a real social network.
+ *
+ * Sampling uses rejection-inversion (Hörmann and Derflinger, "Rejection-inversion to generate variates from
+ * monotone discrete distributions", 1996), which needs constant time and memory per sample regardless of n.
+ * Instances are immutable; pass each thread its own Random.
+ */
+public class ZipfSampler {
+    /**
+     * The number of ranks.
+     */
+    private final int numberOfElements;
+    /**
+     * The skew of the distribution. 0 is uniform, larger values concentrate the samples on the first ranks.
+     */
+    private final double exponent;
+    /**
+     * hIntegral(1.5) - 1, the upper end of the sampled range.
+     */
+    private final double hIntegralX1;
+    /**
+     * hIntegral(n + 0.5), the lower end of the sampled range.
+     */
+    private final double hIntegralNumberOfElements;
+    /**
+     * Accepts a sample right away when it is this close to its rank.
+     */
+    private final double squeeze;
+
+    /**
+     * Parameterized constructor that precomputes the bounds of the sampled range.
+     * @param numberOfElements The number of ranks.
+     * @param exponent The skew of the distribution, at least 0.
+     */
+    public ZipfSampler(int numberOfElements, double exponent) {
+        if(numberOfElements <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("A Zipf distribution needs a positive size and a non-negative exponent.");
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /**
+     * Draws a rank.
+     * @param  random The source of randomness.
+     * @return Returns a rank between 1 and numberOfElements.
+     */
+    public int sample(Random random) {
+        while(true) {
+            double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if(k < 1) {
+                k = 1;
+            }
+            else if(k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if(k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    /**
+     * The integral of h, (x^(1 - exponent) - 1) / (1 - exponent), computed without cancellation near exponent 1.
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    /**
+     * The unnormalized probability of rank x, x^-exponent.
+     */
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    /**
+     * The inverse of hIntegral.
+     */
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if(t < -1) {
+            // Only reached through rounding errors near the lower end of the range.
+            t = -1;
+        }
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    /**
+     * log(1 + x) / x, with its Taylor series near 0.
+     */
+    private static double log1pOverX(double x) {
+        if(Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * (e^x - 1) / x, with its Taylor series near 0.
+     */
+    private static double expm1OverX(double x) {
+        if(Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
@@ -1,3 +1,8 @@
+drop table if exists message_import;
+drop table if exists message_tombstone;
+drop table if exists message_archive;
+drop table if exists message_change;
+drop table if exists idempotency_key;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -12,6 +17,46 @@ create table message (
     timePostedEpoch bigint,
     foreign key (postedBy) references account(accountId)
 );
+-- Time-range queries scan these instead of the whole message table.
+create index message_time_posted_idx on message (timePostedEpoch);
+create index message_posted_by_time_idx on message (postedBy, timePostedEpoch);
+create table idempotency_key (
+    idempotencyKey varchar(300) primary key,
+    requestHash varchar(44),
+    status int,
+    body clob,
+    createdAt bigint
+);
+create table message_archive (
+    messageId int primary key,
+    postedBy int,
+    messageText varchar(255),
+    timePostedEpoch bigint,
+    archivedAt bigint
+);
+create table message_change (
+    changeSeq bigint primary key,
+    changeType varchar(10) not null,
+    messageId int not null,
+    postedBy int,
+    messageText varchar(255),
+    timePostedEpoch bigint
+);
+-- Resume position of every bulk import, updated in the same transaction as each imported batch.
+create table message_import (
+    importKey varchar(1000) primary key,
+    byteOffset bigint not null,
+    lineNumber bigint not null,
+    importedRows bigint not null,
+    rejectedRows bigint not null,
+    completed boolean not null,
+    updatedAt bigint not null
+);
+-- Messages deleted in soft-delete mode, hidden from reads until the compactor deletes them from message.
+create table message_tombstone (
+    messageId int primary key,
+    deletedAt bigint not null
+);
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
@@ -0,0 +1,11 @@
+-- Message table of one shard, run on every shard at startup when app.sharding.init-schema is true.
+-- messageId comes from hibernate_sequence in the primary database, so it is not generated here.
+drop table if exists message;
+create table message (
+    messageId int primary key,
+    postedBy int,
+    messageText varchar(255),
+    timePostedEpoch bigint
+);
+create index message_time_posted_idx on message (timePostedEpoch);
+create index message_posted_by_time_idx on message (postedBy, timePostedEpoch);
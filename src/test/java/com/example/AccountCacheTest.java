@@ -0,0 +1,137 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class AccountCacheTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    Statistics statistics;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient. The Hibernate statistics
+     * of the app are used to count the SQL statements issued for each request.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending POST localhost:8080/login twice with the same username
+     *
+     * Expected Result:
+     *  Both logins succeed, and the second one is answered from the query and second-level caches without any SQL
+     */
+    @Test
+    public void repeatedLoginIssuesNoSql() throws IOException, InterruptedException {
+        String json = "{\"username\":\"testuser1\",\"password\":\"password\"}";
+        Assertions.assertEquals(200, post("/login", json).statusCode());
+        long statements = statistics.getPrepareStatementCount();
+        long queryCacheHits = statistics.getQueryCacheHitCount();
+        long entityCacheHits = statistics.getSecondLevelCacheHitCount();
+
+        Assertions.assertEquals(200, post("/login", json).statusCode());
+        Assertions.assertEquals(statements, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(queryCacheHits + 1, statistics.getQueryCacheHitCount());
+        Assertions.assertEquals(entityCacheHits + 1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    /**
+     * Logging in, soft-deleting a message and logging in again
+     *
+     * Expected Result:
+     *  The tombstone insert only invalidates its own table, so the second login still issues no SQL
+     */
+    @Test
+    public void softDeleteKeepsAccountCache() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--app.soft-delete.enabled=true");
+        statistics = app.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        Thread.sleep(500);
+        String json = "{\"username\":\"testuser1\",\"password\":\"password\"}";
+        Assertions.assertEquals(200, post("/login", json).statusCode());
+        HttpRequest delete = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/9999"))
+                .DELETE().build();
+        Assertions.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        long statements = statistics.getPrepareStatementCount();
+
+        Assertions.assertEquals(200, post("/login", json).statusCode());
+        Assertions.assertEquals(statements, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Sending POST localhost:8080/messages twice for the same account
+     *
+     * Expected Result:
+     *  The account check of the second message is answered from the caches, so only the insert reaches the database
+     */
+    @Test
+    public void repeatedPosterLookupIssuesNoQuery() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        Assertions.assertEquals(200, post("/messages", json).statusCode());
+        long queries = statistics.getQueryExecutionCount();
+        long entityLoads = statistics.getEntityLoadCount();
+        long queryCacheHits = statistics.getQueryCacheHitCount();
+
+        Assertions.assertEquals(200, post("/messages", json).statusCode());
+        Assertions.assertEquals(queries, statistics.getQueryExecutionCount());
+        Assertions.assertEquals(entityLoads, statistics.getEntityLoadCount());
+        Assertions.assertEquals(queryCacheHits + 1, statistics.getQueryCacheHitCount());
+    }
+
+    /**
+     * Logging in as an unknown user, registering that user and logging in again
+     *
+     * Expected Result:
+     *  The cached empty result of the first login is invalidated by the registration, so the second login succeeds
+     */
+    @Test
+    public void registrationInvalidatesCachedLookup() throws IOException, InterruptedException {
+        String json = "{\"username\":\"cacheduser\",\"password\":\"password\"}";
+        Assertions.assertEquals(401, post("/login", json).statusCode());
+        Assertions.assertEquals(401, post("/login", json).statusCode());
+        Assertions.assertEquals(200, post("/register", json).statusCode());
+        Assertions.assertEquals(200, post("/login", json).statusCode());
+    }
+
+    /**
+     * Sends a JSON body to a POST endpoint.
+     * @param  path The path of the endpoint.
+     * @param  json The request body.
+     * @return Returns the response.
+     */
+    private HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
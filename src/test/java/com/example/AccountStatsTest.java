@@ -0,0 +1,109 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountStatsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/stats
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the aggregates of the seeded message
+     */
+    @Test
+    public void getAccountStatsSeededAccount() throws IOException, InterruptedException {
+        JsonNode stats = getStats(9999);
+        Assertions.assertEquals(9999, stats.get("accountId").asInt());
+        Assertions.assertEquals(1, stats.get("messageCount").asLong());
+        Assertions.assertEquals(1669947792L, stats.get("firstPostEpoch").asLong());
+        Assertions.assertEquals(1669947792L, stats.get("lastPostEpoch").asLong());
+        Assertions.assertEquals(0, stats.get("postsLast24h").asLong());
+    }
+
+    /**
+     * Posting and deleting messages after the stats of an account were loaded should update them incrementally.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the aggregates including the new message, then excluding the deleted one
+     */
+    @Test
+    public void getAccountStatsAfterCreateAndDelete() throws IOException, InterruptedException {
+        getStats(9998);
+        long now = System.currentTimeMillis() / 1000;
+        String json = "{\"postedBy\":9998,\"messageText\": \"fresh post\",\"timePostedEpoch\": " + now + "}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> postResponse = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, postResponse.statusCode());
+        int messageId = objectMapper.readTree(postResponse.body()).get("messageId").asInt();
+
+        JsonNode stats = getStats(9998);
+        Assertions.assertEquals(1, stats.get("messageCount").asLong());
+        Assertions.assertEquals(now, stats.get("firstPostEpoch").asLong());
+        Assertions.assertEquals(now, stats.get("lastPostEpoch").asLong());
+        Assertions.assertEquals(1, stats.get("postsLast24h").asLong());
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        stats = getStats(9998);
+        Assertions.assertEquals(0, stats.get("messageCount").asLong());
+        Assertions.assertTrue(stats.get("firstPostEpoch").isNull());
+        Assertions.assertEquals(0, stats.get("postsLast24h").asLong());
+    }
+
+    private JsonNode getStats(int accountId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/stats"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class BinaryContentNegotiationTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    ObjectMapper smileMapper;
+    ObjectMapper cborMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and one ObjectMapper per
+     * format for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        smileMapper = new ObjectMapper(new SmileFactory());
+        cborMapper = new ObjectMapper(new CBORFactory());
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/x-jackson-smile
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Content-Type: application/x-jackson-smile
+     *  Response Body: Smile encoded list of the same messages the JSON representation holds, in fewer bytes
+     */
+    @Test
+    public void getAllMessagesAsSmile() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = getMessages("application/x-jackson-smile");
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals("application/x-jackson-smile", response.headers().firstValue("Content-Type").orElse(""));
+        List<Message> actualResult = smileMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(seededMessages(), actualResult);
+        Assertions.assertTrue(response.body().length < getMessages("application/json").body().length);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Content-Type: application/cbor
+     *  Response Body: CBOR encoded list of the same messages the JSON representation holds, in fewer bytes
+     */
+    @Test
+    public void getAllMessagesAsCbor() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = getMessages("application/cbor");
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElse(""));
+        List<Message> actualResult = cborMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(seededMessages(), actualResult);
+        Assertions.assertTrue(response.body().length < getMessages("application/json").body().length);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a CBOR body and Accept: application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: CBOR representation of the created message
+     */
+    @Test
+    public void createMessageFromCbor() throws IOException, InterruptedException {
+        byte[] body = cborMapper.writeValueAsBytes(
+                Map.of("postedBy", 9999, "messageText", "hello cbor", "timePostedEpoch", 1669947792L));
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/cbor")
+                .header("Accept", "application/cbor")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Message actualResult = cborMapper.readValue(response.body(), Message.class);
+        Assertions.assertEquals("hello cbor", actualResult.getMessageText());
+        Assertions.assertEquals(9999, actualResult.getPostedBy());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a Smile body holding an unknown field
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageFromSmileUnknownField() throws IOException, InterruptedException {
+        byte[] body = smileMapper.writeValueAsBytes(
+                Map.of("postedBy", 9999, "messageText", "hello smile", "admin", true));
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/x-jackson-smile")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sends GET localhost:8080/messages with the given Accept header.
+     * @param  accept The media type to request.
+     * @return Returns the raw response.
+     */
+    private HttpResponse<byte[]> getMessages(String accept) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", accept)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * @return Returns the messages inserted by data.sql, ordered by messageId.
+     */
+    private List<Message> seededMessages() {
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expectedResult.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        return expectedResult;
+    }
+}
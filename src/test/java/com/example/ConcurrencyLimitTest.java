@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class ConcurrencyLimitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database and restart the app with both concurrency limits fixed at two
+     * requests, so one write of normal priority uses up the share of the others.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] { "--app.concurrency.initial-limit=2", "--app.concurrency.min-limit=2",
+                "--app.concurrency.max-limit=2" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * While a PATCH waits for a row lock held by another transaction, further message writes are shed with 503,
+     * but logging in and reading are still admitted.
+     */
+    @Test
+    public void shedsLowerPriorityWritesFirst() throws Exception {
+        try(Connection connection = app.getBean(DataSource.class).getConnection()) {
+            connection.setAutoCommit(false);
+            try(Statement statement = connection.createStatement()) {
+                statement.executeUpdate("update message set messageText = 'locked' where messageId = 9999");
+            }
+            CompletableFuture<HttpResponse<String>> blocked = webClient.sendAsync(
+                    request("PATCH", "/messages/9999", "{\"messageText\":\"waiting\"}"),
+                    HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(300);
+
+            HttpResponse<String> shed = send("POST", "/messages",
+                    "{\"postedBy\":9998,\"messageText\":\"shed\",\"timePostedEpoch\":1}");
+            Assertions.assertEquals(503, shed.statusCode(), shed.body());
+            Assertions.assertEquals("1", shed.headers().firstValue("Retry-After").orElse(null));
+
+            HttpResponse<String> login = send("POST", "/login",
+                    "{\"username\":\"testuser1\",\"password\":\"password\"}");
+            Assertions.assertEquals(200, login.statusCode(), login.body());
+            Assertions.assertEquals(200, send("GET", "/messages", null).statusCode());
+
+            connection.rollback();
+            blocked.get();
+        }
+        Assertions.assertEquals(200, send("POST", "/messages",
+                "{\"postedBy\":9998,\"messageText\":\"admitted\",\"timePostedEpoch\":1}").statusCode());
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        return webClient.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,5 +1,6 @@
 package com.example;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
@@ -126,4 +127,63 @@ public class CreateMessageTest {
         int status = response.statusCode();
         Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a one megabyte body
+     *
+     * Expected Response:
+     *  Status Code: 413
+     */
+    @Test
+    public void createMessagePayloadTooLarge() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"messageText\": \"" + "a".repeat(1024 * 1024) + "\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(413, status, "Expected Status Code 413 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a one megabyte body and no Content-Length
+     *
+     * Expected Response:
+     *  Status Code: 413
+     */
+    @Test
+    public void createMessageChunkedPayloadTooLarge() throws IOException, InterruptedException {
+        byte[] json = ("{\"postedBy\":9999,\"messageText\": \"" + "a".repeat(1024 * 1024) + "\"}").getBytes();
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(json)))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(413, status, "Expected Status Code 413 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a field that Message does not have
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Response Body: the name of the unknown field
+     */
+    @Test
+    public void createMessageUnknownField() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"isAdmin\": true,\"messageText\": \"hello\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+        Assertions.assertEquals("Unknown message field: isAdmin", response.body());
+    }
 }
@@ -0,0 +1,99 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DataGeneratorTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Before every test, reset the database, restart the app with the generator enabled for a small data set, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.generator.enabled=true", "--app.generator.accounts=1000",
+                "--app.generator.messages=20000", "--app.generator.batch-size=1500" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        jdbcTemplate = new JdbcTemplate(app.getBean(DataSource.class));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * The generator adds the configured number of accounts and messages next to the rows of data.sql, with texts
+     * between 1 and 255 characters and posters skewed towards a few accounts.
+     */
+    @Test
+    public void generatesSkewedDataSet() {
+        Assertions.assertEquals(1004, jdbcTemplate.queryForObject("select count(*) from account", Integer.class));
+        Assertions.assertEquals(20003, jdbcTemplate.queryForObject("select count(*) from message", Integer.class));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from message "
+                + "where length(trim(messageText)) = 0 or length(messageText) > 255", Integer.class));
+
+        List<Map<String, Object>> posters = jdbcTemplate.queryForList("select postedBy, count(*) as posts "
+                + "from message group by postedBy order by posts desc");
+        long busiest = ((Number) posters.get(0).get("posts")).longValue();
+        long median = ((Number) posters.get(posters.size() / 2).get("posts")).longValue();
+        Assertions.assertTrue(busiest > 2000, "busiest poster has " + busiest + " messages");
+        Assertions.assertTrue(busiest > 50 * median, "busiest=" + busiest + ", median=" + median);
+    }
+
+    /**
+     * Generated accounts can log in, and messages created afterwards get ids past the generated ones.
+     */
+    @Test
+    public void generatedAccountsAreUsable() throws IOException, InterruptedException {
+        int accountId = jdbcTemplate.queryForObject("select min(accountId) from account where username like 'user%'",
+                Integer.class);
+        HttpRequest login = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"user" + accountId + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(login, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":" + accountId + ",\"messageText\":\"after seeding\",\"timePostedEpoch\":1}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(post, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Message created = objectMapper.readValue(response.body(), Message.class);
+        int maxGenerated = jdbcTemplate.queryForObject("select max(messageId) from message where messageId <> ?",
+                Integer.class, created.getMessageId());
+        Assertions.assertTrue(created.getMessageId() > maxGenerated, response.body());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GroupCommitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database and restart the app with group commit enabled.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.group-commit.enabled=true", "--app.group-commit.max-delay-ms=50"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending ten concurrent http requests to POST localhost:8080/messages with group commit enabled
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, each with its own messageId
+     *  Every message is visible through GET localhost:8080/messages afterwards
+     *  The batch size metric recorded at least one batch
+     */
+    @Test
+    public void createMessagesGroupCommitted() throws IOException, InterruptedException {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            String json = "{\"postedBy\":9999,\"messageText\": \"batched " + i + "\",\"timePostedEpoch\": 1669947792}";
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .header("Content-Type", "application/json")
+                    .build();
+            responses.add(webClient.sendAsync(postMessageRequest, HttpResponse.BodyHandlers.ofString()));
+        }
+        Set<Integer> messageIds = new HashSet<>();
+        for(CompletableFuture<HttpResponse<String>> future : responses) {
+            HttpResponse<String> response = future.join();
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: "
+                    + response.statusCode());
+            messageIds.add(objectMapper.readValue(response.body(), Message.class).getMessageId());
+        }
+        Assertions.assertEquals(10, messageIds.size(), "Every message should have its own messageId.");
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        List<Message> allMessages = objectMapper.readValue(
+                webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body(),
+                new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(13, allMessages.size());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/metrics/app.group_commit.batch.size"))
+                .build();
+        JsonNode metrics = objectMapper.readTree(webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body());
+        Assertions.assertTrue(metrics.get("measurements").get(0).get("value").asDouble() >= 1,
+                "Expected at least one recorded batch.");
+    }
+}
@@ -0,0 +1,163 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class IdempotencyKeyTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending five concurrent http requests to POST localhost:8080/messages with the same Idempotency-Key,
+     * followed by a sequential retry.
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, all with the same message
+     *  Only one message is added to the database
+     */
+    @Test
+    public void createMessageWithIdempotencyKey() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"messageText\": \"retried message\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "c0ffee")
+                .build();
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for(int i = 0; i < 5; i++) {
+            futures.add(webClient.sendAsync(postMessageRequest, HttpResponse.BodyHandlers.ofString()));
+        }
+        futures.add(CompletableFuture.completedFuture(
+                webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString())));
+        Message expectedResult = null;
+        for(CompletableFuture<HttpResponse<String>> future : futures) {
+            HttpResponse<String> response = future.join();
+            Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: "
+                    + response.statusCode());
+            Message actualResult = objectMapper.readValue(response.body(), Message.class);
+            if(expectedResult == null) {
+                expectedResult = actualResult;
+            }
+            Assertions.assertEquals(expectedResult, actualResult);
+        }
+
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        List<Message> allMessages = objectMapper.readValue(
+                webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).body(),
+                new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(4, allMessages.size(), "Only one message should have been added.");
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/register twice with the same Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 for both requests, the retry replays the original account without its password instead of
+     *  returning 409
+     */
+    @Test
+    public void registerAccountWithIdempotencyKey() throws IOException, InterruptedException {
+        String json = "{\"username\":\"user\",\"password\":\"password\"}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "register-user")
+                .build();
+        HttpResponse<String> response1 = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response2 = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response1.statusCode());
+        Assertions.assertEquals(200, response2.statusCode(), "Expected Status Code 200 - Actual Code was: "
+                + response2.statusCode());
+        Account registered = objectMapper.readValue(response1.body(), Account.class);
+        Account replayed = objectMapper.readValue(response2.body(), Account.class);
+        Assertions.assertEquals(registered.getAccountId(), replayed.getAccountId());
+        Assertions.assertEquals(registered.getUsername(), replayed.getUsername());
+        Assertions.assertEquals("password", registered.getPassword());
+        Assertions.assertNull(replayed.getPassword(), "A replay must not return the password.");
+        Assertions.assertEquals("true", response2.headers().firstValue("Idempotent-Replayed").orElse(null));
+    }
+
+    /**
+     * Reusing an Idempotency-Key with a different body is rejected, and the same key is independent per posting
+     * account.
+     *
+     * Expected Response:
+     *  Status Code: 422 for the different body on /register and /messages, 200 for the same key of another
+     *  account
+     */
+    @Test
+    public void reusedIdempotencyKeyWithDifferentRequest() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, post("/register", "{\"username\":\"user\",\"password\":\"password\"}",
+                "shared").statusCode());
+        HttpResponse<String> guessed = post("/register", "{\"username\":\"other\",\"password\":\"secret\"}",
+                "shared");
+        Assertions.assertEquals(422, guessed.statusCode());
+        Assertions.assertFalse(guessed.body().contains("password"));
+
+        HttpResponse<String> first = post("/messages",
+                "{\"postedBy\":9999,\"messageText\":\"first\",\"timePostedEpoch\":1669947792}", "shared");
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals(422, post("/messages",
+                "{\"postedBy\":9999,\"messageText\":\"second\",\"timePostedEpoch\":1669947792}", "shared")
+                .statusCode());
+        HttpResponse<String> otherAccount = post("/messages",
+                "{\"postedBy\":9998,\"messageText\":\"first\",\"timePostedEpoch\":1669947792}", "shared");
+        Assertions.assertEquals(200, otherAccount.statusCode());
+        Assertions.assertNotEquals(objectMapper.readValue(first.body(), Message.class).getMessageId(),
+                objectMapper.readValue(otherAccount.body(), Message.class).getMessageId());
+    }
+
+    private HttpResponse<String> post(String path, String json, String idempotencyKey)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", idempotencyKey)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class LatestMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app with room for four messages in the ring, and create
+     * a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.latest.capacity=4" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * GET /messages?latest=N returns the newest messages first, and follows creates, updates and deletes.
+     */
+    @Test
+    public void latestMessagesFollowChanges() throws Exception {
+        Assertions.assertEquals(List.of(9999, 9997), latestIds(2));
+
+        Message created = objectMapper.readValue(send("POST", "/messages",
+                "{\"postedBy\":9999,\"messageText\":\"newest\",\"timePostedEpoch\":1669947792}").body(),
+                Message.class);
+        Assertions.assertEquals(List.of(created.getMessageId(), 9999), latestIds(2));
+
+        Assertions.assertEquals(200, send("PATCH", "/messages/" + created.getMessageId(),
+                "{\"messageText\":\"edited\"}").statusCode());
+        List<Message> latest = latest(1);
+        Assertions.assertEquals("edited", latest.get(0).getMessageText());
+        Assertions.assertEquals(9999, latest.get(0).getPostedBy());
+        Assertions.assertEquals(1669947792L, latest.get(0).getTimePostedEpoch());
+
+        Assertions.assertEquals(200, send("DELETE", "/messages/9999", null).statusCode());
+        Assertions.assertEquals(List.of(created.getMessageId(), 9997), latestIds(2));
+    }
+
+    /**
+     * Counts over the capacity return the messages the ring holds, the oldest leave it as new ones arrive, and
+     * sparse fieldsets apply.
+     */
+    @Test
+    public void latestMessagesAreBoundedByTheCapacity() throws Exception {
+        int newest = 0;
+        for(int i = 0; i < 3; i++) {
+            newest = objectMapper.readValue(send("POST", "/messages",
+                    "{\"postedBy\":9999,\"messageText\":\"post " + i + "\",\"timePostedEpoch\":1669947792}").body(),
+                    Message.class).getMessageId();
+        }
+        List<Integer> ids = latestIds(100);
+        Assertions.assertEquals(4, ids.size());
+        Assertions.assertEquals(newest, ids.get(0));
+        Assertions.assertFalse(ids.contains(9996));
+
+        HttpResponse<String> sparse = send("GET", "/messages?latest=1&fields=messageId", null);
+        JsonNode message = objectMapper.readTree(sparse.body()).get(0);
+        Assertions.assertEquals(newest, message.get("messageId").asInt());
+        Assertions.assertNull(message.get("messageText"));
+
+        Assertions.assertEquals(400, send("GET", "/messages?latest=0", null).statusCode());
+    }
+
+    private List<Message> latest(int count) throws Exception {
+        HttpResponse<String> response = send("GET", "/messages?latest=" + count, null);
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {});
+    }
+
+    private List<Integer> latestIds(int count) throws Exception {
+        return latest(count).stream().map(Message::getMessageId).collect(Collectors.toList());
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if(json == null) {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        else {
+            request.method(method, HttpRequest.BodyPublishers.ofString(json)).header("Content-Type",
+                    "application/json");
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageChangesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Creating, updating and deleting a message, then sending an http request to
+     * GET localhost:8080/messages/changes?since=0 and paging through it with limit=2.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an UPSERT with the new text, then a DELETE tombstone for the message, split over two pages
+     */
+    @Test
+    public void getChangesSinceWithTombstone() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9999,\"messageText\": \"synced message\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> postResponse = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, postResponse.statusCode());
+        int messageId = objectMapper.readTree(postResponse.body()).get("messageId").asInt();
+
+        HttpRequest patchMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"edited message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(patchMessageRequest, HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+        HttpRequest deleteMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(deleteMessageRequest, HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+
+        JsonNode firstPage = getChanges("?since=0&limit=2");
+        Assertions.assertTrue(firstPage.get("hasMore").asBoolean());
+        Assertions.assertEquals(2, firstPage.get("changes").size());
+        JsonNode update = firstPage.get("changes").get(1);
+        Assertions.assertEquals("UPSERT", update.get("changeType").asText());
+        Assertions.assertEquals(messageId, update.get("messageId").asInt());
+        Assertions.assertEquals("edited message", update.get("messageText").asText());
+
+        JsonNode secondPage = getChanges("?since=" + firstPage.get("nextSince").asLong() + "&limit=2");
+        Assertions.assertFalse(secondPage.get("hasMore").asBoolean());
+        Assertions.assertEquals(1, secondPage.get("changes").size());
+        JsonNode tombstone = secondPage.get("changes").get(0);
+        Assertions.assertEquals("DELETE", tombstone.get("changeType").asText());
+        Assertions.assertEquals(messageId, tombstone.get("messageId").asInt());
+        Assertions.assertNull(tombstone.get("messageText"));
+
+        JsonNode caughtUp = getChanges("?since=" + secondPage.get("nextSince").asLong());
+        Assertions.assertEquals(0, caughtUp.get("changes").size());
+        Assertions.assertEquals(secondPage.get("nextSince").asLong(), caughtUp.get("nextSince").asLong());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/changes?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getChangesWithInvalidLimit() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/changes?limit=0"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode(), "Expected Status Code 400 - Actual Code was: "
+                + response.statusCode());
+    }
+
+    private JsonNode getChanges(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/changes" + query))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), "Expected Status Code 200 - Actual Code was: "
+                + response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.dto.ImportReport;
+import com.example.entity.Message;
+import com.example.service.MessageImportService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageImportTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+    MessageImportService importService;
+    Path directory;
+
+    /**
+     * Before every test, reset the database, restart the app with small import batches, and create a new webClient
+     * and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException, IOException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.import.batch-size=2", "--app.import.parse-workers=2" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        jdbcTemplate = new JdbcTemplate(app.getBean(DataSource.class));
+        importService = app.getBean(MessageImportService.class);
+        directory = Files.createTempDirectory("import");
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Valid NDJSON lines are imported in file order, and the invalid ones are listed in the .rejected file with
+     * their line numbers.
+     */
+    @Test
+    public void importsNdjsonAndRejectsInvalidRows() throws IOException, InterruptedException {
+        Path file = directory.resolve("messages.ndjson");
+        Files.writeString(file, String.join("\n",
+                "{\"postedBy\":9999,\"messageText\":\"first\",\"timePostedEpoch\":1}",
+                "{\"postedBy\":9999,\"messageText\":\"\",\"timePostedEpoch\":2}",
+                "{\"postedBy\":12345,\"messageText\":\"unknown poster\",\"timePostedEpoch\":3}",
+                "",
+                "{\"postedBy\":9999,\"messageText\":",
+                "{\"postedBy\":9999,\"messageText\":\"second\",\"timePostedEpoch\":4}",
+                "{\"postedBy\":9999,\"messageText\":\"third\",\"timePostedEpoch\":5}"));
+
+        ImportReport report = importService.importFile(file);
+        Assertions.assertEquals(3, report.getImportedRows());
+        Assertions.assertEquals(3, report.getRejectedRows());
+        Assertions.assertEquals(7, report.getLineNumber());
+        Assertions.assertEquals(Files.size(file), report.getByteOffset());
+
+        List<String> rejected = Files.readAllLines(directory.resolve("messages.ndjson.rejected"));
+        Assertions.assertEquals(3, rejected.size());
+        Assertions.assertEquals(List.of(2, 3, 5), List.of(objectMapper.readTree(rejected.get(0)).get("line").asInt(),
+                objectMapper.readTree(rejected.get(1)).get("line").asInt(),
+                objectMapper.readTree(rejected.get(2)).get("line").asInt()));
+
+        List<Message> messages = messagesOf(9999);
+        Assertions.assertEquals(List.of("first", "second", "third"),
+                messages.stream().map(Message::getMessageText).filter(text -> !text.startsWith("test message"))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * CSV files are read by their header, with quoted fields that contain commas and quotes.
+     */
+    @Test
+    public void importsCsvWithQuotedFields() throws IOException {
+        Path file = directory.resolve("messages.csv");
+        Files.writeString(file, "messageId,messageText,postedBy,timePostedEpoch\r\n"
+                + "1,\"hello, \"\"world\"\"\",9998,10\r\n"
+                + "2,plain,9998,\r\n"
+                + "3,no poster,,11\r\n", StandardCharsets.UTF_8);
+
+        ImportReport report = importService.importFile(file);
+        Assertions.assertEquals(2, report.getImportedRows());
+        Assertions.assertEquals(1, report.getRejectedRows());
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from message "
+                + "where postedBy = 9998 and messageText = 'hello, \"world\"' and timePostedEpoch = 10", Integer.class));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("select count(*) from message "
+                + "where postedBy = 9998 and messageText = 'plain' and timePostedEpoch is null", Integer.class));
+    }
+
+    /**
+     * An import resumes from its checkpoint, and an import that completed imports nothing when run again.
+     */
+    @Test
+    public void resumesFromCheckpoint() throws IOException {
+        Path file = directory.resolve("resume.ndjson");
+        String done = "{\"postedBy\":9997,\"messageText\":\"before crash\",\"timePostedEpoch\":1}\n";
+        Files.writeString(file, done + done
+                + "{\"postedBy\":9997,\"messageText\":\"after crash\",\"timePostedEpoch\":2}\n");
+        jdbcTemplate.update("insert into message_import (importKey, byteOffset, lineNumber, importedRows, "
+                + "rejectedRows, completed, updatedAt) values (?, ?, 2, 2, 0, false, 0)",
+                file.toAbsolutePath().normalize().toString(), 2 * done.length());
+
+        ImportReport report = importService.importFile(file);
+        Assertions.assertEquals(2 * done.length(), report.getResumedFromOffset());
+        Assertions.assertEquals(3, report.getImportedRows());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from message where messageText = 'before crash'", Integer.class));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from message where messageText = 'after crash'", Integer.class));
+
+        report = importService.importFile(file);
+        Assertions.assertEquals(Files.size(file), report.getResumedFromOffset());
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from message where messageText = 'after crash'", Integer.class));
+    }
+
+    /**
+     * Imported messages are logged to the change feed, and account stats loaded before the import are reconciled
+     * once it finishes.
+     */
+    @Test
+    public void importUpdatesChangeFeedAndStats() throws IOException, InterruptedException {
+        Assertions.assertEquals(0, getJson("/accounts/9998/stats").get("messageCount").asLong());
+        Path file = directory.resolve("feed.ndjson");
+        Files.writeString(file, "{\"postedBy\":9998,\"messageText\":\"imported 1\",\"timePostedEpoch\":1}\n"
+                + "{\"postedBy\":9998,\"messageText\":\"imported 2\",\"timePostedEpoch\":2}\n"
+                + "{\"postedBy\":9998,\"messageText\":\"imported 3\",\"timePostedEpoch\":3}\n");
+
+        importService.importFile(file);
+        JsonNode changes = getJson("/messages/changes?since=0").get("changes");
+        Assertions.assertEquals(3, changes.size());
+        for(int i = 0; i < 3; i++) {
+            Assertions.assertEquals("UPSERT", changes.get(i).get("changeType").asText());
+            Assertions.assertEquals("imported " + (i + 1), changes.get(i).get("messageText").asText());
+        }
+        Assertions.assertEquals(3, getJson("/accounts/9998/stats").get("messageCount").asLong());
+    }
+
+    /**
+     * @return Returns the JSON response body of a GET request, after checking for a 200 status.
+     */
+    private JsonNode getJson(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    /**
+     * @return Returns the messages of an account from the API.
+     */
+    private List<Message> messagesOf(int accountId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {});
+    }
+}
@@ -0,0 +1,119 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class MessageJsonCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper for
+     * interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        meterRegistry = app.getBean(MeterRegistry.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A repeated listing is written from the cached encodings and is identical to the first one.
+     */
+    @Test
+    public void repeatedListingIsServedFromTheCache() throws Exception {
+        String first = get("/messages").body();
+        double hitsBefore = lookups("hit");
+        String second = get("/messages").body();
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(hitsBefore + 3, lookups("hit"));
+
+        JsonNode messages = objectMapper.readTree(second);
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals(9999, messages.get(2).get("messageId").asInt());
+        Assertions.assertEquals(4, messages.get(2).size());
+
+        JsonNode sparse = objectMapper.readTree(get("/messages?fields=messageId").body());
+        Assertions.assertEquals(1, sparse.get(0).size());
+    }
+
+    /**
+     * An updated message is written with its new text, not its cached encoding.
+     */
+    @Test
+    public void updatedMessageIsEncodedAgain() throws Exception {
+        Assertions.assertEquals(get("/messages/9999").body(), get("/messages/9999").body());
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed text\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals("changed text",
+                objectMapper.readTree(get("/messages/9999").body()).get("messageText").asText());
+        Assertions.assertEquals("changed text",
+                objectMapper.readTree(get("/messages").body()).get(2).get("messageText").asText());
+    }
+
+    /**
+     * Once the cache is full of older messages, a newly created message still gets cached and hits.
+     */
+    @Test
+    public void newMessageIsCachedWhenFull() throws Exception {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--app.json-cache.max-entries=3");
+        meterRegistry = app.getBean(MeterRegistry.class);
+        Thread.sleep(500);
+        Assertions.assertEquals(3, objectMapper.readTree(get("/messages").body()).size());
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9998,\"messageText\":\"fresh message\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        String first = get("/accounts/9998/messages").body();
+        double hitsBefore = lookups("hit");
+        Assertions.assertEquals(first, get("/accounts/9998/messages").body());
+        Assertions.assertEquals(hitsBefore + 1, lookups("hit"));
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response;
+    }
+
+    private double lookups(String outcome) {
+        return meterRegistry.get("app.json_cache.lookups").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class MessageStreamTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Opening GET localhost:8080/messages/stream?postedBy=9999 with a Last-Event-ID of 0 after a message was
+     * posted, then posting messages for two accounts.
+     *
+     * Expected Response:
+     *  The earlier message is replayed with event id 1
+     *  The message of account 9998 is filtered out and the new message of account 9999 is streamed with id 3
+     */
+    @Test
+    public void streamMessagesResumeAndFilter() throws Exception {
+        Assertions.assertEquals(200, postMessage(9999, "before subscribe").statusCode());
+
+        HttpRequest streamRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/stream?postedBy=9999"))
+                .header("Last-Event-ID", "0")
+                .build();
+        HttpResponse<Stream<String>> stream = webClient.sendAsync(streamRequest, HttpResponse.BodyHandlers.ofLines())
+                .get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(200, stream.statusCode());
+        Iterator<String> lines = stream.body().iterator();
+
+        Assertions.assertEquals("id:1", nextLine(lines, "id:"));
+        Assertions.assertEquals("event:created", nextLine(lines, "event:"));
+        Assertions.assertTrue(nextLine(lines, "data:").contains("before subscribe"));
+
+        Assertions.assertEquals(200, postMessage(9998, "other account").statusCode());
+        Assertions.assertEquals(200, postMessage(9999, "after subscribe").statusCode());
+
+        Assertions.assertEquals("id:3", nextLine(lines, "id:"));
+        Assertions.assertEquals("event:created", nextLine(lines, "event:"));
+        Assertions.assertTrue(nextLine(lines, "data:").contains("after subscribe"));
+    }
+
+    private String nextLine(Iterator<String> lines, String prefix) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            while(lines.hasNext()) {
+                String line = lines.next();
+                if(line.startsWith(prefix)) {
+                    return line;
+                }
+            }
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private HttpResponse<String> postMessage(int postedBy, String text) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"" + text + "\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
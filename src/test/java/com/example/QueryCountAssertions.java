@@ -0,0 +1,71 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Test utility that sends a request to the running app and asserts the exact number of SQL statements it
+ * executed, as reported by the X-Query-Count response header. A change that adds a query to an endpoint, such as
+ * an N+1 select, fails the build instead of slowing production down.
+ */
+public final class QueryCountAssertions {
+    private QueryCountAssertions() {
+    }
+
+    /**
+     * Sends a request and asserts its status code and statement count.
+     * @param  webClient The client to send the request with.
+     * @param  request The request.
+     * @param  expectedStatus The expected status code.
+     * @param  expectedQueries The exact number of statements the request must execute.
+     * @return Returns the response for further assertions.
+     */
+    public static HttpResponse<String> assertQueryCount(HttpClient webClient, HttpRequest request, int expectedStatus,
+            int expectedQueries) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        String endpoint = request.method() + " " + request.uri().getPath();
+        Assertions.assertEquals(expectedStatus, response.statusCode(), endpoint + " returned " + response.body());
+        String count = response.headers().firstValue("X-Query-Count").orElse(null);
+        Assertions.assertNotNull(count, endpoint + " did not report its statements");
+        Assertions.assertEquals(expectedQueries, Integer.parseInt(count), "SQL statements executed by " + endpoint);
+        return response;
+    }
+
+    /**
+     * Builds a GET request.
+     * @param  path The path and query of the request.
+     * @return Returns the request.
+     */
+    public static HttpRequest get(String path) {
+        return HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+    }
+
+    /**
+     * Builds a request with a JSON body.
+     * @param  method The HTTP method.
+     * @param  path The path of the request.
+     * @param  json The request body.
+     * @return Returns the request.
+     */
+    public static HttpRequest json(String method, String path, String json) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    /**
+     * Builds a DELETE request.
+     * @param  path The path of the request.
+     * @return Returns the request.
+     */
+    public static HttpRequest delete(String path) {
+        return HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).DELETE().build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example;
+
+import static com.example.QueryCountAssertions.assertQueryCount;
+import static com.example.QueryCountAssertions.delete;
+import static com.example.QueryCountAssertions.get;
+import static com.example.QueryCountAssertions.json;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.service.SqlStatisticsService;
+
+/**
+ * Pins the number of SQL statements every SocialMediaController endpoint executes. GET /messages/stream is not
+ * counted, since it holds the response open.
+ */
+public class QueryCountTest {
+	ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] { "--app.sql-stats.slow-query-ms=0", "--app.sql-stats.response-headers=true" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Registering checks the username, draws an id from the sequence and inserts the account. The insert
+     * invalidates the cached username lookups, so a duplicate registration queries once more. Logging in selects
+     * the account once; later logins are served by the account cache.
+     */
+    @Test
+    public void accountEndpoints() throws IOException, InterruptedException {
+        String account = "{\"username\":\"counted\",\"password\":\"password\"}";
+        assertQueryCount(webClient, json("POST", "/register", account), 200, 3);
+        assertQueryCount(webClient, json("POST", "/register", account), 409, 1);
+        assertQueryCount(webClient, json("POST", "/login", account), 200, 0);
+        String seeded = "{\"username\":\"testuser1\",\"password\":\"password\"}";
+        assertQueryCount(webClient, json("POST", "/login", seeded), 200, 1);
+        assertQueryCount(webClient, json("POST", "/login", seeded), 200, 0);
+    }
+
+    /**
+     * Creating, updating and deleting a message each write the message and one change log row. The first write
+     * also checks the poster and reads the position of the change log, which are cached afterwards.
+     */
+    @Test
+    public void messageWriteEndpoints() throws IOException, InterruptedException {
+        String message = "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        assertQueryCount(webClient, json("POST", "/messages", message), 200, 5);
+        assertQueryCount(webClient, json("POST", "/messages", message), 200, 3);
+        assertQueryCount(webClient, json("PATCH", "/messages/9999", "{\"messageText\":\"updated\"}"), 200, 3);
+        assertQueryCount(webClient, delete("/messages/9999"), 200, 3);
+        assertQueryCount(webClient, delete("/messages/9999"), 200, 1);
+    }
+
+    /**
+     * Every read endpoint answers with a single query, except a lookup of a missing message, which also checks
+     * the archive, the first read of the change log, which also reads its position, and the stats of an account
+     * that are not in memory yet. The latest messages and the trending accounts and terms are served from memory
+     * without a query.
+     */
+    @Test
+    public void messageReadEndpoints() throws IOException, InterruptedException {
+        assertQueryCount(webClient, get("/messages"), 200, 1);
+        assertQueryCount(webClient, get("/messages?fields=messageId,messageText"), 200, 1);
+        assertQueryCount(webClient, get("/messages?from=0&to=2000000000&size=2"), 200, 1);
+        assertQueryCount(webClient, get("/messages?latest=2"), 200, 0);
+        assertQueryCount(webClient, get("/messages/9999"), 200, 1);
+        assertQueryCount(webClient, get("/messages/5050"), 200, 2);
+        assertQueryCount(webClient, get("/messages/changes"), 200, 2);
+        assertQueryCount(webClient, get("/accounts/9999/messages"), 200, 1);
+        assertQueryCount(webClient, get("/accounts/9999/messages?from=0&to=2000000000"), 200, 1);
+        assertQueryCount(webClient, get("/accounts/9999/stats"), 200, 2);
+        assertQueryCount(webClient, get("/trending/accounts"), 200, 0);
+        assertQueryCount(webClient, get("/trending/terms"), 200, 0);
+    }
+
+    /**
+     * With a slow-query threshold of 0 every statement is aggregated, once per distinct SQL text.
+     */
+    @Test
+    public void slowStatementsAreAggregatedBySql() throws IOException, InterruptedException {
+        SqlStatisticsService statistics = app.getBean(SqlStatisticsService.class);
+        statistics.reportSlowStatements();
+        for(int i = 0; i < 3; i++) {
+            assertQueryCount(webClient, get("/accounts/9999/messages"), 200, 1);
+        }
+        Assertions.assertTrue(statistics.getSlowStatements().stream()
+                .anyMatch(entry -> entry.getKey().contains("from message") && entry.getValue().getCount() == 3),
+                statistics.getSlowStatements().toString());
+    }
+}
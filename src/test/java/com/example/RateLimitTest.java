@@ -0,0 +1,67 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class RateLimitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database and restart the app with a per-account burst of two messages and
+     * a refill rate that is too slow to matter during the test.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.rate-limit.account.burst=2",
+                "--app.rate-limit.account.permits-per-second=0.01"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending three http requests to POST localhost:8080/messages for the same account
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first two requests, then 429 with a Retry-After header
+     *  Another account is not affected
+     */
+    @Test
+    public void createMessageRateLimitedPerAccount() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, postMessage(9997).statusCode());
+        Assertions.assertEquals(200, postMessage(9997).statusCode());
+        HttpResponse<String> limited = postMessage(9997);
+        Assertions.assertEquals(429, limited.statusCode(), "Expected Status Code 429 - Actual Code was: "
+                + limited.statusCode());
+        Assertions.assertTrue(limited.headers().firstValue("Retry-After").isPresent(), "Expected a Retry-After header");
+        Assertions.assertEquals(200, postMessage(9996).statusCode());
+    }
+
+    private HttpResponse<String> postMessage(int postedBy) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RetentionTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database and restart the app with a retention job that archives messages
+     * older than 30 days two at a time, starting right away.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.retention.enabled=true", "--app.retention.max-age-days=30",
+                "--app.retention.chunk-size=2", "--app.retention.pause-ms=10", "--app.retention.initial-delay-ms=0"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Waiting for the retention job to archive the seeded messages, then sending http requests to
+     * GET localhost:8080/messages and GET localhost:8080/messages/9999
+     *
+     * Expected Response:
+     *  GET /messages returns an empty list
+     *  GET /messages/9999 still returns the archived message
+     *  GET /messages/changes lists a DELETE for each archived message and the account stats count none of them
+     *  The rows moved metric counts the three archived messages and the lag metric is 0
+     */
+    @Test
+    public void archiveOldMessages() throws IOException, InterruptedException {
+        HttpRequest getAllRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        List<Message> remaining = null;
+        for(int attempt = 0; attempt < 50; attempt++) {
+            remaining = objectMapper.readValue(webClient.send(getAllRequest, HttpResponse.BodyHandlers.ofString()).body(),
+                    new TypeReference<List<Message>>(){});
+            if(remaining.isEmpty()) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        Assertions.assertTrue(remaining.isEmpty(), "Expected every seeded message to be archived, but found " + remaining);
+
+        HttpRequest getByIdRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        HttpResponse<String> response = webClient.send(getByIdRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Message expectedResult = new Message(9999, 9999, "test message 1", 1669947792L);
+        Message actualResult = objectMapper.readValue(response.body(), Message.class);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+
+        JsonNode changes = getJson("/messages/changes?since=0").get("changes");
+        Assertions.assertEquals(3, changes.size());
+        for(JsonNode change : changes) {
+            Assertions.assertEquals("DELETE", change.get("changeType").asText());
+        }
+        Assertions.assertEquals(0, getJson("/accounts/9999/stats").get("messageCount").asLong());
+
+        Assertions.assertEquals(3, metricValue("app.retention.rows.moved"));
+        Assertions.assertEquals(0, metricValue("app.retention.lag.seconds"));
+    }
+
+    private JsonNode getJson(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private double metricValue(String name) throws IOException, InterruptedException {
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/metrics/" + name))
+                .build();
+        JsonNode metrics = objectMapper.readTree(webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body());
+        return metrics.get("measurements").get(0).get("value").asDouble();
+    }
+}
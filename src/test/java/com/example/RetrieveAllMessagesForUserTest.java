@@ -83,4 +83,25 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assertions.assertTrue(actualResult.isEmpty(), "Expected Empty Result, but Result was not Empty");
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages?from=1669947792&fields=messageId
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list with the messageId of the seeded message, which was posted at the from value
+     */
+    @Test
+    public void getAllMessagesFromUserTimeRange() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages?from=1669947792&fields=messageId"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9999, null, null, null));
+        List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
 }
@@ -59,4 +59,101 @@ public class RetrieveAllMessagesTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
     }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?fields=messageId,messageText
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON list of messages that only contain the messageId and messageText fields
+     */
+    @Test
+    public void getAllMessagesSparseFieldset() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?fields=messageId,messageText"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9996, null, "test message 3", null));
+        expectedResult.add(new Message(9997, null, "test message 2", null));
+        expectedResult.add(new Message(9999, null, "test message 1", null));
+        List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+        Assertions.assertFalse(response.body().contains("postedBy"), "Unselected fields should be omitted.");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with an unknown sparse field
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesUnknownField() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?fields=messageId,password"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
+
+    /**
+     * Posting messages at three different times, then sending http requests to
+     * GET localhost:8080/messages?from=150&to=400&size=1 and following its next link.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message posted at 200 with a Link header to the next page, then the message posted
+     *  at 300 without one
+     */
+    @Test
+    public void getAllMessagesTimeRange() throws IOException, InterruptedException {
+        for(long epoch = 100; epoch <= 300; epoch += 100) {
+            String json = "{\"postedBy\":9999,\"messageText\": \"posted at " + epoch + "\",\"timePostedEpoch\": " + epoch + "}";
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .header("Content-Type", "application/json")
+                    .build();
+            webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?from=150&to=400&size=1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, actualResult.size());
+        Assertions.assertEquals(200L, actualResult.get(0).getTimePostedEpoch());
+        String link = response.headers().firstValue("Link").orElseThrow();
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+
+        HttpRequest nextRequest = HttpRequest.newBuilder().uri(URI.create(next)).build();
+        HttpResponse<String> nextResponse = webClient.send(nextRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, nextResponse.statusCode());
+        actualResult = objectMapper.readValue(nextResponse.body().toString(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, actualResult.size());
+        Assertions.assertEquals(300L, actualResult.get(0).getTimePostedEpoch());
+        Assertions.assertTrue(nextResponse.headers().firstValue("Link").isEmpty(), "Expected no next page.");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?from=200&to=100
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesInvalidTimeRange() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?from=200&to=100"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
+    }
 }
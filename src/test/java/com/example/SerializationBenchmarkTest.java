@@ -0,0 +1,90 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.example.dto.MessageView;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Compares the payload size and the serialization throughput of the JSON, Smile and CBOR representations of a
+ * message list. The throughput is only printed, since timing assertions are too noisy for a shared build machine;
+ * the payload sizes are deterministic and asserted.
+ *
+ * Tagged "benchmark", which the build leaves out by default. Run it with
+ * mvn test -Dtest=SerializationBenchmarkTest -Dtest.excludedGroups=
+ */
+@Tag("benchmark")
+public class SerializationBenchmarkTest {
+    /**
+     * The number of messages in the benchmarked list.
+     */
+    private static final int MESSAGES = 10_000;
+    /**
+     * The number of untimed serializations that warm up the JIT before measuring.
+     */
+    private static final int WARMUP_ROUNDS = 20;
+    /**
+     * The number of timed serializations per format.
+     */
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Test
+    public void binaryFormatsAreSmallerThanJson() throws IOException {
+        List<MessageView> messages = messages();
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+        int jsonBytes = benchmark("json", json, messages);
+        int smileBytes = benchmark("smile", smile, messages);
+        int cborBytes = benchmark("cbor", cbor, messages);
+
+        Assertions.assertTrue(smileBytes < jsonBytes, "smile=" + smileBytes + ", json=" + jsonBytes);
+        Assertions.assertTrue(cborBytes < jsonBytes, "cbor=" + cborBytes + ", json=" + jsonBytes);
+        Assertions.assertEquals(json.readValue(json.writeValueAsBytes(messages), new TypeReference<List<Message>>(){}),
+                smile.readValue(smile.writeValueAsBytes(messages), new TypeReference<List<Message>>(){}));
+    }
+
+    /**
+     * Serializes messages repeatedly and prints the payload size and the throughput.
+     * @param  format The name of the format, for the report.
+     * @param  mapper The mapper writing the format.
+     * @param  messages The list to serialize.
+     * @return Returns the size of one serialized list in bytes.
+     */
+    private int benchmark(String format, ObjectMapper mapper, List<MessageView> messages) throws IOException {
+        int size = 0;
+        for(int round = 0; round < WARMUP_ROUNDS; round++) {
+            size = mapper.writeValueAsBytes(messages).length;
+        }
+        long start = System.nanoTime();
+        for(int round = 0; round < MEASURED_ROUNDS; round++) {
+            size = mapper.writeValueAsBytes(messages).length;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-5s %,10d bytes %,12.0f messages/s%n", format, size, MESSAGES * MEASURED_ROUNDS / seconds);
+        return size;
+    }
+
+    /**
+     * @return Returns a list of messages with realistic ids, posters, texts and timestamps.
+     */
+    private List<MessageView> messages() {
+        List<MessageView> messages = new ArrayList<>(MESSAGES);
+        for(int i = 0; i < MESSAGES; i++) {
+            messages.add(new MessageView(10_000 + i, 1 + i % 500, "message number " + i + " about the weather today",
+                    1669947792L + i * 37L));
+        }
+        return messages;
+    }
+}
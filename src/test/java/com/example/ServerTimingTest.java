@@ -0,0 +1,148 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ServerTimingTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app with every request counted as slow, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.tracing.slow-request-ms=0" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Server-Timing: the total time, the time spent in the controller, the services and the repositories, and the
+     *  SQL time, without the names of the traced methods
+     */
+    @Test
+    public void getAllMessagesServerTiming() throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(get("/messages"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        String serverTiming = response.headers().firstValue("Server-Timing").orElse("");
+        Assertions.assertTrue(serverTiming.startsWith("total;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("dispatch;desc=\"filters and binding\";dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("controller;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("service;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("repository;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("sql;desc=\"1 statements\";dur="), serverTiming);
+        Assertions.assertFalse(serverTiming.contains("MessageService"), serverTiming);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with server-timing-detail enabled
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Server-Timing: one metric per controller, service and repository call, described by the traced method
+     */
+    @Test
+    public void getAllMessagesDetailedServerTiming() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--app.tracing.server-timing-detail=true");
+        Thread.sleep(500);
+        HttpResponse<String> response = webClient.send(get("/messages"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        String serverTiming = response.headers().firstValue("Server-Timing").orElse("");
+        Assertions.assertTrue(serverTiming.contains("controller;desc=\"SocialMediaController.getAllMessages\";dur="),
+                serverTiming);
+        Assertions.assertTrue(serverTiming.contains("service;desc=\"MessageService.getAllMessages\";dur="),
+                serverTiming);
+        Assertions.assertTrue(serverTiming.contains("repository;desc=\"MessageRepository.findAllViews\";dur="),
+                serverTiming);
+    }
+
+    /**
+     * Sending a message that fails validation still reports its timing.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     *  Server-Timing: contains the controller and service time of the failed call
+     */
+    @Test
+    public void failedRequestServerTiming() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode());
+        String serverTiming = response.headers().firstValue("Server-Timing").orElse("");
+        Assertions.assertTrue(serverTiming.contains("controller;dur="), serverTiming);
+        Assertions.assertTrue(serverTiming.contains("service;dur="), serverTiming);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/actuator/slowrequests after a traced request
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the traced request, with its spans nested under the controller call
+     */
+    @Test
+    public void slowRequestsAreSampled() throws IOException, InterruptedException {
+        webClient.send(get("/accounts/9999/messages"), HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = webClient.send(get("/actuator/slowrequests"), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        List<Map<String, Object>> slowRequests = objectMapper.readValue(response.body(),
+                new TypeReference<List<Map<String, Object>>>(){});
+        Map<String, Object> traced = slowRequests.stream()
+                .filter(request -> "/accounts/9999/messages".equals(request.get("path")))
+                .findFirst().orElseThrow();
+        Assertions.assertEquals("GET", traced.get("method"));
+        Assertions.assertEquals(200, traced.get("status"));
+        List<?> spans = (List<?>) traced.get("spans");
+        Assertions.assertTrue(spans.get(0).toString().startsWith("SocialMediaController.getAllMessagesByPostedBy"),
+                spans.toString());
+        Assertions.assertTrue(spans.get(1).toString().startsWith("  MessageService.getAllMessagesByPostedBy"),
+                spans.toString());
+        Assertions.assertTrue(spans.get(2).toString().startsWith("    MessageRepository.findAllViewsByPostedBy"),
+                spans.toString());
+    }
+
+    /**
+     * Builds a GET request.
+     * @param  path The path of the request.
+     * @return Returns the request.
+     */
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+    }
+}
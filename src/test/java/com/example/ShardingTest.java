@@ -0,0 +1,140 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+import com.example.repository.ShardedMessageRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardingTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database and restart the app with the message table split over three
+     * embedded shards.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.sharding.enabled=true", "--app.sharding.shard-count=3"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with sharding enabled
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded messages, moved into their shards at startup and merged in messageId order
+     */
+    @Test
+    public void getAllMessagesAcrossShards() throws IOException, InterruptedException {
+        Assertions.assertTrue(app.getBean(MessageStore.class) instanceof ShardedMessageRepository,
+                "The sharded repository should replace the JPA repository.");
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expectedResult.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * Posting messages for four accounts with sharding enabled, then sending http requests to
+     * GET localhost:8080/messages?from=0&to=1000, GET localhost:8080/accounts/9998/messages and
+     * DELETE localhost:8080/messages/{messageId}
+     *
+     * Expected Response:
+     *  Every message is stored in the shard of its account
+     *  The time range is merged across shards in timePostedEpoch order
+     *  Account and id lookups find the message in its shard, and the delete removes it
+     */
+    @Test
+    public void createAndQueryMessagesAcrossShards() throws IOException, InterruptedException {
+        int[] accounts = {9996, 9997, 9998, 9999};
+        long[] epochs = {400, 100, 300, 200};
+        int messageOfAccount9998 = 0;
+        for(int i = 0; i < accounts.length; i++) {
+            String json = "{\"postedBy\":" + accounts[i] + ",\"messageText\": \"sharded\",\"timePostedEpoch\": "
+                    + epochs[i] + "}";
+            HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .header("Content-Type", "application/json")
+                    .build();
+            HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+            if(accounts[i] == 9998) {
+                messageOfAccount9998 = objectMapper.readValue(response.body(), Message.class).getMessageId();
+            }
+        }
+        ShardedMessageRepository repository = app.getBean(ShardedMessageRepository.class);
+        long stored = 0;
+        for(int shard = 0; shard < 3; shard++) {
+            stored += repository.countInShard(shard);
+        }
+        Assertions.assertEquals(7, stored);
+        Assertions.assertEquals(1, repository.findAllViewsByPostedBy(9998).size());
+
+        HttpRequest rangeRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?from=0&to=1000"))
+                .build();
+        List<Message> range = objectMapper.readValue(webClient.send(rangeRequest, HttpResponse.BodyHandlers.ofString()).body(),
+                new TypeReference<List<Message>>(){});
+        List<Long> rangeEpochs = new ArrayList<>();
+        for(Message message : range) {
+            rangeEpochs.add(message.getTimePostedEpoch());
+        }
+        Assertions.assertEquals(List.of(100L, 200L, 300L, 400L), rangeEpochs);
+
+        HttpRequest byAccountRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9998/messages"))
+                .build();
+        List<Message> byAccount = objectMapper.readValue(webClient.send(byAccountRequest, HttpResponse.BodyHandlers.ofString()).body(),
+                new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(List.of(new Message(messageOfAccount9998, 9998, "sharded", 300L)), byAccount);
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageOfAccount9998))
+                .DELETE()
+                .build();
+        HttpResponse<String> deleteResponse = webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, deleteResponse.statusCode());
+        Assertions.assertEquals("1", deleteResponse.body());
+        HttpRequest getByIdRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageOfAccount9998))
+                .build();
+        Assertions.assertEquals("", webClient.send(getByIdRequest, HttpResponse.BodyHandlers.ofString()).body());
+    }
+}
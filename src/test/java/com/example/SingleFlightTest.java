@@ -0,0 +1,101 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class SingleFlightTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    MeterRegistry meterRegistry;
+
+    /**
+     * Before every test, reset the database, restart the app with enough generated messages that listing them
+     * takes a while, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.generator.enabled=true", "--app.generator.accounts=100",
+                "--app.generator.messages=20000", "--app.concurrency.enabled=false" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        meterRegistry = app.getBean(MeterRegistry.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Concurrent identical GET /messages requests all get the full list, from fewer repository calls than there
+     * were requests.
+     */
+    @Test
+    public void concurrentListingsShareRepositoryCalls() throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages")).build();
+        for(int i = 0; i < 20; i++) {
+            responses.add(webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for(CompletableFuture<HttpResponse<String>> response : responses) {
+            Assertions.assertEquals(200, response.get().statusCode());
+            Assertions.assertEquals(20003, objectMapper.readTree(response.get().body()).size());
+        }
+        double executed = calls("getAllMessages", "executed");
+        double shared = calls("getAllMessages", "shared");
+        Assertions.assertEquals(20, executed + shared);
+        Assertions.assertTrue(shared > 0, "executed=" + executed + ", shared=" + shared);
+    }
+
+    /**
+     * A read that starts after a write returns the written message rather than sharing an earlier read.
+     */
+    @Test
+    public void readAfterWriteSeesTheWrite() throws Exception {
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"fresh\",\"timePostedEpoch\":1}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpRequest list = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .build();
+        CompletableFuture<HttpResponse<String>> before = webClient.sendAsync(list,
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpResponse<String> after = webClient.send(list, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, before.get().statusCode());
+        List<Message> messages = objectMapper.readValue(after.body(), new TypeReference<List<Message>>() {});
+        Assertions.assertTrue(messages.stream().anyMatch(message -> "fresh".equals(message.getMessageText())),
+                after.body());
+    }
+
+    private double calls(String operation, String outcome) {
+        return meterRegistry.get("app.single_flight.calls").tag("operation", operation).tag("outcome", outcome)
+                .functionCounter().count();
+    }
+}
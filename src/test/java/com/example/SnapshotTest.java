@@ -0,0 +1,168 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SnapshotTest {
+	ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+    Path directory;
+
+    /**
+     * Before every test, reset the database, restart the app with the snapshot endpoint enabled on a temporary
+     * directory, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException, IOException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        directory = Files.createTempDirectory("snapshots");
+        String[] args = new String[] { "--management.endpoint.snapshots.enabled=true",
+                "--app.snapshot.directory=" + directory, "--app.snapshot.chunk-rows=2",
+                "--app.snapshot.batch-size=2" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        jdbcTemplate = new JdbcTemplate(app.getBean(DataSource.class));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+    	Thread.sleep(500);
+    	SpringApplication.exit(app);
+    }
+
+    /**
+     * Restoring a backup brings back the accounts and messages as they were, and new rows get ids past the
+     * restored ones.
+     */
+    @Test
+    public void restoreUndoesChangesSinceBackup() throws IOException, InterruptedException {
+        HttpResponse<String> backup = snapshot("before", "backup");
+        Assertions.assertEquals(200, backup.statusCode(), backup.body());
+        JsonNode report = objectMapper.readTree(backup.body());
+        Assertions.assertEquals(4, report.get("accounts").asInt());
+        Assertions.assertEquals(3, report.get("messages").asInt());
+        Assertions.assertTrue(Files.exists(directory.resolve("before.snapshot.gz")));
+
+        jdbcTemplate.update("delete from message where messageId = 9999");
+        jdbcTemplate.update("insert into account values (9995, 'later', 'password')");
+        jdbcTemplate.update("insert into message values (9995, 9995, 'later', 1)");
+
+        HttpResponse<String> restore = snapshot("before", "restore");
+        Assertions.assertEquals(200, restore.statusCode(), restore.body());
+        Assertions.assertEquals(4, jdbcTemplate.queryForObject("select count(*) from account", Integer.class));
+        Assertions.assertEquals("test message 1", jdbcTemplate.queryForObject(
+                "select messageText from message where messageId = 9999", String.class));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from message where messageId = 9995", Integer.class));
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"after restore\",\"timePostedEpoch\":1}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> created = webClient.send(post, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, created.statusCode(), created.body());
+        Assertions.assertTrue(objectMapper.readTree(created.body()).get("messageId").asInt() > 9999);
+
+        HttpRequest list = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/snapshots"))
+                .build();
+        Assertions.assertEquals("[\"before\"]", webClient.send(list, HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    /**
+     * A restore resets the change feed: a client that read it before the restore gets a 410 and has to reload,
+     * and the feed continues after the reset.
+     */
+    @Test
+    public void restoreResetsChangeFeed() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, snapshot("before", "backup").statusCode());
+        postMessage("before restore");
+        JsonNode before = objectMapper.readTree(changes(0).body());
+        Assertions.assertEquals(1, before.get("changes").size());
+        long since = before.get("nextSince").asLong();
+
+        Assertions.assertEquals(200, snapshot("before", "restore").statusCode());
+        HttpResponse<String> stale = changes(since);
+        Assertions.assertEquals(410, stale.statusCode(), stale.body());
+
+        HttpResponse<String> reloaded = changes(0);
+        Assertions.assertEquals(200, reloaded.statusCode(), reloaded.body());
+        JsonNode afterReset = objectMapper.readTree(reloaded.body());
+        Assertions.assertEquals(0, afterReset.get("changes").size());
+        postMessage("after restore");
+        JsonNode after = objectMapper.readTree(changes(afterReset.get("nextSince").asLong()).body());
+        Assertions.assertEquals(1, after.get("changes").size());
+        Assertions.assertEquals("after restore", after.get("changes").get(0).get("messageText").asText());
+    }
+
+    /**
+     * Names that could leave the snapshot directory, missing snapshots and unknown actions are rejected.
+     */
+    @Test
+    public void invalidRequestsAreRejected() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, snapshot("..", "backup").statusCode());
+        Assertions.assertEquals(400, snapshot("missing", "restore").statusCode());
+        Assertions.assertEquals(400, snapshot("name", "drop").statusCode());
+    }
+
+    /**
+     * Posts a message as account 9999.
+     */
+    private void postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"" + text + "\",\"timePostedEpoch\":1}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Reads the change feed.
+     * @return Returns the response.
+     */
+    private HttpResponse<String> changes(long since) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/changes?since=" + since))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sends a snapshot action.
+     * @return Returns the response.
+     */
+    private HttpResponse<String> snapshot(String name, String action) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/snapshots/" + name))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"action\":\"" + action + "\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
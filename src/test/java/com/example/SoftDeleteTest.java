@@ -0,0 +1,101 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.service.SoftDeleteService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SoftDeleteTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Before every test, reset the database, restart the app in soft-delete mode with the scheduled compactor out of
+     * the way, and create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] { "--app.soft-delete.enabled=true",
+                "--app.soft-delete.compact-interval-ms=3600000" };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A soft-deleted message answers like a deleted one on every route while its row waits for the compactor.
+     */
+    @Test
+    public void softDeletedMessageIsHidden() throws Exception {
+        HttpResponse<String> deleted = send("DELETE", "/messages/9999", null);
+        Assertions.assertEquals(200, deleted.statusCode());
+        Assertions.assertEquals(1, objectMapper.readValue(deleted.body(), Integer.class));
+        Assertions.assertEquals(1, rows("message", 9999));
+
+        Assertions.assertEquals("", send("DELETE", "/messages/9999", null).body());
+        Assertions.assertEquals("", send("GET", "/messages/9999", null).body());
+        Assertions.assertEquals("[]", send("GET", "/accounts/9999/messages", null).body());
+        Assertions.assertEquals(2, objectMapper.readTree(send("GET", "/messages", null).body()).size());
+        Assertions.assertEquals(2,
+                objectMapper.readTree(send("GET", "/messages?fields=messageId", null).body()).size());
+        Assertions.assertEquals(2, objectMapper.readTree(send("GET", "/messages?from=0", null).body()).size());
+        Assertions.assertEquals(400, send("PATCH", "/messages/9999", "{\"messageText\":\"back\"}").statusCode());
+    }
+
+    /**
+     * The compactor deletes tombstoned messages and their tombstones, and leaves the other messages alone.
+     */
+    @Test
+    public void compactorPurgesTombstonedMessages() throws Exception {
+        Assertions.assertEquals(200, send("DELETE", "/messages/9999", null).statusCode());
+        Assertions.assertEquals(200, send("DELETE", "/messages/9997", null).statusCode());
+
+        app.getBean(SoftDeleteService.class).compact();
+
+        Assertions.assertEquals(0, rows("message", 9999));
+        Assertions.assertEquals(0, rows("message", 9997));
+        Assertions.assertEquals(1, rows("message", 9996));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from message_tombstone",
+                Integer.class));
+        Assertions.assertEquals("", send("DELETE", "/messages/9999", null).body());
+    }
+
+    private int rows(String table, int messageId) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table + " where messageId = ?", Integer.class,
+                messageId);
+    }
+
+    private HttpResponse<String> send(String method, String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if(json == null) {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        else {
+            request.method(method, HttpRequest.BodyPublishers.ofString(json)).header("Content-Type",
+                    "application/json");
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
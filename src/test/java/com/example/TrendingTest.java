@@ -0,0 +1,118 @@
+package com.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.service.TrendingService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TrendingTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper for
+     * interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Created messages within the window are counted per poster and per term, older messages and stop words are
+     * not, and the limit applies.
+     */
+    @Test
+    public void trendingFollowsCreatedMessages() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        for(int i = 0; i < 3; i++) {
+            post(9999, "The Java streams #java", now);
+        }
+        post(9998, "java rocks", now);
+        post(9997, "old news about java", 1669947792);
+
+        JsonNode accounts = get("/trending/accounts");
+        Assertions.assertEquals(2, accounts.get("items").size());
+        Assertions.assertEquals(9999, accounts.get("items").get(0).get("key").asInt());
+        Assertions.assertEquals(3, accounts.get("items").get(0).get("count").asLong());
+        Assertions.assertEquals(9998, accounts.get("items").get(1).get("key").asInt());
+        Assertions.assertEquals(1, accounts.get("items").get(1).get("count").asLong());
+        Assertions.assertEquals(2, accounts.get("distinctPosters").asLong());
+        Assertions.assertTrue(accounts.get("from").asLong() <= now && accounts.get("to").asLong() >= now);
+
+        JsonNode terms = get("/trending/terms?limit=2");
+        Assertions.assertEquals(2, terms.get("items").size());
+        Assertions.assertEquals("java", terms.get("items").get(0).get("key").asText());
+        Assertions.assertEquals(4, terms.get("items").get(0).get("count").asLong());
+        Assertions.assertEquals("streams", terms.get("items").get(1).get("key").asText());
+        Assertions.assertEquals(3, terms.get("items").get(1).get("count").asLong());
+
+        Assertions.assertEquals(400, send("/trending/terms?limit=0").statusCode());
+    }
+
+    /**
+     * Messages written without events, like a restore or an import, are counted once the sketches are reloaded.
+     */
+    @Test
+    public void trendingIsReloadedFromTheMessageTable() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        for(int i = 0; i < 2; i++) {
+            jdbcTemplate.update("insert into message (postedBy, messageText, timePostedEpoch) values (?, ?, ?)",
+                    9997, "imported", now);
+        }
+        Assertions.assertEquals(0, get("/trending/accounts").get("items").size());
+
+        app.getBean(TrendingService.class).reload();
+
+        JsonNode accounts = get("/trending/accounts");
+        Assertions.assertEquals(9997, accounts.get("items").get(0).get("key").asInt());
+        Assertions.assertEquals(2, accounts.get("items").get(0).get("count").asLong());
+        Assertions.assertEquals(1, accounts.get("distinctPosters").asLong());
+        Assertions.assertEquals("imported", get("/trending/terms").get("items").get(0).get("key").asText());
+    }
+
+    private void post(int postedBy, String messageText, long timePostedEpoch) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":" + postedBy + ",\"messageText\":\""
+                        + messageText + "\",\"timePostedEpoch\":" + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private JsonNode get(String path) throws Exception {
+        HttpResponse<String> response = send(path);
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private HttpResponse<String> send(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 
 import com.example.entity.Account;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class UserLoginTest {
@@ -104,4 +105,32 @@ public class UserLoginTest {
         int status = response.statusCode();
         Assertions.assertEquals(401, status, "Expected Status Code 401 - Actual Code was: " + status);
     }
+
+    /**
+     * Sending three http requests to POST localhost:8080/login with an invalid password, then reading
+     * GET localhost:8080/actuator/metrics/app.errors?tag=exception:InvalidLoginException
+     *
+     * Expected Response:
+     * 	Status Code: 401 with the same message for every attempt
+     * 	The error counter of InvalidLoginException is 3
+     */
+    @Test
+    public void loginInvalidPasswordCounted() throws IOException, InterruptedException {
+    	String json = "{\"accountId\":9999,\"username\":\"testuser1\",\"password\":\"pass404\"}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        for(int i = 0; i < 3; i++) {
+            HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(401, response.statusCode());
+            Assertions.assertEquals("Invalid username and password.", response.body());
+        }
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/metrics/app.errors?tag=exception:InvalidLoginException"))
+                .build();
+        JsonNode metrics = objectMapper.readTree(webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body());
+        Assertions.assertEquals(3, metrics.get("measurements").get(0).get("value").asDouble());
+    }
 }